@@ -1,12 +1,22 @@
 package com.yourapp.tracker;
 
 import android.util.Log;
+import org.json.JSONException;
 import org.json.JSONObject;
 import java.io.*;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
 
+/**
+ * HTTP client for the CloudTracker server; {@code ApiClient::send} is the app's {@link HttpTransport}.
+ *
+ * Connections are kept alive and reused by HttpURLConnection's connection pool. A connection
+ * only goes back to the pool once its response body has been read to the end and closed, so
+ * every response (including error bodies) is drained, and disconnect() is only called to
+ * throw away a connection after an I/O error.
+ */
 public class ApiClient {
 
     // *** CHANGE THIS to your server's address ***
@@ -16,6 +26,79 @@ public class ApiClient {
 
     private static final String TAG = "ApiClient";
 
+    private static final int MAX_IDLE_CONNECTIONS = 4;
+    private static final int BUFFER_SIZE          = 8 * 1024;
+    private static final int MAX_RETAINED_BUFFER  = 256 * 1024; // larger response buffers are not kept
+
+    private static volatile int connectTimeoutMs = 10_000;
+    private static volatile int readTimeoutMs    = 10_000;
+
+    // Per-thread scratch buffers, reused across requests
+    private static final ThreadLocal<byte[]>         READ_BUFFER =
+        ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+    private static final ThreadLocal<ResponseBuffer> RESPONSE_BUFFER =
+        ThreadLocal.withInitial(ResponseBuffer::new);
+
+    // Also reported through Metrics; status codes are counted by class
+    private static final Metrics.Counter   requests             = Metrics.counter("http.requests");
+    private static final Metrics.Counter   failures             = Metrics.counter("http.failures");
+    private static final Metrics.Counter   connectionsReleased  = Metrics.counter("http.connections_released");
+    private static final Metrics.Counter   connectionsDiscarded = Metrics.counter("http.connections_discarded");
+    private static final Metrics.Counter   bytesSent            = Metrics.counter("http.sent_bytes");
+    private static final Metrics.Counter   bytesReceived        = Metrics.counter("http.received_bytes");
+    private static final Metrics.Histogram rtt                  = Metrics.histogram("http.rtt_ms");
+    private static final Metrics.Counter[] statusClasses        = {
+        null,
+        Metrics.counter("http.status_1xx"), Metrics.counter("http.status_2xx"), Metrics.counter("http.status_3xx"),
+        Metrics.counter("http.status_4xx"), Metrics.counter("http.status_5xx")
+    };
+
+    static {
+        System.setProperty("http.keepAlive", "true");
+        System.setProperty("http.maxConnections", String.valueOf(MAX_IDLE_CONNECTIONS));
+    }
+
+    /** Snapshot of request and connection pool counters since process start */
+    public static class Stats {
+        public long requests;
+        public long failures;             // no HTTP response received
+        public long connectionsReleased;  // response drained, connection returned to the pool
+        public long connectionsDiscarded; // dropped after an I/O error
+        public long bytesSent;
+        public long bytesReceived;
+        public long totalLatencyMs;
+
+        public long averageLatencyMs() {
+            return requests == 0 ? 0 : totalLatencyMs / requests;
+        }
+
+        @Override
+        public String toString() {
+            return "requests=" + requests + " failures=" + failures
+                + " released=" + connectionsReleased + " discarded=" + connectionsDiscarded
+                + " sent=" + bytesSent + "B received=" + bytesReceived + "B"
+                + " avgLatency=" + averageLatencyMs() + "ms";
+        }
+    }
+
+    public static Stats stats() {
+        Stats s = new Stats();
+        s.requests             = requests.get();
+        s.failures             = failures.get();
+        s.connectionsReleased  = connectionsReleased.get();
+        s.connectionsDiscarded = connectionsDiscarded.get();
+        s.bytesSent            = bytesSent.get();
+        s.bytesReceived        = bytesReceived.get();
+        s.totalLatencyMs       = rtt.sum();
+        return s;
+    }
+
+    /** Timeouts used by requests that don't pass their own */
+    public static void setDefaultTimeouts(int connectMs, int readMs) {
+        connectTimeoutMs = connectMs;
+        readTimeoutMs    = readMs;
+    }
+
     /**
      * Generic POST request.
      * @param endpoint  e.g. "/auth/login" or "/data/mykey"
@@ -24,37 +107,127 @@ public class ApiClient {
      * @return          Response as JSONObject, or null on failure
      */
     public static JSONObject post(String endpoint, JSONObject body, String token) {
+        return send(endpoint, body.toString().getBytes(StandardCharsets.UTF_8),
+                    "application/json", false, token, 0).body;
+    }
+
+    /**
+     * POST a pre-encoded body, e.g. a {@link WireFormat} batch.
+     * @param contentType  MIME type of {@code body}
+     * @param gzip         stream the body through gzip and send it with Content-Encoding: gzip
+     * @param timeoutMs    connect and read timeout for this request; 0 uses the defaults
+     */
+    public static HttpTransport.Response send(String endpoint, byte[] body, String contentType,
+                                              boolean gzip, String token, int timeoutMs) {
+        long              start = System.nanoTime();
+        HttpURLConnection conn  = null;
+        requests.inc();
         try {
-            URL url = new URL(BASE_URL + endpoint);
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+            conn = (HttpURLConnection) new URL(BASE_URL + endpoint).openConnection();
             conn.setRequestMethod("POST");
-            conn.setRequestProperty("Content-Type", "application/json");
+            conn.setRequestProperty("Content-Type", contentType);
             conn.setRequestProperty("Accept", "application/json");
             if (token != null)
                 conn.setRequestProperty("Authorization", "Bearer " + token);
+            conn.setUseCaches(false);
             conn.setDoOutput(true);
-            conn.setConnectTimeout(10000);
-            conn.setReadTimeout(10000);
+            conn.setConnectTimeout(timeoutMs > 0 ? timeoutMs : connectTimeoutMs);
+            conn.setReadTimeout(timeoutMs > 0 ? timeoutMs : readTimeoutMs);
 
-            try (OutputStream os = conn.getOutputStream()) {
-                os.write(body.toString().getBytes(StandardCharsets.UTF_8));
+            if (gzip) {
+                conn.setRequestProperty("Content-Encoding", "gzip");
+                conn.setChunkedStreamingMode(0);
+                CountingOutputStream counter = new CountingOutputStream(conn.getOutputStream());
+                try (OutputStream os = new GZIPOutputStream(counter, BUFFER_SIZE)) {
+                    os.write(body);
+                }
+                bytesSent.add(counter.count);
+            } else {
+                conn.setFixedLengthStreamingMode(body.length);
+                try (OutputStream os = conn.getOutputStream()) {
+                    os.write(body);
+                }
+                bytesSent.add(body.length);
             }
 
             int status = conn.getResponseCode();
-            InputStream is = (status >= 200 && status < 300)
-                    ? conn.getInputStream()
-                    : conn.getErrorStream();
+            if (status >= 100 && status < 600) statusClasses[status / 100].inc();
+            InputStream is = status < 400 ? conn.getInputStream() : conn.getErrorStream();
+            String text = is != null ? drain(is) : "";
+            connectionsReleased.inc();
 
-            BufferedReader reader = new BufferedReader(new InputStreamReader(is));
-            StringBuilder sb = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) sb.append(line);
+            return new HttpTransport.Response(status, parse(text));
 
-            return new JSONObject(sb.toString());
-
-        } catch (Exception e) {
+        } catch (IOException e) {
             Log.e(TAG, "POST " + endpoint + " failed: " + e.getMessage());
+            if (conn != null) {
+                conn.disconnect(); // a half-finished exchange cannot be reused
+                connectionsDiscarded.inc();
+            }
+            failures.inc();
+            return new HttpTransport.Response(-1, null);
+        } finally {
+            rtt.recordMillisSince(start);
+        }
+    }
+
+    /** Read a response body to the end and close it, which releases the connection to the pool */
+    private static String drain(InputStream is) throws IOException {
+        ResponseBuffer out = RESPONSE_BUFFER.get();
+        byte[]         buf = READ_BUFFER.get();
+        out.reset();
+        try (InputStream in = is) {
+            int n;
+            while ((n = in.read(buf)) != -1) out.write(buf, 0, n);
+        }
+        bytesReceived.add(out.size());
+        String text = out.text();
+        if (out.capacity() > MAX_RETAINED_BUFFER) RESPONSE_BUFFER.remove();
+        return text;
+    }
+
+    private static JSONObject parse(String text) {
+        if (text.isEmpty()) return null;
+        try {
+            return new JSONObject(text);
+        } catch (JSONException e) {
+            Log.w(TAG, "Response is not JSON: " + e.getMessage());
             return null;
         }
     }
+
+    /** Growable byte buffer whose contents can be decoded without copying them first */
+    private static class ResponseBuffer extends ByteArrayOutputStream {
+        ResponseBuffer() {
+            super(BUFFER_SIZE);
+        }
+
+        String text() {
+            return new String(buf, 0, count, StandardCharsets.UTF_8);
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
 }
@@ -3,14 +3,43 @@ package com.yourapp.tracker;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.os.AsyncTask;
+import android.os.SystemClock;
+import android.util.Base64;
+import android.util.Log;
+import org.json.JSONException;
 import org.json.JSONObject;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+/**
+ * Login, registration and the current session.
+ *
+ * The session token is held in memory after it is first read from SharedPreferences, together
+ * with its expiry from the JWT "exp" claim. {@link #validToken} renews it through
+ * POST /auth/refresh shortly before it expires, so uploads never run into a 401 storm. If
+ * the server refuses a refresh, the session is over: {@link #validToken} returns null until
+ * the next login, and session listeners are told when that happens.
+ */
 public class AuthService {
 
+    private static final String TAG       = "AuthService";
     private static final String PREFS     = "tracker_prefs";
     private static final String KEY_TOKEN = "jwt_token";
     private static final String KEY_USER  = "username";
 
+    // Renew this long before the token expires; after a failed attempt, wait before the next
+    private static final long REFRESH_MARGIN_MS = 60 * 60_000;
+    private static final long REFRESH_RETRY_MS  = 60_000;
+
+    private static final Object sessionLock = new Object();
+    private static volatile boolean loaded;
+    private static volatile String  token;      // null when logged out
+    private static volatile long    expiresAt;  // epoch ms; 0 if unknown or marked stale
+    private static volatile boolean rejected;   // refresh refused; waiting for a new login
+    private static volatile long    lastAttempt; // uptime of the last failed refresh
+
+    private static final CopyOnWriteArrayList<Runnable> sessionListeners = new CopyOnWriteArrayList<>();
+
     public interface AuthCallback {
         void onSuccess(String token);
         void onFailure(String error);
@@ -22,11 +51,46 @@ public class AuthService {
             .putString(KEY_TOKEN, token)
             .putString(KEY_USER, username)
             .apply();
+        startSession(token);
     }
 
+    /** The stored token as is, without checking or renewing it */
     public static String getToken(Context ctx) {
-        return ctx.getSharedPreferences(PREFS, Context.MODE_PRIVATE)
-                  .getString(KEY_TOKEN, null);
+        loadSession(ctx);
+        return token;
+    }
+
+    /**
+     * A token to send with a request, renewed first if it expires within the refresh margin.
+     * Blocks during a refresh, which pauses every caller until the new token is in place.
+     * @return null if logged out, or if the session could not be renewed and needs a new login
+     */
+    public static String validToken(Context ctx) {
+        loadSession(ctx);
+        if (!needsRefresh()) return rejected ? null : token;
+        synchronized (sessionLock) {
+            if (needsRefresh()) refresh(ctx); // unless another caller just did
+            return rejected ? null : token;
+        }
+    }
+
+    /** Report a 401 for {@code rejectedToken}; the next {@link #validToken} renews the session */
+    public static void onUnauthorized(String rejectedToken) {
+        synchronized (sessionLock) {
+            if (rejectedToken != null && rejectedToken.equals(token)) {
+                expiresAt   = 0;
+                lastAttempt = 0;
+            }
+        }
+    }
+
+    /** Called (on the login thread) whenever a new session starts, e.g. to resume paused uploads */
+    public static void addSessionListener(Runnable listener) {
+        sessionListeners.add(listener);
+    }
+
+    public static void removeSessionListener(Runnable listener) {
+        sessionListeners.remove(listener);
     }
 
     public static String getUsername(Context ctx) {
@@ -37,6 +101,12 @@ public class AuthService {
     public static void clearToken(Context ctx) {
         ctx.getSharedPreferences(PREFS, Context.MODE_PRIVATE)
            .edit().clear().apply();
+        synchronized (sessionLock) {
+            token     = null;
+            expiresAt = 0;
+            rejected  = false;
+            loaded    = true;
+        }
     }
 
     public static boolean isLoggedIn(Context ctx) {
@@ -92,4 +162,77 @@ public class AuthService {
             }
         });
     }
+
+    // --- Session ---
+
+    private static void loadSession(Context ctx) {
+        if (loaded) return;
+        synchronized (sessionLock) {
+            if (loaded) return;
+            String stored = ctx.getSharedPreferences(PREFS, Context.MODE_PRIVATE)
+                               .getString(KEY_TOKEN, null);
+            token     = stored;
+            expiresAt = stored != null ? expiryOf(stored) : 0;
+            loaded    = true;
+        }
+    }
+
+    private static void startSession(String newToken) {
+        synchronized (sessionLock) {
+            token       = newToken;
+            expiresAt   = expiryOf(newToken);
+            rejected    = false;
+            lastAttempt = 0;
+            loaded      = true;
+        }
+        for (Runnable listener : sessionListeners) listener.run();
+    }
+
+    /** Whether the token should be renewed before its next use */
+    private static boolean needsRefresh() {
+        return token != null && !rejected
+            && expiresAt != Long.MAX_VALUE && expiresAt - System.currentTimeMillis() < REFRESH_MARGIN_MS
+            && (lastAttempt == 0 || SystemClock.elapsedRealtime() - lastAttempt >= REFRESH_RETRY_MS);
+    }
+
+    /** POST /auth/refresh with the current token; called with sessionLock held */
+    private static void refresh(Context ctx) {
+        HttpTransport.Response response = ApiClient.send(
+            "/auth/refresh", new byte[0], "application/json", false, token, 0
+        );
+        String renewed = response.isSuccessful() && response.body != null
+            ? response.body.optString("token", null)
+            : null;
+        if (renewed != null) {
+            ctx.getSharedPreferences(PREFS, Context.MODE_PRIVATE)
+               .edit().putString(KEY_TOKEN, renewed).apply();
+            token       = renewed;
+            expiresAt   = expiryOf(renewed);
+            lastAttempt = 0;
+            Log.d(TAG, "Session renewed");
+        } else if (response.status == 401) {
+            rejected = true; // only a new login can help; stop sending requests until then
+            Log.w(TAG, "Session expired and cannot be renewed — log in again");
+        } else {
+            // Server unreachable: keep the token and try again after REFRESH_RETRY_MS
+            lastAttempt = SystemClock.elapsedRealtime();
+            Log.w(TAG, "Session refresh failed (HTTP " + response.status + ")");
+        }
+    }
+
+    /**
+     * Expiry of a JWT in epoch ms from its "exp" claim. A token whose expiry cannot be read is
+     * never renewed proactively (Long.MAX_VALUE), only after a 401.
+     */
+    static long expiryOf(String jwt) {
+        String[] parts = jwt.split("\\.");
+        if (parts.length < 2) return Long.MAX_VALUE;
+        try {
+            byte[] claims = Base64.decode(parts[1], Base64.URL_SAFE | Base64.NO_PADDING | Base64.NO_WRAP);
+            long   exp    = new JSONObject(new String(claims, StandardCharsets.UTF_8)).optLong("exp", 0);
+            return exp > 0 ? exp * 1000 : Long.MAX_VALUE;
+        } catch (IllegalArgumentException | JSONException e) {
+            return Long.MAX_VALUE;
+        }
+    }
 }
@@ -0,0 +1,84 @@
+package com.yourapp.tracker;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.util.Log;
+
+/**
+ * Keeps the state of the default network in memory, updated by a
+ * {@link ConnectivityManager.NetworkCallback}, so reading it costs no binder call.
+ */
+public class ConnectivityMonitor {
+
+    private static final String TAG = "ConnectivityMonitor";
+
+    /** Called on a ConnectivityManager binder thread when the state changes */
+    public interface Listener {
+        void onChanged(NetworkState previous, NetworkState current);
+    }
+
+    private final ConnectivityManager cm;
+    private final Listener            listener;
+
+    private volatile NetworkState state = NetworkState.OFFLINE;
+
+    private final ConnectivityManager.NetworkCallback callback = new ConnectivityManager.NetworkCallback() {
+        @Override
+        public void onCapabilitiesChanged(Network network, NetworkCapabilities caps) {
+            update(stateOf(caps));
+        }
+
+        @Override
+        public void onLost(Network network) {
+            update(NetworkState.OFFLINE);
+        }
+    };
+
+    public ConnectivityMonitor(Context ctx, Listener listener) {
+        this.cm       = (ConnectivityManager) ctx.getSystemService(Context.CONNECTIVITY_SERVICE);
+        this.listener = listener;
+    }
+
+    /** Read the current state once, then follow the default network */
+    public void start() {
+        Network active = cm.getActiveNetwork();
+        state = active != null ? stateOf(cm.getNetworkCapabilities(active)) : NetworkState.OFFLINE;
+        cm.registerDefaultNetworkCallback(callback);
+    }
+
+    public void stop() {
+        try {
+            cm.unregisterNetworkCallback(callback);
+        } catch (IllegalArgumentException ignored) {} // never registered
+    }
+
+    public NetworkState current() {
+        return state;
+    }
+
+    private void update(NetworkState next) {
+        NetworkState previous = state;
+        if (next.sameAs(previous)) return;
+        state = next;
+        Log.d(TAG, "Network: " + previous + " -> " + next);
+        listener.onChanged(previous, next);
+    }
+
+    private static NetworkState stateOf(NetworkCapabilities caps) {
+        if (caps == null || !caps.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET))
+            return NetworkState.OFFLINE;
+        NetworkState.Transport transport =
+              caps.hasTransport(NetworkCapabilities.TRANSPORT_WIFI)     ? NetworkState.Transport.WIFI
+            : caps.hasTransport(NetworkCapabilities.TRANSPORT_CELLULAR) ? NetworkState.Transport.CELLULAR
+            : caps.hasTransport(NetworkCapabilities.TRANSPORT_ETHERNET) ? NetworkState.Transport.ETHERNET
+            : NetworkState.Transport.OTHER;
+        return new NetworkState(
+            true,
+            caps.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED),
+            !caps.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED),
+            transport
+        );
+    }
+}
@@ -0,0 +1,78 @@
+package com.yourapp.tracker;
+
+import android.content.Context;
+import android.util.Log;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Deferred sync mode: instead of flushing shortly after new fixes, backlog uploads run as
+ * WorkManager jobs ({@link SyncWorker}), so the radio wakes for a few bursts rather than for
+ * every fix.
+ *
+ * Two unique jobs are scheduled when the queue gets new records: an opportunistic one and one
+ * due at the freshness SLA, see {@link DeferredSyncPlan}. Whichever runs first drains the whole
+ * queue through {@link SyncManager}; the other then finds little or nothing to send.
+ */
+public class DeferredSync {
+
+    private static final String TAG = "DeferredSync";
+
+    public static final long DEFAULT_FRESHNESS_SLA_MS = 30 * 60_000L;
+
+    static final String WORK_OPPORTUNISTIC = DeferredSyncPlan.OPPORTUNISTIC;
+    static final String WORK_DEADLINE      = DeferredSyncPlan.DEADLINE;
+
+    private static final long RETRY_BACKOFF_MS = 60_000;
+
+    // Set once jobs are enqueued; cleared when one starts, so fixes after that schedule again
+    private static final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private DeferredSync() {}
+
+    /** Make sure jobs are scheduled for the records now waiting; cheap when they already are */
+    static void schedule(Context ctx, long waitingMs, long slaMs) {
+        if (!scheduled.compareAndSet(false, true)) return;
+        WorkManager wm = WorkManager.getInstance(ctx);
+        for (DeferredSyncPlan.Job job : DeferredSyncPlan.plan(waitingMs, slaMs)) {
+            // A running deadline job gets a successor for records it may have missed
+            ExistingWorkPolicy policy = WORK_DEADLINE.equals(job.name)
+                ? ExistingWorkPolicy.APPEND_OR_REPLACE
+                : ExistingWorkPolicy.KEEP;
+            wm.enqueueUniqueWork(job.name, policy, request(job));
+        }
+        Log.d(TAG, "Sync jobs scheduled, deadline in " + Math.max(0, slaMs - waitingMs) / 1000 + "s");
+    }
+
+    /** Called when a sync job starts */
+    static void onJobStarted() {
+        scheduled.set(false);
+    }
+
+    /** Drop scheduled jobs, e.g. when switching back to eager sync */
+    static void cancel(Context ctx) {
+        WorkManager wm = WorkManager.getInstance(ctx);
+        wm.cancelUniqueWork(WORK_OPPORTUNISTIC);
+        wm.cancelUniqueWork(WORK_DEADLINE);
+        scheduled.set(false);
+    }
+
+    private static OneTimeWorkRequest request(DeferredSyncPlan.Job job) {
+        Constraints constraints = new Constraints.Builder()
+            .setRequiredNetworkType(job.unmetered ? NetworkType.UNMETERED : NetworkType.CONNECTED)
+            .setRequiresCharging(job.charging)
+            .setRequiresBatteryNotLow(job.batteryNotLow)
+            .build();
+        return new OneTimeWorkRequest.Builder(SyncWorker.class)
+            .setConstraints(constraints)
+            .setInitialDelay(job.delayMs, TimeUnit.MILLISECONDS)
+            .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, RETRY_BACKOFF_MS, TimeUnit.MILLISECONDS)
+            .build();
+    }
+}
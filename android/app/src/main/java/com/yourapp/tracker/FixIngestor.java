@@ -0,0 +1,190 @@
+package com.yourapp.tracker;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bounded hand-off between the location callback and storage.
+ *
+ * {@link #offer} never blocks: it appends to a fixed-capacity queue and wakes a dedicated
+ * {@link HandlerThread}, which drains everything queued so far and hands it to the
+ * {@link Sink} as one batch. Slow storage therefore only makes batches larger; it cannot
+ * stall the caller.
+ *
+ * Fixes are copied into two preallocated rings of {@code capacity} slots: callers fill one
+ * while the ingest thread hands the other to the sink, and the two swap on every drain. The
+ * caller may therefore reuse its {@link Fix} objects, the steady state allocates nothing, and
+ * the sink must not keep a fix after {@link Sink#onFixes} returns.
+ *
+ * Backpressure:
+ * <ul>
+ *   <li>Merge: a fix no newer than the last queued one (a duplicate or a late fix from a
+ *       batched delivery) takes no new slot. It replaces the last one only when both have the
+ *       same time and it is more accurate; otherwise it is dropped, so the queue never goes
+ *       back in time.</li>
+ *   <li>Overflow: when the queue is full, every second queued fix is dropped, which halves the
+ *       backlog but keeps its first and last fix, so the track loses detail instead of a
+ *       contiguous stretch.</li>
+ * </ul>
+ */
+public class FixIngestor {
+
+    private static final String TAG = "FixIngestor";
+
+    public static final int   DEFAULT_CAPACITY = 512;
+    private static final long SHUTDOWN_WAIT_MS = 1_000; // called on the main thread
+
+    /** Receives drained fixes on the ingest thread, oldest first; they are reused after the call */
+    public interface Sink {
+        void onFixes(List<Fix> fixes);
+    }
+
+    private final Sink            sink;
+    private final int             capacity;
+    private final HandlerThread   thread;
+    private final Handler         handler;
+    private final Object          lock      = new Object();
+    private final List<Fix>       batch;      // reused by the ingest thread
+    private final Runnable        drainTask = this::drain;
+
+    // Guarded by lock
+    private Fix[]   front;      // filled by offer
+    private int     size;
+    private Fix[]   back;       // handed to the sink
+    private boolean drainScheduled;
+    private long    offered;
+    private long    merged;
+    private long    dropped;
+
+    public FixIngestor(Sink sink) {
+        this(sink, DEFAULT_CAPACITY);
+    }
+
+    public FixIngestor(Sink sink, int capacity) {
+        if (capacity < 2) throw new IllegalArgumentException("Capacity must be at least 2");
+        this.sink     = sink;
+        this.capacity = capacity;
+        this.front    = slots(capacity);
+        this.back     = slots(capacity);
+        this.batch    = new ArrayList<>(capacity);
+        this.thread   = new HandlerThread("FixIngest", Process.THREAD_PRIORITY_BACKGROUND);
+        this.thread.start();
+        this.handler  = new Handler(thread.getLooper());
+    }
+
+    /** Looper of the ingest thread, for other work that must stay off the main thread */
+    public Looper looper() {
+        return thread.getLooper();
+    }
+
+    private static Fix[] slots(int capacity) {
+        Fix[] slots = new Fix[capacity];
+        for (int i = 0; i < capacity; i++) slots[i] = new Fix();
+        return slots;
+    }
+
+    /** Copy a fix into the queue for the ingest thread; returns immediately */
+    public void offer(Fix fix) {
+        boolean schedule;
+        synchronized (lock) {
+            add(fix);
+            schedule       = !drainScheduled;
+            drainScheduled = true;
+        }
+        if (schedule) handler.post(drainTask);
+    }
+
+    /** Copy the first {@code count} fixes, delivered together; they reach the sink as one batch */
+    public void offerAll(Fix[] fixes, int count) {
+        if (count == 0) return;
+        boolean schedule;
+        synchronized (lock) {
+            for (int i = 0; i < count; i++) add(fixes[i]);
+            schedule       = !drainScheduled;
+            drainScheduled = true;
+        }
+        if (schedule) handler.post(drainTask);
+    }
+
+    /** Append with merge and overflow handling; called with the lock held */
+    private void add(Fix fix) {
+        offered++;
+        if (size > 0 && fix.time <= front[size - 1].time) {
+            Fix last = front[size - 1];
+            if (fix.time == last.time && isMoreAccurate(fix, last)) last.set(fix);
+            merged++;
+            return;
+        }
+        if (size >= capacity) thin();
+        front[size++].set(fix);
+    }
+
+    /** An accuracy of 0 means the provider reported none */
+    private static boolean isMoreAccurate(Fix fix, Fix than) {
+        return fix.accuracy > 0 && (than.accuracy == 0 || fix.accuracy < than.accuracy);
+    }
+
+    /**
+     * Process what is still queued, run {@code last} on the ingest thread, then stop it.
+     * Waits at most {@link #SHUTDOWN_WAIT_MS}; slow storage finishes in the background, so the
+     * caller must leave the sink's state to {@code last} instead of using it afterwards.
+     */
+    public void shutdown(Runnable last) {
+        handler.post(drainTask);
+        handler.post(last);
+        thread.quitSafely();
+        try {
+            thread.join(SHUTDOWN_WAIT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (lock) {
+            if (thread.isAlive())
+                Log.w(TAG, "Still storing after " + SHUTDOWN_WAIT_MS + " ms, finishing in the background");
+            else if (offered > 0)
+                Log.d(TAG, "Stopped: offered=" + offered + " merged=" + merged + " dropped=" + dropped);
+        }
+    }
+
+    /** Drop every second queued fix, keeping the oldest and the newest; compacts in place */
+    private void thin() {
+        int before = size;
+        int kept   = 0;
+        for (int i = 0; i < before; i++) {
+            if (i % 2 == 1 && i < before - 1) continue;
+            if (kept != i) {
+                Fix slot    = front[kept]; // swap so every slot stays a distinct object
+                front[kept] = front[i];
+                front[i]    = slot;
+            }
+            kept++;
+        }
+        size     = kept;
+        dropped += before - kept;
+        Log.w(TAG, "Ingest queue full — thinned " + before + " fixes to " + kept);
+    }
+
+    private void drain() {
+        synchronized (lock) {
+            Fix[] filled = front;
+            front = back;
+            back  = filled;
+            for (int i = 0; i < size; i++) batch.add(back[i]);
+            size           = 0;
+            drainScheduled = false;
+        }
+        if (batch.isEmpty()) return;
+        try {
+            sink.onFixes(batch);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Sink failed, " + batch.size() + " fix(es) lost: " + e.getMessage());
+        } finally {
+            batch.clear();
+        }
+    }
+}
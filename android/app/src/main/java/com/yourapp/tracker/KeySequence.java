@@ -0,0 +1,35 @@
+package com.yourapp.tracker;
+
+import android.content.SharedPreferences;
+
+/**
+ * Per-device sequence numbers for record keys, unique across restarts.
+ *
+ * Numbers are reserved from SharedPreferences in blocks of {@link #BLOCK_SIZE}, so only one
+ * write in a block is synchronous. Numbers left in a block when the process dies are skipped,
+ * never reused.
+ */
+public class KeySequence {
+
+    public static final int BLOCK_SIZE = 1_000;
+
+    private static final String PREF_RESERVED = "key_seq_reserved";
+
+    private final SharedPreferences prefs;
+    private long                    next;
+    private long                    reservedUpTo; // exclusive
+
+    public KeySequence(SharedPreferences prefs) {
+        this.prefs        = prefs;
+        this.reservedUpTo = prefs.getLong(PREF_RESERVED, 0);
+        this.next         = reservedUpTo;
+    }
+
+    public synchronized long next() {
+        if (next >= reservedUpTo) {
+            reservedUpTo = next + BLOCK_SIZE;
+            prefs.edit().putLong(PREF_RESERVED, reservedUpTo).commit(); // must hit disk before use
+        }
+        return next++;
+    }
+}
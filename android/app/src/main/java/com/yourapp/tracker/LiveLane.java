@@ -0,0 +1,94 @@
+package com.yourapp.tracker;
+
+import android.content.Context;
+import android.util.Log;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Fast path for the current position: the newest fix is written to {@code live:<deviceId>}
+ * right away, independent of the queued backlog, so the dashboard stays current however
+ * much history is still waiting.
+ *
+ * Only the newest fix matters. While a send is running, later fixes replace each other and
+ * just the last one is sent next. A failed send is not retried; the next fix (or
+ * {@link #resend} after reconnecting) supersedes it. The fix is still queued for history.
+ * Fixes are copied into a preallocated slot, so callers may reuse theirs.
+ */
+public class LiveLane {
+
+    private static final String TAG        = "LiveLane";
+    private static final int    TIMEOUT_MS = 5_000; // a stale position is worth little
+
+    private final Context              ctx;
+    private final String               endpoint;
+    private final String               deviceId;
+    private final ExecutorService      executor = Executors.newSingleThreadExecutor();
+    private final Runnable             sendTask = this::sendPending;
+    private final Fix                  sending  = new Fix(); // executor thread only
+
+    // Guarded by latest
+    private final Fix latest = new Fix();
+    private boolean   hasLatest;
+    private boolean   sendQueued;
+
+    public LiveLane(Context ctx, String deviceId) {
+        this.ctx      = ctx;
+        this.deviceId = deviceId;
+        this.endpoint = "/data/live:" + deviceId;
+    }
+
+    /** Send {@code fix} as the current position, replacing any fix not yet sent */
+    public void publish(Fix fix) {
+        synchronized (latest) {
+            latest.set(fix);
+            hasLatest = true;
+            if (sendQueued) return;
+            sendQueued = true;
+        }
+        executor.execute(sendTask);
+    }
+
+    /** Remember {@code fix} as the current position without sending it; {@link #resend} sends it */
+    public void hold(Fix fix) {
+        synchronized (latest) {
+            latest.set(fix);
+            hasLatest = true;
+        }
+    }
+
+    /** Send the last published fix again, e.g. once the network is back */
+    public void resend() {
+        synchronized (latest) {
+            if (!hasLatest || sendQueued) return;
+            sendQueued = true;
+        }
+        executor.execute(sendTask);
+    }
+
+    /** Stop the send thread; a send under way is abandoned */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void sendPending() {
+        Fix fix;
+        synchronized (latest) {
+            sendQueued = false;
+            fix = sending.set(latest);
+        }
+        String token = AuthService.validToken(ctx);
+        if (token == null) return;
+        try {
+            byte[] body = FixJson.toJson(fix, deviceId).toString().getBytes(StandardCharsets.UTF_8);
+            HttpTransport.Response response =
+                ApiClient.send(endpoint, body, "application/json", false, token, TIMEOUT_MS);
+            if (response.status == 401) AuthService.onUnauthorized(token);
+            if (!response.isSuccessful())
+                Log.w(TAG, "Live position not sent (HTTP " + response.status + ")");
+        } catch (Exception e) {
+            Log.e(TAG, "Live position error: " + e.getMessage());
+        }
+    }
+}
@@ -1,32 +1,150 @@
 package com.yourapp.tracker;
 
-import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+import org.json.JSONException;
 import org.json.JSONObject;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * A local SQLite queue that buffers GPS records when the device is offline.
  * Records are sent to the cloud server and deleted from this queue once confirmed.
+ * Payloads are stored as {@link FixCodec} blobs.
+ *
+ * Writes use group commit: enqueued records are held in memory for up to the commit
+ * window and then written together in one transaction. A crash loses at most one window.
+ * Fixes from {@link #enqueueFix} are encoded into pooled buffer slots and their keys are built
+ * by SQLite, so a steady stream of fixes does not allocate per record.
+ *
+ * Reads for upload go through two watermarks on the record id. Records up to
+ * {@code claimedUpTo} have been handed out by {@link #claim}; records up to
+ * {@code ackedUpTo} were confirmed by the server and removed with one range delete.
+ * Ids only grow and each commit is visible as a whole, so claiming never skips a row
+ * that is committed concurrently.
+ *
+ * Pending, in-flight and acknowledged counts are kept in memory: loaded once when the
+ * database opens, then updated on enqueue, claim and ack.
+ *
+ * Retention: the queue is kept within a record and byte budget. Once a commit pushes it past
+ * the budget, unclaimed rows are thinned with {@link TrackThinner}, oldest first, until the
+ * queue is back under {@link #RETENTION_TARGET} of the budget. Each sweep over the backlog uses
+ * a coarser tolerance than the one before, so the oldest stretches lose detail first and a
+ * long offline period still syncs as a usable track. Only if the coarsest sweep is not enough
+ * are the oldest rows dropped outright. Writes never fail because of the budget.
+ *
+ * Schema upgrades run one version step at a time and keep pending rows.
  */
-public class LocalQueue extends SQLiteOpenHelper {
+public class LocalQueue extends SQLiteOpenHelper implements RecordQueue {
 
+    private static final String TAG        = "LocalQueue";
     private static final String DB_NAME    = "tracker_queue.db";
-    private static final int    DB_VERSION = 1;
+    private static final int    DB_VERSION = 3;
     private static final String TABLE      = "pending_records";
 
-    public static class Record {
-        public long   id;
-        public String key;
-        public String payload;
+    // Fixed column order for page reads, so rows are read by index without name lookups
+    private static final String[] PAGE_COLUMNS = {"id", "key", "payload"};
+    private static final int      COL_ID       = 0;
+    private static final int      COL_KEY      = 1;
+    private static final int      COL_PAYLOAD  = 2;
+
+    // Group commit — buffered records are written at most this long after being enqueued
+    private static final long DEFAULT_COMMIT_WINDOW_MS = 15_000;
+    private static final int  MAX_BUFFERED_RECORDS     = 256;
+    private static final long CLOSE_WAIT_MS            = 2_000;
+    private static final long COMMIT_RETRY_MS          = 5_000;  // after a failed commit
+    private static final int  MAX_UNWRITTEN_RECORDS    = 4_096;  // kept in memory while commits fail
+
+    // Retention — thinning starts above the budget and stops below RETENTION_TARGET of it
+    public static final int       DEFAULT_MAX_RECORDS = 100_000;
+    public static final long      DEFAULT_MAX_BYTES   = 8L * 1024 * 1024;
+    public static final double    RETENTION_TARGET    = 0.8;
+    private static final double[] THIN_TOLERANCES_M   = {10, 25, 50, 100, 250}; // one per sweep
+    private static final int      THIN_PAGE           = 512;
+
+    /** A record waiting for the commit: either a key and payload, or a fix encoded in place */
+    private static class Buffered {
+        String       key;        // null for a fix
+        byte[]       payload;
+        String       keyPrefix;  // fix: key is keyPrefix + seq
+        long         seq;
+        final byte[] encoded = new byte[FixCodec.MAX_SIZE];
+        int          encodedLength;
+        long         created;
     }
 
+    private final Object                   bufferLock = new Object();
+    private final Object                   commitLock = new Object();
+    private final ScheduledExecutorService committer  = Executors.newSingleThreadScheduledExecutor();
+
+    // Guarded by bufferLock; buffer and spare swap on every commit, free holds unused slots
+    private List<Buffered>       buffer = new ArrayList<>();
+    private List<Buffered>       spare  = new ArrayList<>();
+    private final List<Buffered> free   = new ArrayList<>();
+    private ScheduledFuture<?>   scheduledCommit;
+    private long                 commitWindowMs = DEFAULT_COMMIT_WINDOW_MS;
+
+    // Guarded by commitLock
+    private SQLiteStatement insertStatement;
+    private SQLiteStatement insertFixStatement;
+    private final byte[][]  blobs = new byte[FixCodec.MAX_SIZE + 1][]; // exact-length copies, by length
+
+    private volatile int  maxRecords = DEFAULT_MAX_RECORDS;
+    private volatile long maxBytes   = DEFAULT_MAX_BYTES;
+    private final AtomicBoolean retentionQueued = new AtomicBoolean();
+
+    private final Object watermarkLock = new Object();
+    private long         claimedUpTo;
+    private long         ackedUpTo;
+
+    private final QueueCounters counters = new QueueCounters();
+
     public LocalQueue(Context ctx) {
-        super(ctx, DB_NAME, null, DB_VERSION);
+        this(ctx, DEFAULT_MAX_RECORDS, DEFAULT_MAX_BYTES);
+    }
+
+    /** A queue with a retention budget of {@code maxRecords} rows and {@code maxBytes} of keys and payloads */
+    public LocalQueue(Context ctx, int maxRecords, long maxBytes) {
+        this(ctx, DB_NAME, maxRecords, maxBytes);
+    }
+
+    /** A queue in its own database file {@code name}, e.g. for records that sync separately from fixes */
+    public LocalQueue(Context ctx, String name, int maxRecords, long maxBytes) {
+        super(ctx, name, null, DB_VERSION);
+        if (maxRecords <= 0 || maxBytes <= 0) throw new IllegalArgumentException("Retention budget must be positive");
+        this.maxRecords = maxRecords;
+        this.maxBytes   = maxBytes;
+        setWriteAheadLoggingEnabled(true); // readers never block the committer
+        committer.execute(() -> {
+            getWritableDatabase(); // open (and count) off the caller's thread
+            enforceRetention();    // a budget lowered since the last run applies right away
+        });
+    }
+
+    /** Keep at most about {@code records} rows and {@code bytes} of keys and payloads */
+    public void setRetention(int records, long bytes) {
+        if (records <= 0 || bytes <= 0) throw new IllegalArgumentException("Retention budget must be positive");
+        maxRecords = records;
+        maxBytes   = bytes;
+        if (overBudget(1.0) && retentionQueued.compareAndSet(false, true))
+            committer.execute(this::enforceRetention);
+    }
+
+    /** How long enqueued records may wait before being committed; 0 commits every record immediately */
+    public void setCommitWindow(long millis) {
+        if (millis < 0) throw new IllegalArgumentException("Commit window must not be negative");
+        synchronized (bufferLock) {
+            commitWindowMs = millis;
+        }
     }
 
     @Override
@@ -35,55 +153,466 @@ public class LocalQueue extends SQLiteOpenHelper {
             "CREATE TABLE " + TABLE + " (" +
             "  id      INTEGER PRIMARY KEY AUTOINCREMENT," +
             "  key     TEXT NOT NULL," +
-            "  payload TEXT NOT NULL," +
-            "  created INTEGER NOT NULL" +
+            "  payload BLOB NOT NULL," +
+            "  created INTEGER NOT NULL," +
+            "  thinned INTEGER NOT NULL DEFAULT 0" + // retention sweeps this row has been through
             ")"
         );
     }
 
+    /** Count the rows left from earlier runs; called once, before this instance writes any */
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        Cursor c = db.rawQuery(
+            "SELECT COUNT(*), TOTAL(LENGTH(key) + LENGTH(payload)) FROM " + TABLE, null
+        );
+        try {
+            if (c.moveToFirst()) counters.loaded(c.getLong(0), c.getLong(1));
+        } finally {
+            c.close();
+        }
+    }
+
+    /** One step per version, each written against that version's schema; pending rows are kept */
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldV, int newV) {
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE);
-        onCreate(db);
+        if (oldV < 2) migrateToBinaryPayloads(db);
+        if (oldV < 3) db.execSQL("ALTER TABLE " + TABLE + " ADD COLUMN thinned INTEGER NOT NULL DEFAULT 0");
+    }
+
+    /** Version 1 stored JSON text payloads; re-encode pending rows so they are not lost */
+    private void migrateToBinaryPayloads(SQLiteDatabase db) {
+        String old = TABLE + "_v1";
+        db.execSQL("ALTER TABLE " + TABLE + " RENAME TO " + old);
+        db.execSQL(
+            "CREATE TABLE " + TABLE + " (" +
+            "  id      INTEGER PRIMARY KEY AUTOINCREMENT," +
+            "  key     TEXT NOT NULL," +
+            "  payload BLOB NOT NULL," +
+            "  created INTEGER NOT NULL" +
+            ")"
+        );
+
+        SQLiteStatement insert = db.compileStatement(
+            "INSERT INTO " + TABLE + " (id, key, payload, created) VALUES (?, ?, ?, ?)"
+        );
+        Cursor c = db.rawQuery("SELECT id, key, payload, created FROM " + old + " ORDER BY id", null);
+        try {
+            while (c.moveToNext()) {
+                Fix fix;
+                try {
+                    fix = FixJson.fromJson(new JSONObject(c.getString(2)));
+                } catch (JSONException e) {
+                    continue; // unreadable rows could never be uploaded either
+                }
+                insert.bindLong(1, c.getLong(0));
+                insert.bindString(2, c.getString(1));
+                insert.bindBlob(3, FixCodec.encode(fix));
+                insert.bindLong(4, c.getLong(3));
+                insert.executeInsert();
+            }
+        } finally {
+            c.close();
+            insert.close();
+        }
+        db.execSQL("DROP TABLE " + old);
+    }
+
+    /** Add a new record to the queue; it is written to disk within the commit window */
+    @Override
+    public void enqueue(String key, byte[] payload) {
+        counters.enqueued(QueueCounters.sizeOf(key, payload));
+        boolean commitNow;
+        synchronized (bufferLock) {
+            Buffered record = obtain();
+            record.key     = key;
+            record.payload = payload;
+            commitNow = buffered(record);
+        }
+        if (commitNow) commit();
+    }
+
+    /** Add a fix under {@code keyPrefix + seq}; nothing is allocated once the slot pool is warm */
+    @Override
+    public void enqueueFix(String keyPrefix, long seq, Fix fix) {
+        boolean commitNow;
+        int     length;
+        synchronized (bufferLock) {
+            Buffered record = obtain();
+            record.keyPrefix     = keyPrefix;
+            record.seq           = seq;
+            record.encodedLength = length = FixCodec.encode(fix, record.encoded, 0);
+            commitNow = buffered(record);
+        }
+        counters.enqueued(QueueCounters.sizeOf(keyPrefix, seq, length));
+        if (commitNow) commit();
+    }
+
+    /** A cleared slot from the pool; called with bufferLock held */
+    private Buffered obtain() {
+        int n = free.size();
+        return n > 0 ? free.remove(n - 1) : new Buffered();
+    }
+
+    /**
+     * Append a filled slot and arrange its commit; called with bufferLock held.
+     * @return true if the caller must commit right away
+     */
+    private boolean buffered(Buffered record) {
+        record.created = System.currentTimeMillis();
+        buffer.add(record);
+        boolean commitNow = commitWindowMs == 0 || buffer.size() >= MAX_BUFFERED_RECORDS;
+        if (!commitNow && scheduledCommit == null) {
+            scheduledCommit = committer.schedule(this::commit, commitWindowMs, TimeUnit.MILLISECONDS);
+        }
+        return commitNow;
+    }
+
+    /**
+     * Write all buffered records to disk in a single transaction. If that fails they stay
+     * buffered, ahead of newer records, and the exception is rethrown.
+     */
+    @Override
+    public void commit() {
+        synchronized (commitLock) {
+            List<Buffered> batch;
+            synchronized (bufferLock) {
+                if (scheduledCommit != null) {
+                    scheduledCommit.cancel(false);
+                    scheduledCommit = null;
+                }
+                if (buffer.isEmpty()) return;
+                batch  = buffer;
+                buffer = spare;
+                spare  = null; // the batch becomes the spare once written
+            }
+
+            long    start   = System.nanoTime();
+            boolean written = false;
+            try {
+                insert(batch);
+                written = true;
+            } finally {
+                QueueCounters.commitLatency.recordMicrosSince(start);
+                synchronized (bufferLock) {
+                    if (written) recycle(batch);
+                    else putBack(batch);
+                }
+            }
+        }
+        if (overBudget(1.0) && retentionQueued.compareAndSet(false, true))
+            committer.execute(this::enforceRetention);
+    }
+
+    /** Insert {@code batch} in a single transaction; called with commitLock held */
+    private void insert(List<Buffered> batch) {
+        SQLiteDatabase db = getWritableDatabase();
+        if (insertStatement == null) {
+            insertStatement = db.compileStatement(
+                "INSERT INTO " + TABLE + " (key, payload, created) VALUES (?, ?, ?)"
+            );
+            insertFixStatement = db.compileStatement(
+                "INSERT INTO " + TABLE + " (key, payload, created) VALUES (? || ?, ?, ?)"
+            );
+        }
+        db.beginTransaction();
+        try {
+            for (int i = 0, n = batch.size(); i < n; i++) {
+                Buffered r = batch.get(i);
+                if (r.key != null) {
+                    insertStatement.bindString(1, r.key);
+                    insertStatement.bindBlob(2, r.payload);
+                    insertStatement.bindLong(3, r.created);
+                    insertStatement.executeInsert();
+                } else {
+                    insertFixStatement.bindString(1, r.keyPrefix);
+                    insertFixStatement.bindLong(2, r.seq);
+                    insertFixStatement.bindBlob(3, blob(r.encoded, r.encodedLength));
+                    insertFixStatement.bindLong(4, r.created);
+                    insertFixStatement.executeInsert();
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /** Return a written batch's slots to the pool and keep its list as the spare; called with bufferLock held */
+    private void recycle(List<Buffered> batch) {
+        for (int i = 0, n = batch.size(); i < n; i++) returnSlot(batch.get(i));
+        batch.clear();
+        spare = batch;
+    }
+
+    /**
+     * Put a batch that failed to commit back at the head of the buffer, ahead of anything enqueued
+     * meanwhile, and retry later. While commits keep failing only the newest
+     * {@link #MAX_UNWRITTEN_RECORDS} are kept; the rest are dropped and logged. Called with
+     * bufferLock held.
+     */
+    private void putBack(List<Buffered> batch) {
+        batch.addAll(buffer);
+        buffer.clear();
+        spare  = buffer;
+        buffer = batch;
+
+        int excess = buffer.size() - MAX_UNWRITTEN_RECORDS;
+        if (excess > 0) {
+            long bytes = 0;
+            for (int i = 0; i < excess; i++) {
+                Buffered r = buffer.get(i);
+                bytes += r.key != null ? QueueCounters.sizeOf(r.key, r.payload)
+                                       : QueueCounters.sizeOf(r.keyPrefix, r.seq, r.encodedLength);
+                returnSlot(r);
+            }
+            buffer.subList(0, excess).clear();
+            counters.dropped(excess, bytes);
+            Log.e(TAG, "Queue not writable, dropped the " + excess + " oldest unwritten records");
+        }
+        if (scheduledCommit == null && !committer.isShutdown()) {
+            scheduledCommit = committer.schedule(this::commit,
+                Math.max(commitWindowMs, COMMIT_RETRY_MS), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** Clear a slot and return it to the pool; called with bufferLock held */
+    private void returnSlot(Buffered r) {
+        r.key       = null;
+        r.payload   = null;
+        r.keyPrefix = null;
+        free.add(r);
+    }
+
+    /** The first {@code length} bytes of {@code data} in a reused array of exactly that length */
+    private byte[] blob(byte[] data, int length) {
+        byte[] out = blobs[length];
+        if (out == null) out = blobs[length] = new byte[length];
+        System.arraycopy(data, 0, out, 0, length);
+        return out;
+    }
+
+    // --- Retention ---
+
+    private boolean overBudget(double fraction) {
+        return counters.pendingCount() > maxRecords * fraction
+            || counters.pendingBytes() > maxBytes * fraction;
+    }
+
+    /**
+     * Thin the unclaimed backlog, oldest first and one coarser sweep at a time, until the queue
+     * is under {@link #RETENTION_TARGET} of its budget. Runs on the committer thread.
+     */
+    private void enforceRetention() {
+        retentionQueued.set(false);
+        if (!overBudget(1.0)) return;
+        long before = counters.pendingCount();
+        synchronized (watermarkLock) { // claims wait, so nothing is thinned while being handed out
+            SQLiteDatabase db = getWritableDatabase();
+            for (int sweep = 1; sweep <= THIN_TOLERANCES_M.length && overBudget(RETENTION_TARGET); sweep++) {
+                thinSweep(db, sweep);
+            }
+            if (overBudget(RETENTION_TARGET)) dropOldest(db);
+        }
+        Log.w(TAG, "Queue over its retention budget, thinned " + before + " records to " + counters.pendingCount());
     }
 
-    /** Add a new record to the queue */
-    public void enqueue(String key, JSONObject payload) {
-        ContentValues cv = new ContentValues();
-        cv.put("key",     key);
-        cv.put("payload", payload.toString());
-        cv.put("created", System.currentTimeMillis());
-        getWritableDatabase().insert(TABLE, null, cv);
+    /** Thin every unclaimed row not yet through {@code sweep}, page by page from the oldest */
+    private void thinSweep(SQLiteDatabase db, int sweep) {
+        double    tolerance = THIN_TOLERANCES_M[sweep - 1];
+        Fix[]     fixes     = new Fix[THIN_PAGE];
+        long[]    ids       = new long[THIN_PAGE];
+        long[]    sizes     = new long[THIN_PAGE];
+        boolean[] keep      = new boolean[THIN_PAGE];
+        for (int i = 0; i < THIN_PAGE; i++) fixes[i] = new Fix();
+
+        long after = claimedUpTo;
+        while (overBudget(RETENTION_TARGET)) {
+            long last = after;
+            int  n    = 0;
+            Cursor c = db.rawQuery(
+                "SELECT id, LENGTH(key), payload FROM " + TABLE +
+                " WHERE id > ? AND thinned < ? ORDER BY id LIMIT " + THIN_PAGE,
+                new String[]{String.valueOf(after), String.valueOf(sweep)}
+            );
+            try {
+                while (c.moveToNext()) {
+                    last = c.getLong(0);
+                    byte[] payload = c.getBlob(2);
+                    if (!FixCodec.isFix(payload)) continue; // only fixes can be thinned
+                    FixCodec.decode(payload, fixes[n]);
+                    ids[n]   = last;
+                    sizes[n] = c.getLong(1) + payload.length;
+                    n++;
+                }
+            } finally {
+                c.close();
+            }
+            if (last == after) return; // swept the whole backlog
+
+            TrackThinner.thin(fixes, n, tolerance, keep);
+            long rows  = 0;
+            long bytes = 0;
+            SQLiteStatement delete = db.compileStatement("DELETE FROM " + TABLE + " WHERE id = ?");
+            db.beginTransaction();
+            try {
+                for (int i = 0; i < n; i++) {
+                    if (keep[i]) continue;
+                    delete.bindLong(1, ids[i]);
+                    delete.executeUpdateDelete();
+                    rows++;
+                    bytes += sizes[i];
+                }
+                db.execSQL(
+                    "UPDATE " + TABLE + " SET thinned = ? WHERE id > ? AND id <= ? AND thinned < ?",
+                    new Object[]{sweep, after, last, sweep}
+                );
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+                delete.close();
+            }
+            counters.dropped(rows, bytes);
+            after = last;
+        }
     }
 
-    /** Get all pending records, oldest first */
-    public List<Record> getPending() {
-        List<Record> list = new ArrayList<>();
+    /** Last resort once the coarsest sweep is done: drop the oldest unclaimed rows */
+    private void dropOldest(SQLiteDatabase db) {
+        while (overBudget(RETENTION_TARGET)) {
+            String[] bound = {String.valueOf(claimedUpTo)};
+            String   page  = "SELECT id FROM " + TABLE + " WHERE id > ? ORDER BY id LIMIT " + THIN_PAGE;
+            long     bytes = 0;
+            int      rows;
+            db.beginTransaction();
+            try {
+                Cursor c = db.rawQuery(
+                    "SELECT TOTAL(LENGTH(key) + LENGTH(payload)) FROM " + TABLE + " WHERE id IN (" + page + ")", bound
+                );
+                try {
+                    if (c.moveToFirst()) bytes = c.getLong(0);
+                } finally {
+                    c.close();
+                }
+                rows = db.delete(TABLE, "id IN (" + page + ")", bound);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            if (rows == 0) return; // the rest is in flight
+            counters.dropped(rows, bytes);
+            Log.w(TAG, "Retention budget exhausted, dropped the " + rows + " oldest records");
+        }
+    }
+
+    /**
+     * Get up to {@code limit} pending records with an id above {@code afterId}, oldest first.
+     * Walk the queue page by page by passing the last id of the previous page; ids follow
+     * insertion order and are the table's primary key, so each page is a range scan.
+     */
+    public List<Record> getPage(long afterId, int limit) {
+        List<Record> page = new ArrayList<>(limit);
         Cursor c = getReadableDatabase().query(
-            TABLE, null, null, null, null, null, "created ASC"
+            TABLE, PAGE_COLUMNS, "id > ?", new String[]{String.valueOf(afterId)},
+            null, null, "id ASC", String.valueOf(limit)
         );
-        while (c.moveToNext()) {
-            Record r = new Record();
-            r.id      = c.getLong(c.getColumnIndexOrThrow("id"));
-            r.key     = c.getString(c.getColumnIndexOrThrow("key"));
-            r.payload = c.getString(c.getColumnIndexOrThrow("payload"));
-            list.add(r);
+        try {
+            while (c.moveToNext()) {
+                Record r = new Record();
+                r.id      = c.getLong(COL_ID);
+                r.key     = c.getString(COL_KEY);
+                r.payload = c.getBlob(COL_PAYLOAD);
+                page.add(r);
+            }
+        } finally {
+            c.close();
         }
-        c.close();
-        return list;
+        return page;
     }
 
-    /** Remove a successfully synced record */
-    public void delete(long id) {
-        getWritableDatabase().delete(TABLE, "id = ?", new String[]{String.valueOf(id)});
+    /**
+     * Claim up to {@code limit} of the oldest unclaimed records for upload.
+     * Claimed records are not handed out again until they are released.
+     */
+    @Override
+    public List<Record> claim(int limit) {
+        synchronized (watermarkLock) {
+            List<Record> page = getPage(claimedUpTo, limit);
+            if (!page.isEmpty()) claimedUpTo = page.get(page.size() - 1).id;
+            counters.claimed(page.size());
+            return page;
+        }
+    }
+
+    /** Acknowledge every record with an id up to {@code upToId} and delete them in one statement */
+    @Override
+    public void ack(long upToId) {
+        synchronized (watermarkLock) {
+            if (upToId <= ackedUpTo) return;
+            SQLiteDatabase db    = getWritableDatabase();
+            String[]       bound = {String.valueOf(upToId)};
+            long           bytes = 0;
+            int            rows;
+            db.beginTransaction();
+            try {
+                Cursor c = db.rawQuery(
+                    "SELECT TOTAL(LENGTH(key) + LENGTH(payload)) FROM " + TABLE + " WHERE id <= ?", bound
+                );
+                try {
+                    if (c.moveToFirst()) bytes = c.getLong(0);
+                } finally {
+                    c.close();
+                }
+                rows = db.delete(TABLE, "id <= ?", bound);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            counters.acked(rows, bytes);
+            ackedUpTo   = upToId;
+            claimedUpTo = Math.max(claimedUpTo, upToId);
+        }
     }
 
-    /** Number of records waiting to be synced */
+    /** Hand claimed but unacknowledged records out again on the next claim */
+    @Override
+    public void release() {
+        synchronized (watermarkLock) {
+            claimedUpTo = ackedUpTo;
+            counters.released();
+        }
+    }
+
+    /** Number of records waiting to be synced, including those not yet committed */
+    @Override
     public int pendingCount() {
-        Cursor c = getReadableDatabase().rawQuery("SELECT COUNT(*) FROM " + TABLE, null);
-        c.moveToFirst();
-        int count = c.getInt(0);
-        c.close();
-        return count;
+        return counters.pendingCount();
+    }
+
+    @Override
+    public Stats stats() {
+        return counters.snapshot();
+    }
+
+    /** Commit anything still buffered, let a running retention sweep finish, then close the database */
+    @Override
+    public synchronized void close() {
+        commit();
+        committer.shutdown();
+        try {
+            if (!committer.awaitTermination(CLOSE_WAIT_MS, TimeUnit.MILLISECONDS))
+                Log.w(TAG, "Retention sweep still running at close");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (commitLock) {
+            if (insertStatement != null) {
+                insertStatement.close();
+                insertFixStatement.close();
+                insertStatement    = null;
+                insertFixStatement = null;
+            }
+        }
+        super.close();
     }
 }
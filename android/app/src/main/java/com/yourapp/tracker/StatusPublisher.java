@@ -0,0 +1,84 @@
+package com.yourapp.tracker;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+/**
+ * Coalesces status updates into at most one publish per {@code minIntervalMs}.
+ *
+ * {@link #invalidate} only marks the status stale; it may be called for every fix and from
+ * any thread. The text is rendered when the publish runs, so a burst of updates costs one
+ * render, and the display is skipped when the text did not change. Rendering goes into a
+ * reused buffer; a String is only created for text that is actually shown.
+ */
+public class StatusPublisher {
+
+    public static final long DEFAULT_MIN_INTERVAL_MS = 1_000;
+
+    /** Appends the current status text to an empty buffer; called on the publisher's looper */
+    public interface Renderer {
+        void render(StringBuilder out);
+    }
+
+    /** Shows a status text that differs from the previous one */
+    public interface Display {
+        void show(String text);
+    }
+
+    private final Handler       handler;
+    private final Renderer      renderer;
+    private final Display       display;
+    private final Runnable      publishTask = this::publish;
+    private final StringBuilder text        = new StringBuilder(64); // looper thread only
+
+    private volatile long minIntervalMs = DEFAULT_MIN_INTERVAL_MS;
+
+    private boolean       scheduled;     // guarded by this
+    private volatile long lastPublished; // uptime of the last publish
+    private String        lastText;      // looper thread only
+
+    public StatusPublisher(Looper looper, Renderer renderer, Display display) {
+        this.handler  = new Handler(looper);
+        this.renderer = renderer;
+        this.display  = display;
+    }
+
+    /** Publish at most once per {@code millis} */
+    public void setMinInterval(long millis) {
+        if (millis < 0) throw new IllegalArgumentException("Interval must not be negative");
+        minIntervalMs = millis;
+    }
+
+    /** Mark the status stale; it is published once the rate limit allows */
+    public void invalidate() {
+        synchronized (this) {
+            if (scheduled) return;
+            scheduled = true;
+        }
+        long due = lastPublished + minIntervalMs;
+        handler.postAtTime(publishTask, Math.max(due, SystemClock.uptimeMillis()));
+    }
+
+    /** Show {@code text} right away, e.g. an error, and remember it as the current status */
+    public void showNow(String text) {
+        handler.post(() -> show(text));
+    }
+
+    private void publish() {
+        synchronized (this) {
+            scheduled = false;
+        }
+        lastPublished = SystemClock.uptimeMillis();
+        text.setLength(0);
+        renderer.render(text);
+        if (lastText != null && lastText.contentEquals(text)) return;
+        show(text.toString());
+    }
+
+    private void show(String text) {
+        if (text.equals(lastText)) return;
+        lastText = text;
+        display.show(text);
+    }
+}
@@ -1,97 +1,359 @@
 package com.yourapp.tracker;
 
-import android.content.BroadcastReceiver;
 import android.content.Context;
-import android.content.Intent;
-import android.content.IntentFilter;
-import android.net.ConnectivityManager;
-import android.net.NetworkInfo;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
+import org.json.JSONException;
 import org.json.JSONObject;
-import java.util.List;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
 
 /**
  * Watches for network connectivity changes and flushes the local queue
  * to the cloud server whenever the device comes back online.
+ *
+ * Network state is cached by a {@link ConnectivityMonitor}; what each flush may send over it
+ * is decided by a {@link SyncPolicy} (history on unmetered networks, the live position on any).
+ *
+ * Flushes are scheduled by a {@link FlushScheduler}, so any number of
+ * {@link #flushQueue} calls leads to at most one running and one pending flush.
+ *
+ * The current position does not wait for the backlog: {@link #publishLive} sends it through
+ * a {@link LiveLane}, while queued history drains on background-priority threads within a
+ * bandwidth budget.
+ *
+ * Trip summaries have a queue of their own and are uploaded first in every flush, on any
+ * usable network ({@link SyncPolicy#summaryPlan}), so a trip shows up on the server before
+ * the points it was built from, even while the points wait for Wi-Fi.
+ *
+ * One instance per process, owned by {@link TrackerRuntime}; {@link #shutdown} stops its threads.
  */
 public class SyncManager {
 
     private static final String TAG = "SyncManager";
 
-    private final Context         ctx;
-    private final LocalQueue      queue;
-    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    // Metrics snapshots ride along with a successful flush at most this often
+    private static final long METRICS_UPLOAD_INTERVAL_MS = 15 * 60_000;
 
-    private BroadcastReceiver connectivityReceiver;
+    private static final Metrics.Histogram flushDuration = Metrics.histogram("sync.flush_ms");
+    private static final Metrics.Counter   flushFailures = Metrics.counter("sync.flush_failures");
 
-    public SyncManager(Context ctx, LocalQueue queue) {
-        this.ctx   = ctx;
-        this.queue = queue;
+    // Backlog uploads share the link with the live lane; 0 lifts the cap
+    private static final long DEFAULT_BACKLOG_BYTES_PER_SEC = 64 * 1024;
+
+    // How long shutdown waits for an interrupted flush to return
+    private static final long SHUTDOWN_WAIT_MS = 2_000;
+
+    private final Context                   ctx;
+    private final RecordQueue               queue;
+    private final RecordQueue               summaries;
+    private final String                    deviceId;
+    private final ScheduledExecutorService  executor      = Executors.newSingleThreadScheduledExecutor();
+    private final ExecutorService           uploaders     = Executors.newCachedThreadPool(SyncManager::backlogThread);
+    private final ByteBudget                backlogBudget = new ByteBudget(DEFAULT_BACKLOG_BYTES_PER_SEC);
+    private final BatchUploader             uploader;
+    private final BatchUploader             summaryUploader;
+    private final FlushScheduler            scheduler;
+    private final LiveLane                  liveLane;
+    private final ConnectivityMonitor       connectivity;
+    private final SyncPolicy                policy        = new SyncPolicy();
+    private final Map<String, LongSupplier> gauges        = new LinkedHashMap<>();
+
+    private volatile Runnable progressListener;
+    private volatile long     waitingSince;   // elapsedRealtime when the oldest unsynced record was queued; 0 if none
+    private final Runnable    sessionListener = this::onNewSession;
+
+    private volatile boolean deferred;
+    private volatile long    freshnessSlaMs  = DeferredSync.DEFAULT_FRESHNESS_SLA_MS;
+    private volatile boolean metricsUploads;
+    private long             metricsUploadedAt; // elapsedRealtime; flush thread only
+
+    /**
+     * @param queue      fixes, held back on metered networks
+     * @param summaries  trip summaries, sent ahead of the fixes on any network
+     */
+    public SyncManager(Context ctx, RecordQueue queue, RecordQueue summaries, String deviceId) {
+        this.ctx             = ctx;
+        this.queue           = queue;
+        this.summaries       = summaries;
+        this.deviceId        = deviceId;
+        this.uploader        = new BatchUploader(queue, ApiClient::send, uploaders, backlogBudget, deviceId);
+        this.summaryUploader = new BatchUploader(summaries, ApiClient::send, uploaders, backlogBudget, deviceId);
+        this.scheduler       = new FlushScheduler(executor, () -> flush(historyWaitingMs()), this::pendingCount);
+        this.liveLane        = new LiveLane(ctx, deviceId);
+        this.connectivity    = new ConnectivityMonitor(ctx, this::onNetworkChanged);
+
+        gauges.put("queue.depth", queue::pendingCount);
+        gauges.put("queue.pending_bytes", () -> queue.stats().pendingBytes);
+        gauges.put("queue.oldest_age_ms", () -> {
+            long since = waitingSince;
+            return since == 0 ? 0 : SystemClock.elapsedRealtime() - since;
+        });
+        gauges.put("trips.pending", summaries::pendingCount);
+        for (Map.Entry<String, LongSupplier> gauge : gauges.entrySet()) Metrics.gauge(gauge.getKey(), gauge.getValue());
+    }
+
+    /** Cap on how long history waits for an unmetered network; see {@link SyncPolicy} */
+    public SyncPolicy policy() {
+        return policy;
+    }
+
+    /** Batching and backoff of flushes; see {@link FlushScheduler} */
+    public FlushScheduler scheduler() {
+        return scheduler;
+    }
+
+    /** Limit each upload request to {@code maxRecords} records and roughly {@code maxBytes} of payload */
+    public void setBatchLimits(int maxRecords, int maxBytes) {
+        uploader.setBatchLimits(maxRecords, maxBytes);
+    }
+
+    /**
+     * Upload batches in the binary {@link WireFormat} (default) or as JSON records.
+     * Both are accepted by POST /data; JSON is for servers without the binary decoder.
+     */
+    public void setBinaryUploads(boolean enabled) {
+        uploader.setBinaryUploads(enabled);
+        summaryUploader.setBinaryUploads(enabled);
+    }
+
+    /** Compress upload bodies with gzip (default); the server inflates them transparently */
+    public void setGzipUploads(boolean enabled) {
+        uploader.setGzipUploads(enabled);
+        summaryUploader.setGzipUploads(enabled);
+    }
+
+    /** Cap backlog uploads at {@code bytesPerSecond} of encoded payload; 0 removes the cap */
+    public void setBacklogBandwidth(long bytesPerSecond) {
+        backlogBudget.setRate(bytesPerSecond);
+    }
+
+    /** Allow up to {@code requests} batch uploads in flight at once; 1 uploads strictly one after another */
+    public void setInFlightWindow(int requests) {
+        uploader.setInFlightWindow(requests);
+    }
+
+    /** Send a {@link Metrics} snapshot to {@code metrics:<deviceId>} after a successful flush, at most every 15 minutes */
+    public void setMetricsUploads(boolean enabled) {
+        metricsUploads = enabled;
+    }
+
+    /**
+     * Deferred mode: backlog uploads and the live position go out in WorkManager bursts (see
+     * {@link DeferredSync}) no later than {@code freshnessSlaMs} after a record was queued,
+     * instead of shortly after each fix. Eager mode (the default) flushes through the scheduler.
+     */
+    public void setDeferred(boolean enabled, long freshnessSlaMs) {
+        if (freshnessSlaMs <= 0) throw new IllegalArgumentException("Freshness SLA must be positive");
+        this.freshnessSlaMs = freshnessSlaMs;
+        this.deferred       = enabled;
+        if (!enabled) DeferredSync.cancel(ctx);
+    }
+
+    /** Called on the sync thread after records were acknowledged, e.g. to refresh a status display */
+    public void setProgressListener(Runnable listener) {
+        progressListener = listener;
     }
 
     /** Start watching for connectivity changes */
     public void startWatching() {
-        connectivityReceiver = new BroadcastReceiver() {
-            @Override
-            public void onReceive(Context context, Intent intent) {
-                if (isOnline()) {
-                    Log.d(TAG, "Network back online — flushing queue");
-                    flushQueue();
-                }
-            }
-        };
-        ctx.registerReceiver(
-            connectivityReceiver,
-            new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION)
-        );
+        connectivity.start();
+        AuthService.addSessionListener(sessionListener);
     }
 
     /** Stop watching (call in onDestroy) */
     public void stopWatching() {
-        if (connectivityReceiver != null) {
-            try {
-                ctx.unregisterReceiver(connectivityReceiver);
-            } catch (Exception ignored) {}
+        AuthService.removeSessionListener(sessionListener);
+        connectivity.stop();
+    }
+
+    /**
+     * Stop watching, stop every thread and unregister the gauges; the queues may be closed once
+     * this returns. A flush under way is interrupted and given a moment to release its claims.
+     */
+    public void shutdown() {
+        stopWatching();
+        executor.shutdownNow();
+        uploaders.shutdownNow();
+        liveLane.shutdown();
+        for (Map.Entry<String, LongSupplier> gauge : gauges.entrySet()) Metrics.removeGauge(gauge.getKey(), gauge.getValue());
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_WAIT_MS, TimeUnit.MILLISECONDS))
+                Log.w(TAG, "Flush still running at shutdown");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
-    /** Upload all pending records to the server */
+    /** Flush when the network becomes usable, or unmetered so held-back history can go */
+    private void onNetworkChanged(NetworkState previous, NetworkState current) {
+        if (!current.usable() || deferred) return; // deferred jobs carry their own network constraints
+        if (!previous.usable()) {
+            Log.d(TAG, "Network back online — flushing queue");
+            liveLane.resend(); // the current position first, then the backlog
+            scheduler.requestNow();
+        } else if (previous.metered && !current.metered) {
+            scheduler.requestNow();
+        }
+    }
+
+    /** Send {@code fix} as the device's current position now, ahead of any backlog */
+    public void publishLive(Fix fix) {
+        if (!deferred && policy.plan(connectivity.current(), 0).live) {
+            liveLane.publish(fix);
+        } else {
+            liveLane.hold(fix); // sent once the network is back, or with the next deferred burst
+        }
+    }
+
+    /** Ask for pending records to be uploaded; batched by the scheduler, or by WorkManager when deferred */
     public void flushQueue() {
-        executor.execute(() -> {
-            String token = AuthService.getToken(ctx);
-            if (token == null || !isOnline()) return;
-
-            List<LocalQueue.Record> pending = queue.getPending();
-            if (pending.isEmpty()) return;
-
-            Log.d(TAG, "Flushing " + pending.size() + " pending record(s)");
-
-            for (LocalQueue.Record record : pending) {
-                try {
-                    JSONObject payload  = new JSONObject(record.payload);
-                    JSONObject response = ApiClient.post("/data/" + record.key, payload, token);
-
-                    if (response != null) {
-                        queue.delete(record.id); // only delete after confirmed upload
-                        Log.d(TAG, "Synced record id=" + record.id);
-                    } else {
-                        Log.w(TAG, "Failed to sync record id=" + record.id + " — will retry later");
-                        break; // stop if server is unreachable
-                    }
-                } catch (Exception e) {
-                    Log.e(TAG, "Sync error: " + e.getMessage());
-                    break;
-                }
-            }
-        });
+        if (waitingSince == 0) waitingSince = SystemClock.elapsedRealtime();
+        if (deferred) {
+            DeferredSync.schedule(ctx, historyWaitingMs(), freshnessSlaMs);
+        } else {
+            scheduler.request();
+        }
+    }
+
+    /**
+     * Upload everything pending now and wait for the result; used by deferred sync jobs.
+     * History is sent on any network, since the job's constraints already chose it.
+     * @return false if an upload failed and the job should be retried
+     */
+    public boolean syncNow() {
+        liveLane.resend();
+        try {
+            return executor.submit(() -> flush(Long.MAX_VALUE)).get();
+        } catch (ExecutionException e) {
+            Log.e(TAG, "Sync error: " + e.getCause());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Upload all pending records through the {@link BatchUploader}, within what the
+     * {@link SyncPolicy} allows on the current network. Runs on the scheduler's thread.
+     * @param historyWaitingMs  how long history has waited, for the {@link SyncPolicy}
+     * @return false if an upload failed and should be retried after a backoff
+     */
+    private boolean flush(long historyWaitingMs) {
+        long    start = System.nanoTime();
+        boolean ok    = false;
+        try {
+            ok = uploadPending(historyWaitingMs);
+            return ok;
+        } finally {
+            flushDuration.recordMillisSince(start);
+            if (!ok) flushFailures.inc();
+        }
+    }
+
+    private boolean uploadPending(long historyWaitingMs) {
+        NetworkState    network     = connectivity.current();
+        SyncPolicy.Plan plan        = policy.plan(network, historyWaitingMs);
+        SyncPolicy.Plan summaryPlan = summaries.pendingCount() > 0 ? policy.summaryPlan(network) : SyncPolicy.Plan.NONE;
+        if (!plan.history && !summaryPlan.history) return true; // nothing to retry until the network changes
+        String token = AuthService.validToken(ctx); // renews the session first if it is about to expire
+        if (token == null) {
+            Log.w(TAG, "No valid session — sync paused until the next login");
+            scheduler.pause();
+            return true;
+        }
+
+        BatchUploader.Result result = summaryPlan.history
+            ? summaryUploader.upload(token, summaryPlan, this::onProgress)
+            : null;
+        if (result != null) logResult(result, "trip(s)");
+        if ((result == null || !result.failed) && plan.history) {
+            result = uploader.upload(token, plan, this::onProgress);
+            logResult(result, "record(s)");
+            if (!result.failed) waitingSince = 0; // nothing left waiting
+        }
+        if (!result.failed) {
+            if (metricsUploads) uploadMetrics(token);
+            return true;
+        }
+        Log.w(TAG, "Upload failed (HTTP " + result.lastStatus + ") — will retry later");
+        if (result.unauthorized) {
+            // Not a connectivity problem: renew the session on the next flush instead of backing off
+            AuthService.onUnauthorized(token);
+            scheduler.request();
+            return true;
+        }
+        return false;
+    }
+
+    private static void logResult(BatchUploader.Result result, String what) {
+        if (result.synced > 0)   Log.d(TAG, "Synced " + result.synced + " " + what);
+        if (result.rejected > 0) Log.w(TAG, "Dropped " + result.rejected + " " + what + " the server rejected");
+    }
+
+    private void onProgress() {
+        Runnable listener = progressListener;
+        if (listener != null) listener.run();
+    }
+
+    /** Piggyback a metrics snapshot on a flush, while the radio is awake anyway */
+    private void uploadMetrics(String token) {
+        long now = SystemClock.elapsedRealtime();
+        if (metricsUploadedAt != 0 && now - metricsUploadedAt < METRICS_UPLOAD_INTERVAL_MS) return;
+        try {
+            JSONObject snapshot = Metrics.snapshot()
+                .put("device_id", deviceId)
+                .put("timestamp", System.currentTimeMillis());
+            HttpTransport.Response response = ApiClient.send(
+                "/data/metrics:" + deviceId, snapshot.toString().getBytes(StandardCharsets.UTF_8),
+                "application/json", uploader.gzipUploads(), token, 0
+            );
+            if (response.isSuccessful()) metricsUploadedAt = now;
+        } catch (JSONException e) {
+            Log.w(TAG, "Metrics not sent: " + e.getMessage());
+        }
     }
 
+    /** A login started a new session: resume a sync paused for lack of one */
+    private void onNewSession() {
+        scheduler.resume();
+        liveLane.resend();
+    }
+
+    private static Thread backlogThread(Runnable task) {
+        return new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            task.run();
+        }, "SyncUpload");
+    }
+
+    /** Whether the default network is usable, from cached state */
     public boolean isOnline() {
-        ConnectivityManager cm =
-            (ConnectivityManager) ctx.getSystemService(Context.CONNECTIVITY_SERVICE);
-        NetworkInfo info = cm.getActiveNetworkInfo();
-        return info != null && info.isConnected();
+        return connectivity.current().usable();
+    }
+
+    /** Records waiting for upload, trips included */
+    private int pendingCount() {
+        return queue.pendingCount() + summaries.pendingCount();
+    }
+
+    /**
+     * How long the oldest unsynced record has been waiting, measured from the first
+     * {@link #flushQueue} after the queue was last drained; 0 if nothing is waiting
+     */
+    private long historyWaitingMs() {
+        if (queue.pendingCount() == 0) return 0;
+        long now = SystemClock.elapsedRealtime();
+        if (waitingSince == 0) waitingSince = now; // left from an earlier run: its age is unknown
+        return now - waitingSince;
     }
 }
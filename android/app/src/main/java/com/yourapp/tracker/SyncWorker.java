@@ -0,0 +1,38 @@
+package com.yourapp.tracker;
+
+import android.content.Context;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+/**
+ * One burst of deferred sync (see {@link DeferredSync}): drains the queue through the process's
+ * {@link SyncManager}, which the service shares when it is running (see {@link TrackerRuntime}).
+ */
+public class SyncWorker extends Worker {
+
+    private static final String TAG = "SyncWorker";
+
+    public SyncWorker(@NonNull Context ctx, @NonNull WorkerParameters params) {
+        super(ctx, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        DeferredSync.onJobStarted();
+        Context ctx = getApplicationContext();
+
+        // Shares the service's queues and sync manager if it is running
+        TrackerRuntime runtime = TrackerRuntime.acquire(ctx);
+        try {
+            return runtime.sync.syncNow() ? Result.success() : Result.retry();
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Deferred sync failed: " + e.getMessage());
+            return Result.retry();
+        } finally {
+            runtime.release();
+        }
+    }
+}
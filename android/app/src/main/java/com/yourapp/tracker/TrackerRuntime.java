@@ -0,0 +1,116 @@
+package com.yourapp.tracker;
+
+import android.content.Context;
+import android.util.Log;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * The process's queues and their {@link SyncManager}, shared by {@link TrackingService} and
+ * {@link SyncWorker}. Only one instance is open at a time: both map or open the same files, and
+ * two queues over one segment log would interleave their appends.
+ *
+ * Reference counted: {@link #acquire} opens it or returns the open one, and the last
+ * {@link #release} shuts the sync manager down and closes the queues. Both may block for a few
+ * seconds, so neither runs on the main thread.
+ */
+final class TrackerRuntime {
+
+    private static final String TAG = "TrackerRuntime";
+
+    // Trip summaries get a small SQLite queue of their own, whatever the queue backend
+    private static final String TRIPS_DB          = "tracker_trips.db";
+    private static final int    TRIPS_MAX_RECORDS = 10_000;
+    private static final long   TRIPS_MAX_BYTES   = 1024 * 1024;
+
+    // Guarded by TrackerRuntime.class
+    private static TrackerRuntime open;
+    private static CountDownLatch closing; // while the last release closes the files
+    private int                   users;
+
+    final RecordQueue queue;
+    final RecordQueue trips;
+    final SyncManager sync;
+
+    private TrackerRuntime(Context ctx) {
+        this.queue = openQueue(ctx);
+        this.trips = openTripQueue(ctx);
+        this.sync  = new SyncManager(ctx, queue, trips, TrackingService.deviceId(ctx));
+        sync.startWatching();
+    }
+
+    /**
+     * The open runtime, opened first if needed; every call must be paired with {@link #release}.
+     * Waits for a runtime that is still closing, so the files are never open twice.
+     */
+    static TrackerRuntime acquire(Context ctx) {
+        boolean interrupted = false;
+        while (true) {
+            CountDownLatch closed;
+            synchronized (TrackerRuntime.class) {
+                if (open == null && closing == null) open = new TrackerRuntime(ctx.getApplicationContext());
+                if (open != null) {
+                    open.users++;
+                    if (interrupted) Thread.currentThread().interrupt();
+                    return open;
+                }
+                closed = closing;
+            }
+            try {
+                closed.await();
+            } catch (InterruptedException e) {
+                interrupted = true; // the caller still needs the runtime; keep its interrupt for later
+            }
+        }
+    }
+
+    /**
+     * Give up this caller's use; the last one stops syncing and closes the queues, which takes
+     * a few seconds at most. An {@link #acquire} meanwhile waits for it.
+     */
+    void release() {
+        CountDownLatch closed;
+        synchronized (TrackerRuntime.class) {
+            if (--users > 0) return;
+            open    = null;
+            closing = closed = new CountDownLatch(1);
+        }
+        try {
+            sync.shutdown();
+            queue.close(); // commits any buffered fixes
+            trips.close();
+        } finally {
+            synchronized (TrackerRuntime.class) {
+                closing = null;
+            }
+            closed.countDown();
+        }
+    }
+
+    private static RecordQueue openQueue(Context ctx) {
+        android.content.SharedPreferences prefs =
+            ctx.getSharedPreferences("tracker_prefs", Context.MODE_PRIVATE);
+        String backend = prefs.getString("queue_backend", TrackingService.BACKEND_SQLITE);
+        if (TrackingService.BACKEND_LOG.equals(backend)) {
+            try {
+                return SegmentLogQueue.open(
+                    new File(ctx.getFilesDir(), "queue_log"), SegmentLogQueue.FsyncPolicy.INTERVAL
+                );
+            } catch (IOException e) {
+                Log.e(TAG, "Segment log unavailable, using SQLite queue: " + e.getMessage());
+            }
+        }
+        return new LocalQueue(
+            ctx,
+            prefs.getInt("queue_max_records", LocalQueue.DEFAULT_MAX_RECORDS),
+            prefs.getInt("queue_max_mb", (int) (LocalQueue.DEFAULT_MAX_BYTES >> 20)) * 1024L * 1024
+        );
+    }
+
+    private static RecordQueue openTripQueue(Context ctx) {
+        LocalQueue queue = new LocalQueue(ctx, TRIPS_DB, TRIPS_MAX_RECORDS, TRIPS_MAX_BYTES);
+        queue.setCommitWindow(0); // a few a day: each one is written through
+        return queue;
+    }
+}
@@ -1,18 +1,26 @@
 package com.yourapp.tracker;
 
 import android.app.*;
+import android.content.Context;
 import android.content.Intent;
 import android.os.*;
 import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.core.app.NotificationCompat;
 import com.google.android.gms.location.*;
-import org.json.JSONObject;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
 
 /**
  * A foreground service that continuously tracks GPS location,
  * saves each point to a local queue, and syncs to the cloud when online.
+ * Trips are summarized on the device as the fixes arrive (see {@link TripAggregator}) and
+ * queued separately, so they reach the server ahead of the raw points.
  */
 public class TrackingService extends Service {
 
@@ -20,15 +28,55 @@ public class TrackingService extends Service {
     private static final String CHANNEL_ID    = "tracker_channel";
     private static final int    NOTIF_ID      = 1;
 
-    // Tracking interval — adjust to balance accuracy vs battery life
-    private static final long INTERVAL_MS   = 10_000; // 10 seconds
-    private static final long FAST_INTERVAL =  5_000; // 5 seconds (fastest allowed)
+    // Queue backend, chosen via the "queue_backend" preference
+    public static final String BACKEND_SQLITE = "sqlite";
+    public static final String BACKEND_LOG    = "log";    // memory-mapped segment log, for 1 Hz tracking
+
+    // Sync mode, chosen via the "sync_mode" preference; "sync_sla_minutes" bounds deferred sync
+    public static final String SYNC_EAGER     = "eager";
+    public static final String SYNC_DEFERRED  = "deferred"; // WorkManager bursts, see DeferredSync
+
+    // Batched delivery ("batched_delivery" preference): the fused provider collects this many
+    // intervals' worth of fixes before waking the app, which then stores them in one transaction
+    private static final int BATCH_INTERVALS = 10;
+
+    // Metrics snapshot in the app's files dir, rewritten this often and on stop; also in dumpsys
+    private static final String METRICS_FILE        = "metrics.json";
+    private static final long   METRICS_INTERVAL_MS = 15 * 60_000;
+
+    private static final Metrics.Counter   fixesReceived = Metrics.counter("fix.received");
+    private static final Metrics.Counter   fixesStored   = Metrics.counter("fix.stored");
+    private static final Metrics.Histogram fixToEnqueue  = Metrics.histogram("fix.to_enqueue_ms");
+    private static final Metrics.Histogram enqueueTime   = Metrics.histogram("queue.enqueue_us");
+    private static final Metrics.Counter   tripsStored   = Metrics.counter("trips.stored");
 
     private FusedLocationProviderClient locationClient;
     private LocationCallback            locationCallback;
-    private LocalQueue                  localQueue;
+    private TrackerRuntime              runtime;        // queues and sync, shared with SyncWorker;
+    private RecordQueue                 localQueue;     // these four are set and used on the
+    private RecordQueue                 tripQueue;      // ingest thread only
     private SyncManager                 syncManager;
     private String                      deviceId;
+    private KeySequence                 keySequence;
+    private FixIngestor                 ingestor;
+    private StatusPublisher             status;
+    private String                      keyPrefix;      // "gps:<deviceId>:", built once
+    private boolean                     batchedDelivery;
+
+    // Reused instead of allocated per delivery
+    private Fix[]                       delivered = new Fix[0];  // main thread only
+    private final Fix                   lastFix   = new Fix();   // ingest thread only
+    private boolean                     hasFix;                  // ingest thread only
+    private NotificationCompat.Builder  notification;            // ingest thread only
+    private Handler                     metricsHandler;
+    private final Runnable              writeMetrics = this::writeMetrics;
+    private volatile boolean            destroyed;
+
+    // Tracking interval and power follow movement — see SamplingPolicy.Mode to tune them.
+    // These and the trip aggregator are only touched on the ingest thread.
+    private final SamplingPolicy samplingPolicy = new SamplingPolicy();
+    private final PointFilter    pointFilter    = new PointFilter();
+    private final TripAggregator trips          = new TripAggregator(this::storeTrip);
 
     @Override
     public void onCreate() {
@@ -37,81 +85,168 @@ public class TrackingService extends Service {
         startForeground(NOTIF_ID, buildNotification("Starting GPS tracker..."));
 
         // Use a stable device ID stored in prefs (avoids needing READ_PHONE_STATE)
-        deviceId = getOrCreateDeviceId();
-
-        localQueue  = new LocalQueue(this);
-        syncManager = new SyncManager(this, localQueue);
-        syncManager.startWatching();
+        deviceId    = deviceId(this);
+        keyPrefix   = "gps:" + deviceId + ":";
+        keySequence = new KeySequence(getSharedPreferences("tracker_prefs", Context.MODE_PRIVATE));
 
+        // Storage, filtering and notifications run on the ingest thread, never on the main looper
+        ingestor = new FixIngestor(this::processFixes);
+        status   = new StatusPublisher(ingestor.looper(), this::renderStatus, this::updateNotification);
+        metricsHandler = new Handler(ingestor.looper());
+        metricsHandler.post(this::attachRuntime); // ahead of the first fixes
+        metricsHandler.postDelayed(writeMetrics, METRICS_INTERVAL_MS);
         setupLocationTracking();
     }
 
+    /**
+     * Open the queues and sync manager, or join those SyncWorker has open. Runs on the ingest
+     * thread: it waits if a previous instance is still closing them.
+     */
+    private void attachRuntime() {
+        runtime     = TrackerRuntime.acquire(this);
+        localQueue  = runtime.queue;
+        tripQueue   = runtime.trips;
+        syncManager = runtime.sync;
+        configureSyncMode();
+        syncManager.setProgressListener(status::invalidate);
+    }
+
     private void setupLocationTracking() {
         locationClient = LocationServices.getFusedLocationProviderClient(this);
 
-        LocationRequest request = LocationRequest.create()
-            .setPriority(LocationRequest.PRIORITY_HIGH_ACCURACY)
-            .setInterval(INTERVAL_MS)
-            .setFastestInterval(FAST_INTERVAL);
+        batchedDelivery = getSharedPreferences("tracker_prefs", Context.MODE_PRIVATE)
+            .getBoolean("batched_delivery", false);
 
         locationCallback = new LocationCallback() {
             @Override
             public void onLocationResult(@NonNull LocationResult result) {
-                for (android.location.Location loc : result.getLocations()) {
-                    handleLocation(loc);
-                }
+                List<android.location.Location> locations = result.getLocations();
+                int                             n         = locations.size();
+                if (delivered.length < n) delivered = grow(delivered, n);
+                for (int i = 0; i < n; i++) toFix(locations.get(i), delivered[i]);
+                ingestor.offerAll(delivered, n); // copied there, so the slots are free again
             }
         };
 
+        requestLocationUpdates(samplingPolicy.mode());
+    }
+
+    /** Start location updates, or replace the running request, with the settings of {@code mode} */
+    private void requestLocationUpdates(SamplingPolicy.Mode mode) {
+        LocationRequest request = LocationRequest.create()
+            .setPriority(mode.power == SamplingPolicy.Power.HIGH_ACCURACY
+                ? LocationRequest.PRIORITY_HIGH_ACCURACY
+                : LocationRequest.PRIORITY_BALANCED_POWER_ACCURACY)
+            .setInterval(mode.intervalMs)
+            .setFastestInterval(mode.fastestIntervalMs);
+        if (batchedDelivery) request.setMaxWaitTime(mode.intervalMs * BATCH_INTERVALS);
+
         try {
             locationClient.requestLocationUpdates(
                 request, locationCallback, Looper.getMainLooper()
             );
-            Log.d(TAG, "Location updates started");
+            Log.d(TAG, "Location updates started: " + mode + (batchedDelivery ? " (batched)" : ""));
         } catch (SecurityException e) {
             Log.e(TAG, "Location permission not granted: " + e.getMessage());
-            updateNotification("Error: location permission missing");
+            status.showNow("Error: location permission missing");
         }
     }
 
-    private void handleLocation(android.location.Location loc) {
+    private static Fix[] grow(Fix[] slots, int size) {
+        Fix[] grown = Arrays.copyOf(slots, size);
+        for (int i = slots.length; i < size; i++) grown[i] = new Fix();
+        return grown;
+    }
+
+    /** Runs on the main looper: convert only, nothing else */
+    private static void toFix(android.location.Location loc, Fix fix) {
+        fix.time     = loc.getTime();     // when the fix was taken, not when it was delivered
+        fix.lat      = loc.getLatitude();
+        fix.lng      = loc.getLongitude();
+        fix.accuracy = loc.getAccuracy();
+        fix.altitude = loc.getAltitude();
+        fix.speed    = loc.getSpeed();    // metres per second
+        fix.bearing  = loc.getBearing();  // degrees
+    }
+
+    /** Runs on the ingest thread with every fix delivered since the last call */
+    private void processFixes(List<Fix> fixes) {
         try {
-            // Key format: gps:<deviceId>:<timestamp>
-            String key = "gps:" + deviceId + ":" + System.currentTimeMillis();
-
-            JSONObject data = new JSONObject();
-            data.put("timestamp",  System.currentTimeMillis());
-            data.put("device_id",  deviceId);
-            data.put("lat",        loc.getLatitude());
-            data.put("lng",        loc.getLongitude());
-            data.put("accuracy_m", loc.getAccuracy());
-            data.put("altitude_m", loc.getAltitude());
-            data.put("speed_ms",   loc.getSpeed());    // metres per second
-            data.put("bearing",    loc.getBearing());  // degrees
-
-            // Always save locally first — never lose a point
-            localQueue.enqueue(key, data);
-
-            // Attempt immediate sync if online
-            if (syncManager.isOnline()) {
+            fixesReceived.add(fixes.size());
+            int stored = 0;
+            for (int i = 0, n = fixes.size(); i < n; i++) {
+                Fix fix = fixes.get(i);
+                if (samplingPolicy.onFix(fix)) requestLocationUpdates(samplingPolicy.mode());
+                trips.offer(fix); // every fix: the filter's thinning would understate moving time
+
+                // Redundant fixes are dropped; everything kept is saved locally first
+                Fix kept = pointFilter.offer(fix);
+                if (kept != null) {
+                    store(kept);
+                    stored++;
+                }
+            }
+
+            if (stored > 0) {
+                // A batched delivery is persisted right away in one transaction, so the committer
+                // does not wake up separately for it
+                if (batchedDelivery) localQueue.commit();
+
+                // Sync soon; the flush scheduler batches these requests
                 syncManager.flushQueue();
             }
 
-            updateNotification(String.format(
-                "%.5f, %.5f  |  Queue: %d",
-                loc.getLatitude(), loc.getLongitude(), localQueue.pendingCount()
-            ));
+            lastFix.set(fixes.get(fixes.size() - 1));
+            hasFix = true;
+            syncManager.publishLive(lastFix); // unfiltered: the dashboard shows where the device is now
+            status.invalidate();
 
         } catch (Exception e) {
-            Log.e(TAG, "handleLocation error: " + e.getMessage());
+            Log.e(TAG, "processFixes error: " + e.getMessage());
         }
     }
 
+    private void store(Fix fix) {
+        // Key format: gps:<deviceId>:<seq> — unique per point, so the server can dedupe resends
+        long start = System.nanoTime();
+        localQueue.enqueueFix(keyPrefix, keySequence.next(), fix);
+        enqueueTime.recordMicrosSince(start);
+        fixToEnqueue.record(System.currentTimeMillis() - fix.time); // includes time held by the filter
+        fixesStored.inc();
+    }
+
+    /** Called by the aggregator on the ingest thread when a trip ends; the trip object is reused */
+    private void storeTrip(Trip trip) {
+        // Key format: trip:<deviceId>:<start millis> — unique per trip, so the server can dedupe resends
+        tripQueue.enqueue("trip:" + deviceId + ":" + trip.startTime, TripCodec.encode(trip));
+        tripsStored.inc();
+        syncManager.flushQueue();
+    }
+
+    /** Rewrite the metrics file; reschedules itself while the service runs */
+    private void writeMetrics() {
+        try {
+            Metrics.writeTo(new File(getFilesDir(), METRICS_FILE));
+        } catch (IOException e) {
+            Log.w(TAG, "Metrics not written: " + e.getMessage());
+        }
+        if (!destroyed) metricsHandler.postDelayed(writeMetrics, METRICS_INTERVAL_MS);
+    }
+
     // --- Helpers ---
 
-    private String getOrCreateDeviceId() {
+    private void configureSyncMode() {
         android.content.SharedPreferences prefs =
             getSharedPreferences("tracker_prefs", Context.MODE_PRIVATE);
+        boolean deferred = SYNC_DEFERRED.equals(prefs.getString("sync_mode", SYNC_EAGER));
+        long    slaMs    = prefs.getInt("sync_sla_minutes", 30) * 60_000L;
+        syncManager.setDeferred(deferred, slaMs);
+        syncManager.setMetricsUploads(prefs.getBoolean("upload_metrics", false));
+    }
+
+    static synchronized String deviceId(Context ctx) {
+        android.content.SharedPreferences prefs =
+            ctx.getSharedPreferences("tracker_prefs", Context.MODE_PRIVATE);
         String id = prefs.getString("device_id", null);
         if (id == null) {
             id = UUID.randomUUID().toString().substring(0, 8);
@@ -120,19 +255,46 @@ public class TrackingService extends Service {
         return id;
     }
 
+    /** Notification text from the latest fix and the queue's in-memory counters */
+    private void renderStatus(StringBuilder out) {
+        if (!hasFix) {
+            out.append("Starting GPS tracker...");
+            return;
+        }
+        appendCoordinate(out, lastFix.lat);
+        out.append(", ");
+        appendCoordinate(out, lastFix.lng);
+        out.append("  |  Queue: ").append(localQueue.pendingCount());
+    }
+
+    /** Append {@code degrees} with five decimals, like {@code %.5f} but without formatting objects */
+    private static void appendCoordinate(StringBuilder out, double degrees) {
+        long scaled = Math.round(Math.abs(degrees) * 1e5);
+        if (degrees < 0 && scaled != 0) out.append('-');
+        out.append(scaled / 100_000).append('.');
+        long fraction = scaled % 100_000;
+        for (long digit = 10_000; digit > 1 && fraction < digit; digit /= 10) out.append('0');
+        out.append(fraction);
+    }
+
+    /** Reuses one builder; the Notification itself is only built when the text changed */
     private void updateNotification(String text) {
+        if (notification == null) notification = notificationBuilder();
         NotificationManager nm = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
-        nm.notify(NOTIF_ID, buildNotification(text));
+        nm.notify(NOTIF_ID, notification.setContentText(text).build());
     }
 
     private Notification buildNotification(String text) {
+        return notificationBuilder().setContentText(text).build();
+    }
+
+    private NotificationCompat.Builder notificationBuilder() {
         return new NotificationCompat.Builder(this, CHANNEL_ID)
             .setContentTitle("CloudTracker")
-            .setContentText(text)
             .setSmallIcon(android.R.drawable.ic_menu_mylocation)
             .setPriority(NotificationCompat.PRIORITY_LOW)
             .setOngoing(true)
-            .build();
+            .setOnlyAlertOnce(true);
     }
 
     private void createNotificationChannel() {
@@ -155,10 +317,29 @@ public class TrackingService extends Service {
     public void onDestroy() {
         if (locationClient != null && locationCallback != null)
             locationClient.removeLocationUpdates(locationCallback);
-        syncManager.stopWatching();
+        destroyed = true;
+        metricsHandler.removeCallbacks(writeMetrics);
+        ingestor.shutdown(this::finish); // stores what is still queued, then finishes
         super.onDestroy();
     }
 
+    /** Last task on the ingest thread: store what the filters hold back and give up the queues */
+    private void finish() {
+        Fix held = pointFilter.flush();
+        if (held != null) store(held);
+        trips.flush();       // a trip under way ends at the last fix
+        localQueue.commit(); // a sync job may keep the queue open after this
+        syncManager.setProgressListener(null);
+        runtime.release();
+        writeMetrics();
+    }
+
     @Override
     public IBinder onBind(Intent intent) { return null; }
+
+    /** {@code adb shell dumpsys activity service com.yourapp.tracker/.TrackingService} */
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        Metrics.dump(writer);
+    }
 }
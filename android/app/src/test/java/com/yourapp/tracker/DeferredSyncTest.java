@@ -0,0 +1,100 @@
+package com.yourapp.tracker;
+
+import android.content.Context;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.work.Configuration;
+import androidx.work.Constraints;
+import androidx.work.NetworkType;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
+import androidx.work.testing.SynchronousExecutor;
+import androidx.work.testing.WorkManagerTestInitHelper;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/** The WorkManager side of deferred sync; the scheduling decision is tested in core's DeferredSyncPlanTest */
+@RunWith(RobolectricTestRunner.class)
+public class DeferredSyncTest {
+
+    private static final long SLA_MS = 30 * 60_000L;
+
+    private Context ctx;
+
+    @Before
+    public void setUp() {
+        ctx = ApplicationProvider.getApplicationContext();
+        WorkManagerTestInitHelper.initializeTestWorkManager(
+            ctx, new Configuration.Builder().setExecutor(new SynchronousExecutor()).build()
+        );
+        DeferredSync.cancel(ctx); // the scheduled flag is static
+    }
+
+    @Test
+    public void scheduleEnqueuesBothJobsWithTheirConstraints() throws Exception {
+        DeferredSync.schedule(ctx, 0, SLA_MS);
+
+        WorkInfo opportunistic = only(DeferredSync.WORK_OPPORTUNISTIC);
+        assertEquals(WorkInfo.State.ENQUEUED, opportunistic.getState());
+        assertEquals(NetworkType.UNMETERED, opportunistic.getConstraints().getRequiredNetworkType());
+        assertTrue(opportunistic.getConstraints().requiresCharging());
+
+        WorkInfo deadline = only(DeferredSync.WORK_DEADLINE);
+        assertEquals(WorkInfo.State.ENQUEUED, deadline.getState());
+        Constraints constraints = deadline.getConstraints();
+        assertEquals(NetworkType.CONNECTED, constraints.getRequiredNetworkType());
+        assertFalse(constraints.requiresCharging());
+        assertTrue(constraints.requiresBatteryNotLow());
+    }
+
+    @Test
+    public void overdueDeadlineJobNoLongerWaitsForTheBattery() throws Exception {
+        DeferredSync.schedule(ctx, SLA_MS + 1, SLA_MS);
+
+        Constraints constraints = only(DeferredSync.WORK_DEADLINE).getConstraints();
+        assertEquals(NetworkType.CONNECTED, constraints.getRequiredNetworkType());
+        assertFalse(constraints.requiresBatteryNotLow());
+    }
+
+    @Test
+    public void scheduleIsANoOpUntilAJobStarts() throws Exception {
+        DeferredSync.schedule(ctx, 0, SLA_MS);
+        WorkManager.getInstance(ctx).cancelUniqueWork(DeferredSync.WORK_DEADLINE).getResult().get();
+
+        DeferredSync.schedule(ctx, 0, SLA_MS);
+        assertFalse(states(DeferredSync.WORK_DEADLINE).contains(WorkInfo.State.ENQUEUED));
+
+        DeferredSync.onJobStarted();
+        DeferredSync.schedule(ctx, 0, SLA_MS);
+        assertTrue(states(DeferredSync.WORK_DEADLINE).contains(WorkInfo.State.ENQUEUED));
+    }
+
+    @Test
+    public void cancelDropsBothJobs() throws Exception {
+        DeferredSync.schedule(ctx, 0, SLA_MS);
+        DeferredSync.cancel(ctx);
+        assertEquals(WorkInfo.State.CANCELLED, only(DeferredSync.WORK_OPPORTUNISTIC).getState());
+        assertEquals(WorkInfo.State.CANCELLED, only(DeferredSync.WORK_DEADLINE).getState());
+    }
+
+    /** The one work item of a unique name */
+    private WorkInfo only(String name) throws Exception {
+        List<WorkInfo> infos = WorkManager.getInstance(ctx).getWorkInfosForUniqueWork(name).get();
+        assertEquals(1, infos.size());
+        return infos.get(0);
+    }
+
+    private List<WorkInfo.State> states(String name) throws Exception {
+        List<WorkInfo.State> states = new ArrayList<>();
+        for (WorkInfo info : WorkManager.getInstance(ctx).getWorkInfosForUniqueWork(name).get())
+            states.add(info.getState());
+        return states;
+    }
+}
@@ -0,0 +1,144 @@
+package com.yourapp.tracker;
+
+import android.os.Handler;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Merge and overflow handling. The ingest thread is held up while fixes are offered, so they all
+ * meet in the queue the way they do behind slow storage.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class FixIngestorTest {
+
+    private final List<Fix>      received = new ArrayList<>(); // copies, on the ingest thread
+    private final CountDownLatch resume   = new CountDownLatch(1);
+    private FixIngestor          ingestor;
+
+    @After
+    public void tearDown() {
+        resume.countDown();
+        if (ingestor != null) drain();
+    }
+
+    @Test
+    public void equalTimeKeepsTheMoreAccurateFix() {
+        start(16);
+        ingestor.offer(fix(1_000, 10));
+        ingestor.offer(fix(1_000, 5));  // more accurate: replaces it
+        ingestor.offer(fix(1_000, 20)); // less accurate: dropped
+        ingestor.offer(fix(2_000, 10));
+
+        List<Fix> fixes = drain();
+        assertEquals(2, fixes.size());
+        assertEquals(1_000, fixes.get(0).time);
+        assertEquals(5, fixes.get(0).accuracy, 0);
+        assertEquals(2_000, fixes.get(1).time);
+    }
+
+    @Test
+    public void unknownAccuracyNeverWinsAndAlwaysLoses() {
+        start(16);
+        ingestor.offer(fix(1_000, 8));
+        ingestor.offer(fix(1_000, 0)); // no accuracy reported: keeps the 8 m fix
+        ingestor.offer(fix(2_000, 0));
+        ingestor.offer(fix(2_000, 30)); // any reported accuracy beats none
+
+        List<Fix> fixes = drain();
+        assertEquals(2, fixes.size());
+        assertEquals(8, fixes.get(0).accuracy, 0);
+        assertEquals(30, fixes.get(1).accuracy, 0);
+    }
+
+    @Test
+    public void olderFixIsDroppedSoTheQueueNeverGoesBack() {
+        start(16);
+        ingestor.offer(fix(1_000, 10));
+        ingestor.offer(fix(3_000, 10));
+        ingestor.offer(fix(2_000, 3)); // late, however accurate
+        ingestor.offer(fix(4_000, 10));
+
+        assertEquals(times(1_000, 3_000, 4_000), times(drain()));
+    }
+
+    @Test
+    public void overflowThinsButKeepsTheFirstAndLastFix() {
+        start(4);
+        for (long t = 1; t <= 5; t++) ingestor.offer(fix(t * 1_000, 10));
+
+        // The fifth fix found the queue full: every second one went, except the newest
+        assertEquals(times(1_000, 3_000, 4_000, 5_000), times(drain()));
+    }
+
+    @Test
+    public void longOverflowStillSpansTheWholeStretch() {
+        start(8);
+        Fix[] batch = new Fix[100];
+        for (int i = 0; i < batch.length; i++) batch[i] = fix(1_000L * (i + 1), 10);
+        ingestor.offerAll(batch, batch.length);
+
+        List<Fix> fixes = drain();
+        assertTrue(fixes.size() + " fixes", fixes.size() <= 8);
+        assertEquals(1_000, fixes.get(0).time);
+        assertEquals(100_000, fixes.get(fixes.size() - 1).time);
+        for (int i = 1; i < fixes.size(); i++) assertTrue(fixes.get(i).time > fixes.get(i - 1).time);
+    }
+
+    /** An ingestor whose thread waits for {@link #drain}, so offers queue up */
+    private void start(int capacity) {
+        ingestor = new FixIngestor(fixes -> {
+            for (int i = 0; i < fixes.size(); i++) received.add(new Fix().set(fixes.get(i)));
+        }, capacity);
+        new Handler(ingestor.looper()).post(() -> {
+            try {
+                resume.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    /** Let the ingest thread run, stop it and return what reached the sink */
+    private List<Fix> drain() {
+        CountDownLatch stopped = new CountDownLatch(1);
+        resume.countDown();
+        ingestor.shutdown(stopped::countDown);
+        ingestor = null;
+        try {
+            assertTrue("ingest thread stuck", stopped.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+        return received;
+    }
+
+    private static Fix fix(long time, float accuracy) {
+        Fix fix = new Fix();
+        fix.time     = time;
+        fix.lat      = 48.2;
+        fix.lng      = 16.4;
+        fix.accuracy = accuracy;
+        return fix;
+    }
+
+    private static List<Long> times(long... times) {
+        List<Long> list = new ArrayList<>();
+        for (long t : times) list.add(t);
+        return list;
+    }
+
+    private static List<Long> times(List<Fix> fixes) {
+        List<Long> list = new ArrayList<>();
+        for (Fix f : fixes) list.add(f.time);
+        return list;
+    }
+}
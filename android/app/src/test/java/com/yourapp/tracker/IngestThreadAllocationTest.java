@@ -0,0 +1,148 @@
+package com.yourapp.tracker;
+
+import android.content.Context;
+import android.os.Handler;
+import androidx.test.core.app.ApplicationProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * The app side of the per-fix path: handing fixes to the ingest thread and buffering them in
+ * the SQLite queue must not allocate per fix once warmed up. Core's IngestAllocationTest covers
+ * the filter and the segment log.
+ *
+ * Robolectric's looper may allocate a little per message, so the bounds are per fix rather than
+ * the flat slack core uses: anything allocated per fix (a key, a boxed time, a copy) is at least
+ * 16 bytes each.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class IngestThreadAllocationTest {
+
+    private static final String DB     = "alloc_test.db";
+    private static final String PREFIX = "fix:device-7:";
+    private static final int    BATCH  = 64;
+    private static final int    ROUNDS = 50;
+    private static final int    FIXES  = BATCH * ROUNDS;
+
+    private final Context ctx = ApplicationProvider.getApplicationContext();
+    private com.sun.management.ThreadMXBean threads;
+    private LocalQueue  queue;
+    private FixIngestor ingestor;
+    private final Fix[] fixes = new Fix[BATCH];
+
+    // Written by the ingest thread only
+    private int  received;
+    private long lastTime;
+    private int  outOfOrder;
+
+    @Before
+    public void setUp() {
+        java.lang.management.ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        assumeTrue("thread allocation counters unavailable", mx instanceof com.sun.management.ThreadMXBean);
+        threads = (com.sun.management.ThreadMXBean) mx;
+        assumeTrue("thread allocation counters unavailable", threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        for (int i = 0; i < BATCH; i++) fixes[i] = new Fix();
+        ctx.deleteDatabase(DB);
+        queue = new LocalQueue(ctx, DB, LocalQueue.DEFAULT_MAX_RECORDS, LocalQueue.DEFAULT_MAX_BYTES);
+        queue.setCommitWindow(60_000); // commits only where the test asks for them
+    }
+
+    @After
+    public void tearDown() {
+        if (ingestor != null) ingestor.shutdown(() -> { });
+        if (queue != null) queue.close();
+        ctx.deleteDatabase(DB);
+    }
+
+    @Test
+    public void enqueueFixAllocatesNothingPerFix() {
+        long seq = 0;
+        for (int i = 0; i < BATCH; i++) queue.enqueueFix(PREFIX, seq++, fill(fixes[i], seq));
+        queue.commit(); // warm up: the slot pool now holds a batch worth of slots
+
+        long thread    = Thread.currentThread().getId();
+        long allocated = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long before = threads.getThreadAllocatedBytes(thread);
+            for (int i = 0; i < BATCH; i++) queue.enqueueFix(PREFIX, seq++, fill(fixes[i], seq));
+            allocated += threads.getThreadAllocatedBytes(thread) - before;
+            queue.commit(); // SQLite's bindings allocate under Robolectric, so commits are not counted
+        }
+
+        assertTrue(allocated + " bytes for " + FIXES + " fixes", allocated < FIXES * 4L);
+        assertEquals(seq, queue.pendingCount());
+    }
+
+    @Test
+    public void offerAllAndDrainAllocateNothingPerFix() throws InterruptedException {
+        ingestor = new FixIngestor(this::onFixes, BATCH * 2);
+        Handler ingest = new Handler(ingestor.looper());
+        long    time   = 0;
+        time = offerRound(time);
+        awaitIdle(ingest); // warm up: both rings, the batch list, the looper's message pool
+
+        long caller          = Thread.currentThread().getId();
+        long ingestThread    = ingestor.looper().getThread().getId();
+        long ingestBefore    = threads.getThreadAllocatedBytes(ingestThread);
+        long callerAllocated = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long before = threads.getThreadAllocatedBytes(caller);
+            time = offerRound(time);
+            callerAllocated += threads.getThreadAllocatedBytes(caller) - before;
+            awaitIdle(ingest);
+        }
+        long ingestAllocated = threads.getThreadAllocatedBytes(ingestThread) - ingestBefore;
+
+        assertTrue(callerAllocated + " bytes offering " + FIXES + " fixes", callerAllocated < FIXES * 4L);
+        assertTrue(ingestAllocated + " bytes draining " + FIXES + " fixes", ingestAllocated < FIXES * 4L);
+        assertEquals(BATCH * (ROUNDS + 1), received);
+        assertEquals(0, outOfOrder);
+    }
+
+    /** A stand-in for TrackingService.processFixes that checks the order without allocating */
+    private void onFixes(List<Fix> batch) {
+        for (int i = 0, n = batch.size(); i < n; i++) {
+            Fix fix = batch.get(i);
+            if (fix.time <= lastTime) outOfOrder++;
+            lastTime = fix.time;
+            received++;
+        }
+    }
+
+    /** Offer one batched delivery of fixes a second apart, after {@code time} */
+    private long offerRound(long time) {
+        for (int i = 0; i < BATCH; i++) fill(fixes[i], ++time);
+        ingestor.offerAll(fixes, BATCH);
+        return time;
+    }
+
+    /** Wait until the ingest thread has handled everything posted so far */
+    private static void awaitIdle(Handler ingest) throws InterruptedException {
+        CountDownLatch idle = new CountDownLatch(1);
+        ingest.post(idle::countDown);
+        assertTrue("ingest thread stuck", idle.await(5, TimeUnit.SECONDS));
+    }
+
+    private static Fix fill(Fix fix, long i) {
+        fix.time     = 1_714_000_000_000L + i * 1000L;
+        fix.lat      = 48.2 + i * 1e-4;
+        fix.lng      = 16.4 + Math.sin(i / 8.0) * 1e-3;
+        fix.accuracy = 5;
+        fix.speed    = 11;
+        fix.bearing  = (float) (i % 360);
+        return fix;
+    }
+}
@@ -0,0 +1,80 @@
+package com.yourapp.tracker;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import androidx.test.core.app.ApplicationProvider;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class KeySequenceTest {
+
+    private SharedPreferences prefs;
+
+    @Before
+    public void setUp() {
+        prefs = ApplicationProvider.getApplicationContext()
+            .getSharedPreferences("key_sequence_test", Context.MODE_PRIVATE);
+        prefs.edit().clear().commit();
+    }
+
+    @Test
+    public void numbersIncreaseByOne() {
+        KeySequence seq = new KeySequence(prefs);
+        for (long expected = 0; expected < 2 * KeySequence.BLOCK_SIZE + 5; expected++)
+            assertEquals(expected, seq.next());
+    }
+
+    @Test
+    public void numbersAreNeverReusedAfterARestart() {
+        Set<Long> seen = new HashSet<>();
+        long      last = -1;
+        // Each "process" dies after using a different share of its block
+        for (int used : new int[]{1, KeySequence.BLOCK_SIZE - 1, KeySequence.BLOCK_SIZE, KeySequence.BLOCK_SIZE + 1, 0, 7}) {
+            KeySequence seq = new KeySequence(prefs);
+            for (int i = 0; i < used; i++) {
+                long n = seq.next();
+                assertTrue("reused " + n, seen.add(n));
+                assertTrue(n > last);
+                last = n;
+            }
+        }
+    }
+
+    @Test
+    public void aBlockIsReservedBeforeItsFirstNumberIsHandedOut() {
+        KeySequence seq = new KeySequence(prefs);
+        seq.next();
+        assertEquals(KeySequence.BLOCK_SIZE, prefs.getLong("key_seq_reserved", 0));
+        for (int i = 1; i < KeySequence.BLOCK_SIZE; i++) seq.next();
+        assertEquals(KeySequence.BLOCK_SIZE, prefs.getLong("key_seq_reserved", 0));
+        seq.next();
+        assertEquals(2 * KeySequence.BLOCK_SIZE, prefs.getLong("key_seq_reserved", 0));
+    }
+
+    @Test
+    public void concurrentCallersGetDistinctNumbers() throws InterruptedException {
+        KeySequence  seq     = new KeySequence(prefs);
+        List<Long>   numbers = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 2_500; i++) numbers.add(seq.next());
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) thread.join();
+        assertEquals(10_000, new HashSet<>(numbers).size());
+    }
+}
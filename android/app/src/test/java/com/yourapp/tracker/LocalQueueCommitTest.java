@@ -0,0 +1,96 @@
+package com.yourapp.tracker;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteException;
+import androidx.test.core.app.ApplicationProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/** A commit that fails keeps its records buffered, in order, instead of losing the window */
+@RunWith(RobolectricTestRunner.class)
+public class LocalQueueCommitTest {
+
+    private static final String DB = "commit_test.db";
+
+    private final Context ctx = ApplicationProvider.getApplicationContext();
+    private LocalQueue    queue;
+
+    @Before
+    public void setUp() {
+        ctx.deleteDatabase(DB);
+        queue = new LocalQueue(ctx, DB, LocalQueue.DEFAULT_MAX_RECORDS, LocalQueue.DEFAULT_MAX_BYTES);
+        queue.setCommitWindow(60_000);
+    }
+
+    @After
+    public void tearDown() {
+        queue.close();
+        ctx.deleteDatabase(DB);
+    }
+
+    @Test
+    public void failedCommitKeepsTheRecordsAheadOfNewerOnes() {
+        queue.enqueue("trip:a", new byte[]{1});
+        queue.enqueueFix("fix:b:", 1, fix(1_000));
+        failInserts(true);
+        try {
+            queue.commit();
+            fail("commit should have failed");
+        } catch (SQLiteException expected) {
+        }
+        assertEquals(2, queue.pendingCount());
+
+        queue.enqueue("trip:c", new byte[]{3});
+        failInserts(false);
+        queue.commit();
+        assertEquals(Arrays.asList("trip:a", "fix:b:1", "trip:c"), keys(queue.claim(10)));
+        assertEquals(3, queue.pendingCount());
+    }
+
+    @Test
+    public void recordsKeptThroughAFailedCommitSurviveAReopen() {
+        queue.enqueue("trip:a", new byte[]{1});
+        failInserts(true);
+        try {
+            queue.commit();
+            fail("commit should have failed");
+        } catch (SQLiteException expected) {
+        }
+        failInserts(false);
+        queue.close(); // commits what is still buffered
+
+        queue = new LocalQueue(ctx, DB, LocalQueue.DEFAULT_MAX_RECORDS, LocalQueue.DEFAULT_MAX_BYTES);
+        assertEquals(Arrays.asList("trip:a"), keys(queue.claim(10)));
+    }
+
+    /** A trigger that aborts every insert, as a full disk would */
+    private void failInserts(boolean fail) {
+        queue.getWritableDatabase().execSQL(fail
+            ? "CREATE TRIGGER fail_inserts BEFORE INSERT ON pending_records BEGIN SELECT RAISE(ABORT, 'disk full'); END"
+            : "DROP TRIGGER fail_inserts");
+    }
+
+    private static Fix fix(long time) {
+        Fix fix = new Fix();
+        fix.time     = time;
+        fix.lat      = 52.52;
+        fix.lng      = 13.405;
+        fix.accuracy = 5;
+        return fix;
+    }
+
+    private static List<String> keys(List<RecordQueue.Record> records) {
+        List<String> keys = new ArrayList<>();
+        for (RecordQueue.Record r : records) keys.add(r.key);
+        return keys;
+    }
+}
@@ -0,0 +1,46 @@
+package com.yourapp.tracker;
+
+import android.content.Context;
+import androidx.test.core.app.ApplicationProvider;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/** {@link RecordQueueContract} against the SQLite queue, on Robolectric's SQLite */
+@RunWith(RobolectricTestRunner.class)
+public class LocalQueueContractTest extends RecordQueueContract {
+
+    private final Context ctx = ApplicationProvider.getApplicationContext();
+
+    @Override
+    protected RecordQueue openQueue(String location) {
+        return new LocalQueue(ctx, db(location), LocalQueue.DEFAULT_MAX_RECORDS, LocalQueue.DEFAULT_MAX_BYTES);
+    }
+
+    /** The database and its write-ahead log; committed transactions are in one or the other */
+    @Override
+    protected void snapshot(String from, String to) throws Exception {
+        for (String suffix : new String[]{"", "-wal"}) {
+            File source = new File(ctx.getDatabasePath(db(from)).getPath() + suffix);
+            if (source.exists())
+                Files.copy(source.toPath(), new File(ctx.getDatabasePath(db(to)).getPath() + suffix).toPath(),
+                           StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /** A transaction is written whole or not at all: the crash lost the uncommitted records instead */
+    @Override
+    protected void tearNewestRecord(String location) {
+    }
+
+    @Override
+    protected void delete(String location) {
+        ctx.deleteDatabase(db(location));
+    }
+
+    private static String db(String location) {
+        return "contract_" + location + ".db";
+    }
+}
@@ -0,0 +1,76 @@
+package com.yourapp.tracker;
+
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/** Serialization: one fix in each storage form, and a full upload batch as sent to POST /data */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CodecBenchmark {
+
+    private static final int BATCH = 500; // SyncManager's default records per request
+
+    private Fix[]                    fixes;
+    private List<RecordQueue.Record> batch;
+    private byte[]                   buffer;
+    private byte[]                   encoded;
+    private Fix                      decoded;
+    private int                      next;
+
+    @Setup
+    public void setUp() {
+        fixes   = Tracks.drive(BATCH, 1);
+        batch   = Tracks.records(fixes);
+        buffer  = new byte[FixCodec.MAX_SIZE];
+        encoded = FixCodec.encode(fixes[0]);
+        decoded = new Fix();
+    }
+
+    private Fix nextFix() {
+        Fix fix = fixes[next];
+        next = (next + 1) % fixes.length;
+        return fix;
+    }
+
+    @Benchmark
+    public int encodeFix() {
+        return FixCodec.encode(nextFix(), buffer, 0);
+    }
+
+    @Benchmark
+    public Fix decodeFix() {
+        FixCodec.decode(encoded, decoded);
+        return decoded;
+    }
+
+    /** The JSON form the binary codec replaced, for comparison */
+    @Benchmark
+    public byte[] encodeFixJson() throws JSONException {
+        return FixJson.toJson(nextFix(), Tracks.DEVICE_ID).toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public byte[] encodeBatch() {
+        return WireFormat.encodeBatch(Tracks.DEVICE_ID, batch);
+    }
+
+    /** A batch as it goes on the wire: encoded and gzipped, as ApiClient streams it */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void encodeBatchGzip(Blackhole bh) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8 * 1024);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out, 8 * 1024)) {
+            gzip.write(WireFormat.encodeBatch(Tracks.DEVICE_ID, batch));
+        }
+        bh.consume(out.size());
+    }
+}
@@ -0,0 +1,45 @@
+package com.yourapp.tracker;
+
+import org.openjdk.jmh.annotations.*;
+import java.util.concurrent.TimeUnit;
+
+/** Filtering: the per-fix ingest path, and thinning of a stored backlog by the retention budget */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FilterBenchmark {
+
+    private static final int TRACK = 3_600; // an hour at 1 Hz
+
+    @Param({"10", "50"})
+    public double toleranceM;
+
+    private Fix[]     track;
+    private boolean[] keep;
+
+    @Setup
+    public void setUp() {
+        track = Tracks.drive(TRACK, 2);
+        keep  = new boolean[TRACK];
+    }
+
+    /** SamplingPolicy and PointFilter over an hour of fixes, as the ingest thread runs them */
+    @Benchmark
+    public int ingestHour() {
+        SamplingPolicy sampling = new SamplingPolicy();
+        PointFilter    filter   = new PointFilter(toleranceM, PointFilter.DEFAULT_MIN_DISTANCE_M,
+                                                  PointFilter.DEFAULT_MIN_HEADING_DEG, PointFilter.DEFAULT_MAX_GAP_MS);
+        int kept = 0;
+        for (Fix fix : track) {
+            sampling.onFix(fix);
+            if (filter.offer(fix) != null) kept++;
+        }
+        return kept;
+    }
+
+    /** One retention sweep over an hour of stored fixes */
+    @Benchmark
+    public int thinHour() {
+        return TrackThinner.thin(track, TRACK, toleranceM, keep);
+    }
+}
@@ -0,0 +1,49 @@
+package com.yourapp.tracker;
+
+import org.openjdk.jmh.annotations.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batching through the segment log queue: a delivery of fixes is appended with enqueueFix,
+ * then claimed and acknowledged as one upload chunk.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class QueueBenchmark {
+
+    @Param({"10", "500"})
+    public int batch;
+
+    private Fix[]           fixes;
+    private File            dir;
+    private SegmentLogQueue queue;
+    private long            seq;
+
+    @Setup
+    public void setUp() throws IOException {
+        fixes = Tracks.drive(batch, 3);
+        dir   = Files.createTempDirectory("queue-bench").toFile();
+        queue = SegmentLogQueue.open(dir, SegmentLogQueue.FsyncPolicy.OS);
+    }
+
+    @TearDown
+    public void tearDown() {
+        queue.close();
+        File[] files = dir.listFiles();
+        if (files != null) for (File f : files) f.delete();
+        dir.delete();
+    }
+
+    @Benchmark
+    public int enqueueClaimAck() {
+        for (Fix fix : fixes) queue.enqueueFix("gps:" + Tracks.DEVICE_ID + ":", ++seq, fix);
+        List<RecordQueue.Record> claimed = queue.claim(batch);
+        queue.ack(claimed.get(claimed.size() - 1).id);
+        return claimed.size();
+    }
+}
@@ -0,0 +1,72 @@
+package com.yourapp.tracker;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * In-process stand-in for POST /data on the loopback interface: drains the request body and
+ * confirms every record of a batch, optionally after a fixed delay standing in for the
+ * network round trip and server work.
+ */
+final class StubServer implements AutoCloseable {
+
+    private static final int MAX_RECORDS = 1000; // the server's batch limit
+
+    private final HttpServer      server;
+    private final ExecutorService workers = Executors.newFixedThreadPool(16);
+    private final byte[]          response;
+    private final long            delayMs;
+
+    StubServer(long delayMs) throws IOException {
+        this.delayMs  = delayMs;
+        this.response = allStored(MAX_RECORDS);
+        this.server   = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 64);
+        server.createContext("/data", this::handle);
+        server.setExecutor(workers);
+        server.start();
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] buf = new byte[8 * 1024];
+            while (in.read(buf) != -1) { /* drain */ }
+        }
+        if (delayMs > 0) {
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, response.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(response);
+        }
+    }
+
+    /** A POST /data response confirming {@code n} records; clients read as many as they sent */
+    private static byte[] allStored(int n) {
+        StringBuilder json = new StringBuilder("{\"success\":true,\"results\":[");
+        for (int i = 0; i < n; i++) json.append(i == 0 ? "" : ",").append("{\"success\":true}");
+        return json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        workers.shutdownNow();
+    }
+}
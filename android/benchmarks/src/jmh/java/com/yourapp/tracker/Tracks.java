@@ -0,0 +1,57 @@
+package com.yourapp.tracker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/** Synthetic, reproducible input for the benchmarks */
+final class Tracks {
+
+    static final String DEVICE_ID = "bench001";
+
+    private Tracks() {}
+
+    /**
+     * A 1 Hz drive of {@code n} fixes: straight stretches, turns and stops, with a few metres of
+     * GPS noise, like what the location callback delivers.
+     */
+    static Fix[] drive(int n, long seed) {
+        Random random  = new Random(seed);
+        Fix[]  fixes   = new Fix[n];
+        double lat     = 48.2082;
+        double lng     = 16.3738;
+        double bearing = 90;
+        double speed   = 12;
+        for (int i = 0; i < n; i++) {
+            if (i % 300 == 0) bearing = (bearing + 60 + random.nextInt(60)) % 360; // a turn
+            boolean stopped = i % 600 >= 540;                                     // a minute at lights
+            double  v       = stopped ? 0 : speed + random.nextGaussian();
+            lat += v * Math.cos(Math.toRadians(bearing)) / 111_320;
+            lng += v * Math.sin(Math.toRadians(bearing)) / (111_320 * Math.cos(Math.toRadians(lat)));
+
+            Fix fix = new Fix();
+            fix.time     = 1_714_000_000_000L + i * 1000L;
+            fix.lat      = lat + random.nextGaussian() * 3 / 111_320;
+            fix.lng      = lng + random.nextGaussian() * 3 / 111_320;
+            fix.accuracy = 4 + random.nextFloat() * 8;
+            fix.altitude = 170 + random.nextGaussian();
+            fix.speed    = (float) Math.max(0, v);
+            fix.bearing  = (float) bearing;
+            fixes[i] = fix;
+        }
+        return fixes;
+    }
+
+    /** Queue records as the app stores them: key {@code gps:<deviceId>:<seq>}, FixCodec payload */
+    static List<RecordQueue.Record> records(Fix[] fixes) {
+        List<RecordQueue.Record> records = new ArrayList<>(fixes.length);
+        for (int i = 0; i < fixes.length; i++) {
+            RecordQueue.Record r = new RecordQueue.Record();
+            r.id      = i + 1;
+            r.key     = "gps:" + DEVICE_ID + ":" + (i + 1);
+            r.payload = FixCodec.encode(fixes[i]);
+            records.add(r);
+        }
+        return records;
+    }
+}
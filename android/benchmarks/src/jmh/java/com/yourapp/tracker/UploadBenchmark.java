@@ -0,0 +1,76 @@
+package com.yourapp.tracker;
+
+import org.openjdk.jmh.annotations.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The upload loop end to end: {@link BatchUploader} drains a queue of {@link #BACKLOG} fixes
+ * into an in-process {@link StubServer} over loopback HTTP. {@code delayMs} stands in for the
+ * round trip of a real network, where the in-flight window pays off.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class UploadBenchmark {
+
+    private static final int BACKLOG = 2_000;
+
+    @Param({"1", "4"})
+    public int window;
+
+    @Param({"true", "false"})
+    public boolean binary;
+
+    @Param({"0", "20"})
+    public long delayMs;
+
+    private StubServer      server;
+    private ExecutorService uploaders;
+    private Fix[]           fixes;
+    private SyncPolicy.Plan plan;
+    private File            dir;
+    private SegmentLogQueue queue;
+    private BatchUploader   uploader;
+    private long            seq;
+
+    @Setup
+    public void setUp() throws IOException {
+        server    = new StubServer(delayMs);
+        uploaders = Executors.newCachedThreadPool();
+        fixes     = Tracks.drive(BACKLOG, 4);
+        plan      = new SyncPolicy().plan(new NetworkState(true, true, false, NetworkState.Transport.WIFI), 0);
+        dir       = Files.createTempDirectory("upload-bench").toFile();
+        queue     = SegmentLogQueue.open(dir, SegmentLogQueue.FsyncPolicy.OS);
+        uploader  = new BatchUploader(queue, new UrlTransport(server.baseUrl()), uploaders, new ByteBudget(0), Tracks.DEVICE_ID);
+        uploader.setInFlightWindow(window);
+        uploader.setBinaryUploads(binary);
+    }
+
+    /** Refill the backlog; not measured */
+    @Setup(Level.Invocation)
+    public void fill() {
+        for (Fix fix : fixes) queue.enqueueFix("gps:" + Tracks.DEVICE_ID + ":", ++seq, fix);
+    }
+
+    @TearDown
+    public void tearDown() {
+        queue.close();
+        uploaders.shutdownNow();
+        server.close();
+        File[] files = dir.listFiles();
+        if (files != null) for (File f : files) f.delete();
+        dir.delete();
+    }
+
+    @Benchmark
+    public int drainBacklog() {
+        BatchUploader.Result result = uploader.upload("bench-token", plan, null);
+        if (result.failed) throw new IllegalStateException("Upload failed: HTTP " + result.lastStatus);
+        return result.synced;
+    }
+}
@@ -0,0 +1,64 @@
+package com.yourapp.tracker;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+/** {@link HttpTransport} over the JDK's HttpURLConnection, the JVM counterpart of ApiClient */
+final class UrlTransport implements HttpTransport {
+
+    private final String baseUrl;
+
+    UrlTransport(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    @Override
+    public Response send(String endpoint, byte[] body, String contentType, boolean gzip, String token, int timeoutMs) {
+        try {
+            HttpURLConnection conn = (HttpURLConnection) new URL(baseUrl + endpoint).openConnection();
+            conn.setRequestMethod("POST");
+            conn.setRequestProperty("Content-Type", contentType);
+            if (token != null) conn.setRequestProperty("Authorization", "Bearer " + token);
+            conn.setDoOutput(true);
+            if (timeoutMs > 0) {
+                conn.setConnectTimeout(timeoutMs);
+                conn.setReadTimeout(timeoutMs);
+            }
+            if (gzip) {
+                conn.setRequestProperty("Content-Encoding", "gzip");
+                conn.setChunkedStreamingMode(0);
+                try (OutputStream os = new GZIPOutputStream(conn.getOutputStream())) {
+                    os.write(body);
+                }
+            } else {
+                conn.setFixedLengthStreamingMode(body.length);
+                try (OutputStream os = conn.getOutputStream()) {
+                    os.write(body);
+                }
+            }
+
+            int status = conn.getResponseCode();
+            InputStream is = status < 400 ? conn.getInputStream() : conn.getErrorStream();
+            ByteArrayOutputStream text = new ByteArrayOutputStream();
+            if (is != null) {
+                try (InputStream in = is) {
+                    byte[] buf = new byte[8 * 1024];
+                    int    n;
+                    while ((n = in.read(buf)) != -1) text.write(buf, 0, n);
+                }
+            }
+            String json = new String(text.toByteArray(), StandardCharsets.UTF_8);
+            return new Response(status, json.isEmpty() ? null : new JSONObject(json));
+        } catch (IOException | JSONException e) {
+            return new Response(-1, null);
+        }
+    }
+}
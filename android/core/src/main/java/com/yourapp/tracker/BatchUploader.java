@@ -0,0 +1,371 @@
+package com.yourapp.tracker;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The upload loop of a flush: claims records from a {@link RecordQueue} and sends them to
+ * POST /data, one batch request per size-bounded chunk, with up to a window of requests
+ * outstanding on the {@code uploaders} executor.
+ *
+ * Chunks are acknowledged strictly in claim order: the oldest outstanding request is awaited
+ * first, and after a failure nothing later is acknowledged, so the queue's watermark only
+ * moves over contiguous successes. Later chunks that did reach the server are sent again on
+ * the next run and recognised there as duplicates.
+ *
+ * Records the server rejects for good (a per-record error, or a 400 or 413 with the JSON error
+ * body POST /data sends for a bad batch) and records that cannot be encoded are acknowledged
+ * like stored ones and counted as {@code sync.rejected}: retrying them would fail the same way
+ * and hold up everything queued behind them. A chunk rejected as a whole is split in halves until
+ * the bad records are isolated, so the records around them are still stored. Every other
+ * failure, including a 4xx from something that is not this server (a captive portal, a proxy, a
+ * server without the route), is retried, and a run drops at most {@link #MAX_REJECTED_PER_RUN}
+ * records.
+ *
+ * Scheduling, sessions and network policy are left to the caller (SyncManager on
+ * Android), so the loop runs unchanged on a plain JVM against any {@link HttpTransport}.
+ */
+public class BatchUploader {
+
+    // Records are uploaded in chunks to POST /data, bounded by count and approximate size
+    public static final int  DEFAULT_BATCH_RECORDS = 500;
+    public static final int  DEFAULT_BATCH_BYTES   = 256 * 1024;
+    private static final int BINARY_OVERHEAD_BYTES = 4;   // varint lengths per record
+    private static final int JSON_RECORD_BYTES     = 220; // a fix in its JSON form, with framing
+
+    // Concurrent batch requests per run; ApiClient keeps up to 4 idle connections
+    public static final int DEFAULT_IN_FLIGHT_WINDOW = 4;
+    public static final int MAX_IN_FLIGHT_WINDOW     = 16;
+
+    // Records one run may drop as rejected; a server that rejects everything cannot empty the queue
+    public static final int MAX_REJECTED_PER_RUN = 100;
+
+    private static final Metrics.Counter recordsSynced = Metrics.counter("sync.records");
+    private static final Metrics.Counter duplicates    = Metrics.counter("sync.duplicates");
+    private static final Metrics.Counter rejected      = Metrics.counter("sync.rejected");
+
+    /** Outcome of one {@link #upload} run */
+    public static final class Result {
+        public final int     synced;       // records acknowledged as stored
+        public final int     rejected;     // records acknowledged as permanently rejected, and dropped
+        public final boolean failed;       // a chunk was not (fully) stored; the rest was released
+        public final boolean unauthorized; // a request was answered with 401
+        public final int     lastStatus;   // HTTP status of the last failed request, -1 if none was received
+
+        Result(int synced, int rejected, boolean failed, boolean unauthorized, int lastStatus) {
+            this.synced       = synced;
+            this.rejected     = rejected;
+            this.failed       = failed;
+            this.unauthorized = unauthorized;
+            this.lastStatus   = lastStatus;
+        }
+    }
+
+    private final RecordQueue     queue;
+    private final HttpTransport   transport;
+    private final ExecutorService uploaders;
+    private final ByteBudget      budget;
+    private final String          deviceId;
+
+    private volatile int     batchMaxRecords = DEFAULT_BATCH_RECORDS;
+    private volatile int     batchMaxBytes   = DEFAULT_BATCH_BYTES;
+    private volatile boolean binaryUploads   = true;
+    private volatile boolean gzipUploads     = true;
+    private volatile int     inFlightWindow  = DEFAULT_IN_FLIGHT_WINDOW;
+
+    /**
+     * @param uploaders  runs the batch requests; needs at least {@link #setInFlightWindow} threads
+     * @param budget     bandwidth budget every request body is charged against
+     */
+    public BatchUploader(RecordQueue queue, HttpTransport transport, ExecutorService uploaders,
+                         ByteBudget budget, String deviceId) {
+        this.queue     = queue;
+        this.transport = transport;
+        this.uploaders = uploaders;
+        this.budget    = budget;
+        this.deviceId  = deviceId;
+    }
+
+    /** Limit each upload request to {@code maxRecords} records and roughly {@code maxBytes} of payload */
+    public void setBatchLimits(int maxRecords, int maxBytes) {
+        if (maxRecords < 1 || maxBytes < 1)
+            throw new IllegalArgumentException("Batch limits must be positive");
+        batchMaxRecords = maxRecords;
+        batchMaxBytes   = maxBytes;
+    }
+
+    /**
+     * Upload batches in the binary {@link WireFormat} (default) or as JSON records.
+     * Both are accepted by POST /data; JSON is for servers without the binary decoder.
+     */
+    public void setBinaryUploads(boolean enabled) {
+        binaryUploads = enabled;
+    }
+
+    /** Compress upload bodies with gzip (default); the server inflates them transparently */
+    public void setGzipUploads(boolean enabled) {
+        gzipUploads = enabled;
+    }
+
+    public boolean gzipUploads() {
+        return gzipUploads;
+    }
+
+    /** Allow up to {@code requests} batch uploads in flight at once; 1 uploads strictly one after another */
+    public void setInFlightWindow(int requests) {
+        if (requests < 1 || requests > MAX_IN_FLIGHT_WINDOW)
+            throw new IllegalArgumentException("In-flight window must be 1.." + MAX_IN_FLIGHT_WINDOW);
+        inFlightWindow = requests;
+    }
+
+    /**
+     * Upload everything pending within the limits of {@code plan}. Claimed records that were
+     * not acknowledged are released again before this returns.
+     * @param onProgress  called after each acknowledged chunk, may be null
+     */
+    public Result upload(String token, SyncPolicy.Plan plan, Runnable onProgress) {
+        queue.release(); // re-send anything a previous run claimed but never confirmed
+        Run                run      = new Run(plan, token);
+        ArrayDeque<Upload> inFlight = new ArrayDeque<>();
+        int                window   = Math.min(inFlightWindow, plan.inFlight);
+        int                synced   = 0;
+        int                dropped  = 0;
+        boolean            failed   = false;
+        while (true) {
+            List<RecordQueue.Record> chunk;
+            while (!failed && inFlight.size() < window && (chunk = run.next()) != null) {
+                inFlight.add(new Upload(chunk, uploaders.submit(run.task(chunk))));
+            }
+            Upload oldest = inFlight.poll();
+            if (oldest == null) break;
+
+            Outcome outcome = oldest.await();
+            if (!failed && outcome.settled > 0) {
+                queue.ack(oldest.records.get(outcome.settled - 1).id); // only delete after confirmed upload
+                recordsSynced.add(outcome.settled - outcome.rejected);
+                rejected.add(outcome.rejected);
+                synced  += outcome.settled - outcome.rejected;
+                dropped += outcome.rejected;
+                if (onProgress != null) onProgress.run();
+            }
+            if (outcome.settled < oldest.records.size()) failed = true;
+        }
+        if (failed) queue.release(); // retry on the next run
+        return new Result(synced, dropped, failed, run.unauthorized, run.lastStatus);
+    }
+
+    /** State of one run: claims pages from the queue on demand and splits them into upload chunks */
+    private class Run {
+        private final int     maxRecords;
+        private final int     maxBytes;
+        private final String  token;
+        private final boolean binary = binaryUploads;
+        private final boolean gzip   = gzipUploads;
+
+        private List<RecordQueue.Record> page = Collections.emptyList();
+        private int                      start;
+        private volatile boolean         unauthorized;
+        private volatile int             lastStatus    = -1;
+        private final AtomicInteger      dropAllowance = new AtomicInteger(MAX_REJECTED_PER_RUN);
+
+        Run(SyncPolicy.Plan plan, String token) {
+            this.maxRecords = Math.min(batchMaxRecords, plan.maxRecords);
+            this.maxBytes   = Math.min(batchMaxBytes, plan.maxBytes);
+            this.token      = token;
+        }
+
+        /** Take {@code count} records out of this run's allowance of rejected records, if it has them */
+        boolean mayDrop(int count) {
+            int left;
+            do {
+                left = dropAllowance.get();
+                if (left < count) return false;
+            } while (!dropAllowance.compareAndSet(left, left - count));
+            return true;
+        }
+
+        /** The next chunk, or null once the queue has nothing left to claim */
+        List<RecordQueue.Record> next() {
+            if (start >= page.size()) {
+                page  = queue.claim(maxRecords);
+                start = 0;
+                if (page.isEmpty()) return null;
+            }
+            int end = chunkEnd(page, start);
+            List<RecordQueue.Record> chunk = page.subList(start, end);
+            start = end;
+            return chunk;
+        }
+
+        /** End index (exclusive) of the chunk starting at {@code start} */
+        private int chunkEnd(List<RecordQueue.Record> records, int start) {
+            int bytes = 0;
+            int end   = start;
+            while (end < records.size() && end - start < maxRecords) {
+                RecordQueue.Record r = records.get(end);
+                bytes += r.key.length()
+                       + (binary ? r.payload.length + BINARY_OVERHEAD_BYTES : JSON_RECORD_BYTES);
+                if (bytes > maxBytes && end > start) break; // a single oversized record still goes alone
+                end++;
+            }
+            return end;
+        }
+
+        Callable<Outcome> task(List<RecordQueue.Record> batch) {
+            return () -> {
+                try {
+                    return uploadBatch(batch);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return Outcome.NONE;
+                }
+            };
+        }
+
+        /**
+         * Send one chunk to POST /data; a chunk rejected as a whole is split and sent again in
+         * halves, down to single records.
+         * @return how many leading records were stored or permanently rejected, and how many of
+         *         those were rejected
+         */
+        private Outcome uploadBatch(List<RecordQueue.Record> batch) throws InterruptedException {
+            int                      n        = batch.size();
+            boolean[]                invalid  = new boolean[n]; // cannot be encoded, not sent
+            List<RecordQueue.Record> sendable = new ArrayList<>(n);
+            JSONArray                items    = binary ? null : new JSONArray();
+            Fix                      fix      = new Fix();
+            for (int i = 0; i < n; i++) {
+                RecordQueue.Record r = batch.get(i);
+                try {
+                    if (binary) {
+                        if (FixCodec.isFix(r.payload)) FixCodec.decode(r.payload, fix); // only to check it decodes
+                    } else {
+                        items.put(jsonRecord(r));
+                    }
+                    sendable.add(r);
+                } catch (Exception e) { // an undecodable payload, or a value JSON cannot hold (NaN)
+                    invalid[i] = true;
+                }
+            }
+            if (sendable.isEmpty()) return mayDrop(n) ? new Outcome(n, n) : Outcome.NONE;
+
+            byte[] body;
+            try {
+                body = binary
+                    ? WireFormat.encodeBatch(deviceId, sendable)
+                    : new JSONObject().put("records", items).toString().getBytes(StandardCharsets.UTF_8);
+            } catch (JSONException e) {
+                return Outcome.NONE;
+            }
+            budget.acquire(body.length);
+            HttpTransport.Response response = transport.send(
+                "/data", body, binary ? WireFormat.CONTENT_TYPE : "application/json", gzip, token, 0
+            );
+            JSONArray results = response.isSuccessful() && response.body != null
+                ? response.body.optJSONArray("results")
+                : null;
+            if (response.status == 401) unauthorized = true;
+            if (results == null) {
+                if (!isBatchRejected(response) || (n == 1 && !mayDrop(1))) {
+                    lastStatus = response.status;
+                    return Outcome.NONE;
+                }
+                if (n == 1) return new Outcome(1, 1);
+                int     half  = n / 2;
+                Outcome first = uploadBatch(batch.subList(0, half));
+                if (first.settled < half) return first;
+                Outcome second = uploadBatch(batch.subList(half, n));
+                return new Outcome(half + second.settled, first.rejected + second.rejected);
+            }
+
+            // One result per record sent, in order
+            int settled = 0;
+            int dropped = 0;
+            int next    = 0;
+            for (; settled < n; settled++) {
+                if (invalid[settled]) {
+                    if (!mayDrop(1)) break;
+                    dropped++;
+                    continue;
+                }
+                JSONObject result = results.optJSONObject(next++);
+                if (result == null) break;
+                if (result.optBoolean("success", false)) {
+                    if (result.optBoolean("duplicate", false)) duplicates.inc();
+                } else if (result.has("error") && mayDrop(1)) {
+                    dropped++; // the server will never take this record
+                } else {
+                    break;
+                }
+            }
+            if (settled < n) lastStatus = response.status;
+            return new Outcome(settled, dropped);
+        }
+    }
+
+    /**
+     * Whether POST /data refused the batch for its content: 400 (malformed) or 413 (too many
+     * records) with the server's JSON error body. The same status from anything else in the path
+     * says nothing about the records.
+     */
+    static boolean isBatchRejected(HttpTransport.Response response) {
+        return (response.status == 400 || response.status == 413)
+            && response.body != null && response.body.opt("error") instanceof String;
+    }
+
+    /** Leading records of a chunk that are done with: stored, or rejected for good */
+    private static final class Outcome {
+        static final Outcome NONE = new Outcome(0, 0);
+
+        final int settled;
+        final int rejected;
+
+        Outcome(int settled, int rejected) {
+            this.settled  = settled;
+            this.rejected = rejected;
+        }
+    }
+
+    /** A chunk being uploaded and its outcome */
+    private static class Upload {
+        final List<RecordQueue.Record> records;
+        final Future<Outcome>          outcome;
+
+        Upload(List<RecordQueue.Record> records, Future<Outcome> outcome) {
+            this.records = records;
+            this.outcome = outcome;
+        }
+
+        Outcome await() {
+            try {
+                return outcome.get();
+            } catch (ExecutionException e) {
+                return Outcome.NONE;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Outcome.NONE;
+            }
+        }
+    }
+
+    /** One record of a JSON batch: { key, value } with the fix or trip in its JSON form */
+    private JSONObject jsonRecord(RecordQueue.Record r) throws JSONException {
+        JSONObject item = new JSONObject();
+        item.put("key",   r.key);
+        item.put("value", TripCodec.isTrip(r.payload)
+            ? TripJson.toJson(TripCodec.decode(r.payload), deviceId)
+            : FixJson.toJson(FixCodec.decode(r.payload), deviceId));
+        return item;
+    }
+}
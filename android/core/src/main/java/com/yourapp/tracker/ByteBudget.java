@@ -0,0 +1,46 @@
+package com.yourapp.tracker;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket that caps a byte rate, used to keep background uploads from saturating the link.
+ * Up to one second of budget can accumulate as a burst. A rate of 0 disables the limit.
+ */
+public class ByteBudget {
+
+    private long bytesPerSecond;
+    private long available;
+    private long refilledAt = System.nanoTime();
+
+    public ByteBudget(long bytesPerSecond) {
+        setRate(bytesPerSecond);
+    }
+
+    public synchronized void setRate(long bytesPerSecond) {
+        if (bytesPerSecond < 0) throw new IllegalArgumentException("Rate must not be negative");
+        this.bytesPerSecond = bytesPerSecond;
+        this.available      = Math.min(available, bytesPerSecond);
+    }
+
+    /**
+     * Take {@code bytes} from the budget, waiting until enough has accumulated. A request larger
+     * than the burst runs the budget into debt, which later requests wait out.
+     */
+    public void acquire(long bytes) throws InterruptedException {
+        long waitNanos;
+        synchronized (this) {
+            if (bytesPerSecond == 0) return;
+            refill();
+            available -= bytes;
+            waitNanos = available >= 0 ? 0 : -available * TimeUnit.SECONDS.toNanos(1) / bytesPerSecond;
+        }
+        if (waitNanos > 0) TimeUnit.NANOSECONDS.sleep(waitNanos);
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        available  = Math.min(bytesPerSecond,
+                              available + (now - refilledAt) * bytesPerSecond / TimeUnit.SECONDS.toNanos(1));
+        refilledAt = now;
+    }
+}
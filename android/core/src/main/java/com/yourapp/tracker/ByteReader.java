@@ -0,0 +1,50 @@
+package com.yourapp.tracker;
+
+/** Sequential reader over the binary formats written by {@link FixCodec} and {@link WireFormat} */
+final class ByteReader {
+
+    private final byte[] buf;
+    private final int    end;
+    private int          pos;
+
+    ByteReader(byte[] buf) {
+        this.buf = buf;
+        this.end = buf.length;
+    }
+
+    int readByte() {
+        require(1);
+        return buf[pos++] & 0xFF;
+    }
+
+    int readInt() {
+        require(4);
+        int v = (buf[pos] & 0xFF) << 24 | (buf[pos + 1] & 0xFF) << 16
+              | (buf[pos + 2] & 0xFF) << 8 | (buf[pos + 3] & 0xFF);
+        pos += 4;
+        return v;
+    }
+
+    long readVarint() {
+        long v     = 0;
+        int  shift = 0;
+        int  b;
+        do {
+            if (shift > 63) throw new IllegalArgumentException("Malformed varint at " + pos);
+            b = readByte();
+            v |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return v;
+    }
+
+    long readSignedVarint() {
+        long v = readVarint();
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private void require(int n) {
+        if (n < 0 || pos + n > end)
+            throw new IllegalArgumentException("Truncated record: need " + n + " byte(s) at " + pos);
+    }
+}
@@ -0,0 +1,49 @@
+package com.yourapp.tracker;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Which deferred sync jobs to schedule, and when and under which constraints they may run.
+ * The decision behind the app's DeferredSync, kept free of WorkManager.
+ *
+ * <ul>
+ *   <li>Opportunistic: no delay, but only while charging on an unmetered network.</li>
+ *   <li>Deadline: on any network, due when the oldest unsynced record reaches the freshness
+ *       SLA. It requires a battery that is not low until the SLA is already exceeded.</li>
+ * </ul>
+ */
+public final class DeferredSyncPlan {
+
+    public static final String OPPORTUNISTIC = "sync-opportunistic";
+    public static final String DEADLINE      = "sync-deadline";
+
+    /** A job to schedule: when it may run and under which constraints */
+    public static final class Job {
+        public final String  name;
+        public final long    delayMs;
+        public final boolean unmetered;      // else any connected network
+        public final boolean charging;
+        public final boolean batteryNotLow;
+
+        Job(String name, long delayMs, boolean unmetered, boolean charging, boolean batteryNotLow) {
+            this.name          = name;
+            this.delayMs       = delayMs;
+            this.unmetered     = unmetered;
+            this.charging      = charging;
+            this.batteryNotLow = batteryNotLow;
+        }
+    }
+
+    private DeferredSyncPlan() {}
+
+    /** The jobs for a queue whose oldest unsynced record has waited {@code waitingMs} */
+    public static List<Job> plan(long waitingMs, long slaMs) {
+        long    untilDeadline = Math.max(0, slaMs - waitingMs);
+        boolean overdue       = untilDeadline == 0;
+        return Arrays.asList(
+            new Job(OPPORTUNISTIC, 0, true, true, false),
+            new Job(DEADLINE, untilDeadline, false, false, !overdue)
+        );
+    }
+}
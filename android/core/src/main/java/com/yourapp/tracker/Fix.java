@@ -0,0 +1,27 @@
+package com.yourapp.tracker;
+
+/**
+ * One GPS fix, held in primitive fields.
+ * Encoded for storage and upload by {@link FixCodec}.
+ */
+public class Fix {
+    public long   time;     // epoch millis
+    public double lat;      // degrees
+    public double lng;      // degrees
+    public float  accuracy; // metres
+    public double altitude; // metres
+    public float  speed;    // metres per second
+    public float  bearing;  // degrees
+
+    /** Copy every field of {@code other} into this fix, so slots can be reused instead of allocated */
+    public Fix set(Fix other) {
+        time     = other.time;
+        lat      = other.lat;
+        lng      = other.lng;
+        accuracy = other.accuracy;
+        altitude = other.altitude;
+        speed    = other.speed;
+        bearing  = other.bearing;
+        return this;
+    }
+}
@@ -0,0 +1,129 @@
+package com.yourapp.tracker;
+
+/**
+ * Compact, versioned binary encoding of a {@link Fix}, used for queue storage and uploads.
+ *
+ * Layout (about 22 bytes, versus ~180 for the JSON form):
+ * <pre>
+ *   u8      header      version (high nibble) and record type (low nibble)
+ *   varint  time        zigzag millis relative to 2020-01-01T00:00:00Z
+ *   i32     lat, lng    fixed point, 1e-7 degrees (about 1 cm)
+ *   varint  accuracy    decimetres
+ *   varint  altitude    zigzag decimetres
+ *   varint  speed       cm/s
+ *   varint  bearing     tenths of a degree, 0..3599
+ * </pre>
+ * Multi-byte integers are big-endian; varints are little-endian base-128.
+ */
+public final class FixCodec {
+
+    public static final int VERSION  = 1;
+    public static final int TYPE_FIX = 1;
+
+    static final int FIX_HEADER = VERSION << 4 | TYPE_FIX;
+
+    /** Upper bound of an encoded fix, for sizing reusable buffers */
+    public static final int MAX_SIZE = 32;
+
+    static final long   EPOCH_BASE_MS = 1_577_836_800_000L; // 2020-01-01T00:00:00Z
+    static final double COORD_SCALE   = 1e7;
+
+    private FixCodec() {}
+
+    public static byte[] encode(Fix fix) {
+        byte[] buf = new byte[MAX_SIZE];
+        int    len = encode(fix, buf, 0);
+        byte[] out = new byte[len];
+        System.arraycopy(buf, 0, out, 0, len);
+        return out;
+    }
+
+    /** Encode into {@code buf} at {@code offset}; returns the number of bytes written */
+    public static int encode(Fix fix, byte[] buf, int offset) {
+        int pos = offset;
+        buf[pos++] = (byte) FIX_HEADER;
+        pos = putVarint(buf, pos, zigzag(fix.time - EPOCH_BASE_MS));
+        pos = putInt(buf, pos, coord(fix.lat));
+        pos = putInt(buf, pos, coord(fix.lng));
+        pos = putVarint(buf, pos, accuracy(fix));
+        pos = putVarint(buf, pos, zigzag(altitude(fix)));
+        pos = putVarint(buf, pos, speed(fix));
+        pos = putVarint(buf, pos, bearing(fix));
+        return pos - offset;
+    }
+
+    public static Fix decode(byte[] data) {
+        Fix fix = new Fix();
+        decode(data, fix);
+        return fix;
+    }
+
+    public static void decode(byte[] data, Fix into) {
+        decode(new ByteReader(data), into);
+    }
+
+    /** Whether {@code data} is a fix in this codec's version */
+    public static boolean isFix(byte[] data) {
+        return data.length > 0 && (data[0] & 0xFF) == FIX_HEADER;
+    }
+
+    /** Decode the fix at the reader's position into {@code into} */
+    static void decode(ByteReader in, Fix into) {
+        int header = in.readByte();
+        if (header != FIX_HEADER)
+            throw new IllegalArgumentException("Not a v" + VERSION + " fix record: header " + header);
+
+        into.time     = in.readSignedVarint() + EPOCH_BASE_MS;
+        into.lat      = in.readInt() / COORD_SCALE;
+        into.lng      = in.readInt() / COORD_SCALE;
+        into.accuracy = in.readVarint() / 10f;
+        into.altitude = in.readSignedVarint() / 10.0;
+        into.speed    = in.readVarint() / 100f;
+        into.bearing  = in.readVarint() / 10f;
+    }
+
+    // --- Quantization, shared with WireFormat's delta coding ---
+
+    static int coord(double degrees) {
+        return (int) Math.round(degrees * COORD_SCALE);
+    }
+
+    static int accuracy(Fix fix) {
+        return Math.max(0, Math.round(fix.accuracy * 10)); // decimetres
+    }
+
+    static long altitude(Fix fix) {
+        return Math.round(fix.altitude * 10); // decimetres
+    }
+
+    static int speed(Fix fix) {
+        return Math.max(0, Math.round(fix.speed * 100)); // cm/s
+    }
+
+    static int bearing(Fix fix) {
+        return Math.floorMod(Math.round(fix.bearing * 10), 3600); // tenths of a degree
+    }
+
+    // --- Writers, shared with WireFormat; ByteReader reads them back ---
+
+    static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    static int putVarint(byte[] buf, int pos, long v) {
+        while ((v & ~0x7FL) != 0) {
+            buf[pos++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        buf[pos++] = (byte) v;
+        return pos;
+    }
+
+    static int putInt(byte[] buf, int pos, int v) {
+        buf[pos++] = (byte) (v >>> 24);
+        buf[pos++] = (byte) (v >>> 16);
+        buf[pos++] = (byte) (v >>> 8);
+        buf[pos++] = (byte) v;
+        return pos;
+    }
+}
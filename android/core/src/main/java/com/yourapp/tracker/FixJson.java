@@ -0,0 +1,43 @@
+package com.yourapp.tracker;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/** The JSON form of a {@link Fix}, as stored by the server and shown on the dashboard */
+final class FixJson {
+
+    private FixJson() {}
+
+    static JSONObject toJson(Fix fix, String deviceId) throws JSONException {
+        JSONObject data = new JSONObject();
+        data.put("timestamp",  fix.time);
+        data.put("device_id",  deviceId);
+        data.put("lat",        fix.lat);
+        data.put("lng",        fix.lng);
+        data.put("accuracy_m", round(fix.accuracy, 10));
+        data.put("altitude_m", fix.altitude);
+        data.put("speed_ms",   round(fix.speed, 100));  // metres per second
+        data.put("bearing",    round(fix.bearing, 10)); // degrees
+        return data;
+    }
+
+    /**
+     * A float at the resolution {@link FixCodec} stores, {@code 1 / scale}. Widened as it is, 4.7f
+     * would be written as 4.699999809265137.
+     */
+    private static double round(float value, int scale) {
+        return Math.round(value * (double) scale) / (double) scale;
+    }
+
+    static Fix fromJson(JSONObject data) {
+        Fix fix = new Fix();
+        fix.time     = data.optLong("timestamp");
+        fix.lat      = data.optDouble("lat");
+        fix.lng      = data.optDouble("lng");
+        fix.accuracy = (float) data.optDouble("accuracy_m", 0);
+        fix.altitude = data.optDouble("altitude_m", 0);
+        fix.speed    = (float) data.optDouble("speed_ms", 0);
+        fix.bearing  = (float) data.optDouble("bearing", 0);
+        return fix;
+    }
+}
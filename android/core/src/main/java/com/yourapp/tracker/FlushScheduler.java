@@ -0,0 +1,172 @@
+package com.yourapp.tracker;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Decides when the queue is flushed, independent of how often a flush is asked for.
+ *
+ * Single flight: at most one flush runs and at most one is scheduled. A request while either
+ * exists only sets a dirty flag, and a dirty flag left behind by a finished flush schedules
+ * the next one. Requests are batched: a flush runs {@code debounceMs} after the first request
+ * once {@code minBatchRecords} are pending, and {@code maxBatchDelayMs} after it otherwise.
+ * After a failed flush the next attempt waits an exponentially growing, jittered backoff.
+ * While paused, requests are only remembered.
+ */
+public class FlushScheduler {
+
+    public static final long DEFAULT_DEBOUNCE_MS        = 5_000;
+    public static final int  DEFAULT_MIN_BATCH_RECORDS  = 20;
+    public static final long DEFAULT_MAX_BATCH_DELAY_MS = 30_000;
+    public static final long DEFAULT_BACKOFF_MIN_MS     = 5_000;
+    public static final long DEFAULT_BACKOFF_MAX_MS     = 300_000;
+
+    /** One flush of the queue */
+    public interface Flush {
+        /** @return false if it failed and should be retried after a backoff */
+        boolean run();
+    }
+
+    private final ScheduledExecutorService executor;
+    private final Flush                    flush;
+    private final IntSupplier              pending;
+    private final LongSupplier             nanoTime;
+    private final Runnable                 runTask = this::runFlush;
+
+    private long debounceMs      = DEFAULT_DEBOUNCE_MS;
+    private int  minBatchRecords = DEFAULT_MIN_BATCH_RECORDS;
+    private long maxBatchDelayMs = DEFAULT_MAX_BATCH_DELAY_MS;
+    private long backoffMinMs    = DEFAULT_BACKOFF_MIN_MS;
+    private long backoffMaxMs    = DEFAULT_BACKOFF_MAX_MS;
+
+    // All guarded by this
+    private boolean            dirty;
+    private boolean            running;
+    private boolean            paused;
+    private ScheduledFuture<?> scheduled;
+    private long               scheduledAt;   // nanoTime the scheduled flush is due
+    private long               backoffUntil;  // nanoTime before which no flush may start
+    private int                failures;
+
+    /**
+     * @param executor  runs the flushes; should be single-threaded
+     * @param pending   number of records waiting, used for the minimum batch
+     */
+    public FlushScheduler(ScheduledExecutorService executor, Flush flush, IntSupplier pending) {
+        this(executor, flush, pending, System::nanoTime);
+    }
+
+    /** @param nanoTime  the clock {@code executor} schedules by; tests pass a fake one */
+    FlushScheduler(ScheduledExecutorService executor, Flush flush, IntSupplier pending, LongSupplier nanoTime) {
+        this.executor = executor;
+        this.flush    = flush;
+        this.pending  = pending;
+        this.nanoTime = nanoTime;
+    }
+
+    /** Flush {@code debounceMs} after a request once {@code minRecords} are pending, else after {@code maxDelayMs} */
+    public synchronized void setBatching(long debounceMs, int minRecords, long maxDelayMs) {
+        if (debounceMs < 0 || minRecords < 0 || maxDelayMs < debounceMs)
+            throw new IllegalArgumentException("Invalid batching thresholds");
+        this.debounceMs      = debounceMs;
+        this.minBatchRecords = minRecords;
+        this.maxBatchDelayMs = maxDelayMs;
+    }
+
+    /** Backoff after the first failure, doubling up to {@code maxMs} */
+    public synchronized void setBackoff(long minMs, long maxMs) {
+        if (minMs <= 0 || maxMs < minMs) throw new IllegalArgumentException("Invalid backoff");
+        backoffMinMs = minMs;
+        backoffMaxMs = maxMs;
+    }
+
+    /** New records are waiting; flush once the batching thresholds allow it */
+    public synchronized void request() {
+        dirty = true;
+        if (running || paused) return; // picked up when the running flush finishes or on resume
+        long delay = pending.getAsInt() >= minBatchRecords ? debounceMs : maxBatchDelayMs;
+        scheduleIn(delay);
+    }
+
+    /**
+     * Flush as soon as possible, skipping batching and any backoff, e.g. when the network
+     * came back and the earlier failures were most likely caused by it being gone.
+     */
+    public synchronized void requestNow() {
+        dirty        = true;
+        failures     = 0;
+        backoffUntil = 0;
+        if (!running && !paused) scheduleIn(0);
+    }
+
+    /** Stop starting flushes, e.g. while there is no usable session; requests are remembered */
+    public synchronized void pause() {
+        paused = true;
+        if (scheduled != null) {
+            scheduled.cancel(false);
+            scheduled = null;
+        }
+    }
+
+    /** Start flushing again, with a flush right away */
+    public synchronized void resume() {
+        if (!paused) return;
+        paused = false;
+        requestNow();
+    }
+
+    /** Consecutive failed flushes since the last success */
+    public synchronized int failures() {
+        return failures;
+    }
+
+    /** Schedule a flush at most {@code delayMs} from now, or later if backing off */
+    private void scheduleIn(long delayMs) {
+        long now = nanoTime.getAsLong();
+        long due = Math.max(now + TimeUnit.MILLISECONDS.toNanos(delayMs), backoffUntil);
+        if (scheduled != null) {
+            if (scheduledAt - due <= 0) return; // already due no later
+            scheduled.cancel(false);
+        }
+        scheduledAt = due;
+        scheduled   = executor.schedule(runTask, due - now, TimeUnit.NANOSECONDS);
+    }
+
+    private void runFlush() {
+        synchronized (this) {
+            scheduled = null;
+            if (running || paused || !dirty) return;
+            running = true;
+            dirty   = false;
+        }
+
+        boolean ok = false;
+        try {
+            ok = flush.run();
+        } finally {
+            synchronized (this) {
+                running = false;
+                if (ok) {
+                    failures = 0;
+                    if (dirty) request();
+                } else {
+                    failures++;
+                    backoffUntil = nanoTime.getAsLong() + TimeUnit.MILLISECONDS.toNanos(backoffDelay());
+                    dirty        = true; // the records are still waiting
+                    if (!paused) scheduleIn(0);
+                }
+            }
+        }
+    }
+
+    /** Exponential backoff with jitter: a random delay in [half, full] of the current step */
+    private long backoffDelay() {
+        int  shift = Math.min(failures - 1, 20);
+        long step  = Math.min(backoffMaxMs, backoffMinMs << shift);
+        return step / 2 + ThreadLocalRandom.current().nextLong(step / 2 + 1);
+    }
+}
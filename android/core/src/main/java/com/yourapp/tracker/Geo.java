@@ -0,0 +1,41 @@
+package com.yourapp.tracker;
+
+/** Small-distance geometry on WGS84 coordinates, accurate to well under a metre over a few km */
+final class Geo {
+
+    static final double EARTH_RADIUS_M = 6_371_008.8;
+
+    private static final double M_PER_DEG = Math.toRadians(1) * EARTH_RADIUS_M;
+
+    private Geo() {}
+
+    /** Distance in metres (equirectangular approximation) */
+    static double distance(double lat1, double lng1, double lat2, double lng2) {
+        double x = (lng2 - lng1) * M_PER_DEG * Math.cos(Math.toRadians((lat1 + lat2) / 2));
+        double y = (lat2 - lat1) * M_PER_DEG;
+        return Math.sqrt(x * x + y * y);
+    }
+
+    /**
+     * Distance in metres from point p to the segment a-b, in a local plane around a.
+     */
+    static double distanceToSegment(double pLat, double pLng,
+                                    double aLat, double aLng, double bLat, double bLng) {
+        double cos = Math.cos(Math.toRadians(aLat));
+        double bx  = (bLng - aLng) * M_PER_DEG * cos;
+        double by  = (bLat - aLat) * M_PER_DEG;
+        double px  = (pLng - aLng) * M_PER_DEG * cos;
+        double py  = (pLat - aLat) * M_PER_DEG;
+        double len = bx * bx + by * by;
+        double t   = len == 0 ? 0 : Math.max(0, Math.min(1, (px * bx + py * by) / len));
+        double dx  = px - t * bx;
+        double dy  = py - t * by;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /** Absolute difference between two bearings in degrees, 0..180 */
+    static double bearingDelta(double a, double b) {
+        double d = Math.abs(a - b) % 360;
+        return d > 180 ? 360 - d : d;
+    }
+}
@@ -0,0 +1,34 @@
+package com.yourapp.tracker;
+
+import org.json.JSONObject;
+
+/**
+ * Sends a POST to the CloudTracker server. The app uses {@code ApiClient::send}; benchmarks and
+ * tools on a plain JVM plug in their own client.
+ */
+public interface HttpTransport {
+
+    /** Outcome of a request: the HTTP status (-1 if none was received) and the JSON body, if any */
+    class Response {
+        public final int        status;
+        public final JSONObject body;
+
+        public Response(int status, JSONObject body) {
+            this.status = status;
+            this.body   = body;
+        }
+
+        public boolean isSuccessful() {
+            return status >= 200 && status < 300;
+        }
+    }
+
+    /**
+     * @param endpoint     e.g. "/data"
+     * @param contentType  MIME type of {@code body}
+     * @param gzip         send the body gzip-compressed with Content-Encoding: gzip
+     * @param token        JWT, or null for unauthenticated routes
+     * @param timeoutMs    connect and read timeout; 0 uses the client's defaults
+     */
+    Response send(String endpoint, byte[] body, String contentType, boolean gzip, String token, int timeoutMs);
+}
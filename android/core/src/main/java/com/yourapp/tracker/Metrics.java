@@ -0,0 +1,175 @@
+package com.yourapp.tracker;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Process-wide counters, gauges and histograms for the tracking pipeline.
+ *
+ * Recording is lock-free and allocation-free: counters are {@link LongAdder}s and histograms
+ * count values in power-of-two buckets, so percentiles are exact to within a factor of two.
+ * Metrics are looked up by name once, typically into a static field, and then only updated.
+ * Units are part of the name ({@code _ms}, {@code _us}, {@code _bytes}).
+ *
+ * A snapshot can be printed ({@link #dump}, used by {@code dumpsys}), written to a file
+ * ({@link #writeTo}) or sent as JSON ({@link #snapshot}).
+ */
+public final class Metrics {
+
+    /** A monotonically increasing count */
+    public static final class Counter {
+        private final LongAdder value = new LongAdder();
+
+        public void inc() {
+            value.increment();
+        }
+
+        public void add(long n) {
+            value.add(n);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+    }
+
+    /** Distribution of non-negative values in power-of-two buckets */
+    public static final class Histogram {
+        // Bucket 0 counts zeros, bucket i counts values in [2^(i-1), 2^i)
+        private final AtomicLongArray buckets = new AtomicLongArray(65);
+        private final LongAdder       count   = new LongAdder();
+        private final LongAdder       sum     = new LongAdder();
+        private final AtomicLong      max     = new AtomicLong();
+
+        public void record(long value) {
+            if (value < 0) value = 0;
+            buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(value));
+            count.increment();
+            sum.add(value);
+            long current;
+            do {
+                current = max.get();
+            } while (value > current && !max.compareAndSet(current, value));
+        }
+
+        /** Record the milliseconds since {@code startNanos} (from {@link System#nanoTime}) */
+        public void recordMillisSince(long startNanos) {
+            record((System.nanoTime() - startNanos) / 1_000_000);
+        }
+
+        /** Record the microseconds since {@code startNanos} (from {@link System#nanoTime}) */
+        public void recordMicrosSince(long startNanos) {
+            record((System.nanoTime() - startNanos) / 1_000);
+        }
+
+        public long count() {
+            return count.sum();
+        }
+
+        public long sum() {
+            return sum.sum();
+        }
+
+        public long max() {
+            return max.get();
+        }
+
+        /** Upper bound of the bucket holding the {@code q} quantile, capped at the maximum seen */
+        public long percentile(double q) {
+            long total = count();
+            if (total == 0) return 0;
+            long rank = (long) Math.ceil(q * total);
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) return Math.min(i == 0 ? 0 : (1L << i) - 1, max());
+            }
+            return max();
+        }
+    }
+
+    private static final Map<String, Counter>      counters   = new ConcurrentHashMap<>();
+    private static final Map<String, Histogram>    histograms = new ConcurrentHashMap<>();
+    private static final Map<String, LongSupplier> gauges     = new ConcurrentHashMap<>();
+
+    private Metrics() {}
+
+    public static Counter counter(String name) {
+        return counters.computeIfAbsent(name, n -> new Counter());
+    }
+
+    public static Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, n -> new Histogram());
+    }
+
+    /** Read {@code value} at snapshot time; registering the same name again replaces it */
+    public static void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /** Unregister {@code name}, unless it has been registered again with another supplier since */
+    public static void removeGauge(String name, LongSupplier value) {
+        gauges.remove(name, value);
+    }
+
+    /** Human-readable listing, sorted by name */
+    public static void dump(PrintWriter out) {
+        for (Map.Entry<String, Counter> e : new TreeMap<>(counters).entrySet())
+            out.println(e.getKey() + " = " + e.getValue().get());
+        for (Map.Entry<String, LongSupplier> e : new TreeMap<>(gauges).entrySet())
+            out.println(e.getKey() + " = " + e.getValue().getAsLong());
+        for (Map.Entry<String, Histogram> e : new TreeMap<>(histograms).entrySet()) {
+            Histogram h = e.getValue();
+            out.println(e.getKey() + " count=" + h.count() + " sum=" + h.sum()
+                + " p50=" + h.percentile(0.5) + " p90=" + h.percentile(0.9)
+                + " p99=" + h.percentile(0.99) + " max=" + h.max());
+        }
+        out.flush();
+    }
+
+    /** All metrics as {@code {"counters": {...}, "gauges": {...}, "histograms": {...}}} */
+    public static JSONObject snapshot() {
+        try {
+            JSONObject c = new JSONObject();
+            for (Map.Entry<String, Counter> e : counters.entrySet()) c.put(e.getKey(), e.getValue().get());
+            JSONObject g = new JSONObject();
+            for (Map.Entry<String, LongSupplier> e : gauges.entrySet()) g.put(e.getKey(), e.getValue().getAsLong());
+            JSONObject h = new JSONObject();
+            for (Map.Entry<String, Histogram> e : histograms.entrySet()) {
+                Histogram hist = e.getValue();
+                h.put(e.getKey(), new JSONObject()
+                    .put("count", hist.count())
+                    .put("sum", hist.sum())
+                    .put("p50", hist.percentile(0.5))
+                    .put("p90", hist.percentile(0.9))
+                    .put("p99", hist.percentile(0.99))
+                    .put("max", hist.max()));
+            }
+            return new JSONObject().put("counters", c).put("gauges", g).put("histograms", h);
+        } catch (JSONException e) {
+            throw new IllegalStateException(e); // only thrown for non-finite numbers
+        }
+    }
+
+    /** Replace {@code file} with the current {@link #snapshot}, atomically */
+    public static void writeTo(File file) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(snapshot().toString().getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        }
+        if (!tmp.renameTo(file)) throw new IOException("Cannot replace " + file);
+    }
+}
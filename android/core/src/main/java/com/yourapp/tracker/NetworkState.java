@@ -0,0 +1,37 @@
+package com.yourapp.tracker;
+
+/** Immutable snapshot of the default network, as seen by the app's connectivity monitor */
+public final class NetworkState {
+
+    public enum Transport { NONE, WIFI, CELLULAR, ETHERNET, OTHER }
+
+    public static final NetworkState OFFLINE = new NetworkState(false, false, true, Transport.NONE);
+
+    public final boolean   online;    // a default network with internet capability exists
+    public final boolean   validated; // the system confirmed it reaches the internet (no captive portal)
+    public final boolean   metered;
+    public final Transport transport;
+
+    public NetworkState(boolean online, boolean validated, boolean metered, Transport transport) {
+        this.online    = online;
+        this.validated = validated;
+        this.metered   = metered;
+        this.transport = transport;
+    }
+
+    /** Online and validated: requests can be expected to get through */
+    public boolean usable() {
+        return online && validated;
+    }
+
+    boolean sameAs(NetworkState other) {
+        return online == other.online && validated == other.validated
+            && metered == other.metered && transport == other.transport;
+    }
+
+    @Override
+    public String toString() {
+        if (!online) return "offline";
+        return transport + (metered ? " metered" : " unmetered") + (validated ? "" : " unvalidated");
+    }
+}
@@ -0,0 +1,122 @@
+package com.yourapp.tracker;
+
+/**
+ * Streaming track simplifier that drops redundant fixes before they are stored.
+ *
+ * Two stages run per fix:
+ * <ol>
+ *   <li>Jitter: a fix closer than {@code minDistanceM} to the last kept fix is dropped, unless
+ *       the device is moving and its heading turned by at least {@code minHeadingChangeDeg}.</li>
+ *   <li>Simplification (an opening-window Douglas–Peucker): fixes since the last kept point
+ *       wait in a window. While the straight line from the last kept point to the newest fix
+ *       passes within {@code toleranceM} of every waiting fix, they remain redundant. When a
+ *       fix breaks the bound, the previous fix is kept and becomes the new start.</li>
+ * </ol>
+ * No kept track deviates from the raw track by more than {@code toleranceM}. The newest fix is
+ * held back until a later one proves it is needed, but no more than {@code maxGapMs}: the first
+ * fix after that releases it, even one dropped as jitter, so an arrival is stored while the
+ * device stands still. Kept fixes are also at most {@code maxGapMs} apart while moving, and
+ * {@link #flush} releases the held fix (for example on shutdown). The window holds at most
+ * {@link #MAX_WINDOW} fixes.
+ *
+ * Offered fixes are copied into preallocated slots, so the caller may reuse its {@link Fix},
+ * and a returned fix is only valid until the next call.
+ */
+public class PointFilter {
+
+    public static final double DEFAULT_TOLERANCE_M      = 10;
+    public static final double DEFAULT_MIN_DISTANCE_M   = 5;
+    public static final double DEFAULT_MIN_HEADING_DEG  = 30;
+    public static final long   DEFAULT_MAX_GAP_MS       = 300_000;
+    public static final int    MAX_WINDOW               = 64;
+
+    private static final float MOVING_MS = 0.8f;
+
+    private final double toleranceM;
+    private final double minDistanceM;
+    private final double minHeadingChangeDeg;
+    private final long   maxGapMs;
+
+    private final Fix   anchor = new Fix();            // last kept fix
+    private boolean     hasAnchor;
+    private final Fix[] window = new Fix[MAX_WINDOW];  // fixes after the anchor, newest last
+    private int         windowSize;
+    private final Fix   kept   = new Fix();            // handed back to the caller
+
+    public PointFilter() {
+        this(DEFAULT_TOLERANCE_M, DEFAULT_MIN_DISTANCE_M, DEFAULT_MIN_HEADING_DEG, DEFAULT_MAX_GAP_MS);
+    }
+
+    public PointFilter(double toleranceM, double minDistanceM, double minHeadingChangeDeg, long maxGapMs) {
+        this.toleranceM          = toleranceM;
+        this.minDistanceM        = minDistanceM;
+        this.minHeadingChangeDeg = minHeadingChangeDeg;
+        this.maxGapMs            = maxGapMs;
+        for (int i = 0; i < MAX_WINDOW; i++) window[i] = new Fix();
+    }
+
+    /**
+     * Offer the next raw fix.
+     * @return a fix to store (always one offered earlier, or this one if it is the first), or null;
+     *         valid until the next call
+     */
+    public Fix offer(Fix fix) {
+        if (!hasAnchor) {
+            anchor.set(fix);
+            hasAnchor = true;
+            return kept.set(fix);
+        }
+
+        if (windowSize > 0 && fix.time - window[windowSize - 1].time > maxGapMs) {
+            keepNewest(); // held back long enough
+            if (!isJitter(anchor, fix)) window[windowSize++].set(fix);
+            return kept;
+        }
+
+        if (isJitter(windowSize == 0 ? anchor : window[windowSize - 1], fix)) return null;
+
+        if (windowSize == 0) {
+            window[windowSize++].set(fix);
+            return null;
+        }
+
+        boolean stale = fix.time - anchor.time > maxGapMs;
+        if (stale || windowSize >= MAX_WINDOW || !coversWindow(fix)) {
+            keepNewest();
+            window[windowSize++].set(fix);
+            return kept;
+        }
+        window[windowSize++].set(fix);
+        return null;
+    }
+
+    /** Whether {@code fix} only jitters around {@code last}: close to it, and not turning while moving */
+    private boolean isJitter(Fix last, Fix fix) {
+        return Geo.distance(last.lat, last.lng, fix.lat, fix.lng) < minDistanceM
+            && (fix.speed < MOVING_MS || Geo.bearingDelta(last.bearing, fix.bearing) < minHeadingChangeDeg);
+    }
+
+    /** Release the fix being held back, if any; call when tracking stops */
+    public Fix flush() {
+        if (windowSize == 0) return null;
+        keepNewest();
+        return kept;
+    }
+
+    /** The newest waiting fix becomes the kept fix and the new anchor */
+    private void keepNewest() {
+        kept.set(window[windowSize - 1]);
+        anchor.set(kept);
+        windowSize = 0;
+    }
+
+    /** Whether the line anchor -> fix stays within tolerance of every waiting fix */
+    private boolean coversWindow(Fix fix) {
+        for (int i = 0; i < windowSize; i++) {
+            Fix w = window[i];
+            if (Geo.distanceToSegment(w.lat, w.lng, anchor.lat, anchor.lng, fix.lat, fix.lng) > toleranceM)
+                return false;
+        }
+        return true;
+    }
+}
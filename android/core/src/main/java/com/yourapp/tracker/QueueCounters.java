@@ -0,0 +1,92 @@
+package com.yourapp.tracker;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live counters shared by the {@link RecordQueue} implementations.
+ * Updated on enqueue, claim, ack and release; read without locks.
+ */
+class QueueCounters {
+
+    // Process-wide, shared by every queue; see Metrics
+    static final Metrics.Histogram commitLatency = Metrics.histogram("queue.commit_us");
+    static final Metrics.Counter   dropped       = Metrics.counter("queue.dropped_records"); // by the retention budget
+
+    private final AtomicLong pending      = new AtomicLong();
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private final AtomicLong inFlight     = new AtomicLong();
+    private final AtomicLong acked        = new AtomicLong();
+
+    /** Records found in storage when the queue was opened */
+    void loaded(long records, long bytes) {
+        pending.addAndGet(records);
+        pendingBytes.addAndGet(bytes);
+    }
+
+    void enqueued(long bytes) {
+        pending.incrementAndGet();
+        pendingBytes.addAndGet(bytes);
+    }
+
+    void claimed(int records) {
+        inFlight.addAndGet(records);
+    }
+
+    void acked(long records, long bytes) {
+        pending.addAndGet(-records);
+        pendingBytes.addAndGet(-bytes);
+        acked.addAndGet(records);
+        long current;
+        do {
+            current = inFlight.get();
+        } while (!inFlight.compareAndSet(current, Math.max(0, current - records)));
+    }
+
+    /** Records removed without being uploaded, e.g. by the retention budget */
+    void dropped(long records, long bytes) {
+        dropped.add(records);
+        pending.addAndGet(-records);
+        pendingBytes.addAndGet(-bytes);
+    }
+
+    void released() {
+        inFlight.set(0);
+    }
+
+    int pendingCount() {
+        return (int) pending.get();
+    }
+
+    long pendingBytes() {
+        return pendingBytes.get();
+    }
+
+    RecordQueue.Stats snapshot() {
+        RecordQueue.Stats s = new RecordQueue.Stats();
+        s.pending      = pending.get();
+        s.pendingBytes = pendingBytes.get();
+        s.inFlight     = inFlight.get();
+        s.acked        = acked.get();
+        return s;
+    }
+
+    /** Size a record is counted with: its key and payload */
+    static long sizeOf(String key, byte[] payload) {
+        return key.length() + payload.length;
+    }
+
+    /** {@link #sizeOf(String, byte[])} of the key {@code keyPrefix + seq}, without building it */
+    static long sizeOf(String keyPrefix, long seq, int payloadLength) {
+        return keyPrefix.length() + digits(seq) + payloadLength;
+    }
+
+    /** Number of decimal digits of a non-negative {@code value} */
+    static int digits(long value) {
+        int n = 1;
+        while (value >= 10) {
+            value /= 10;
+            n++;
+        }
+        return n;
+    }
+}
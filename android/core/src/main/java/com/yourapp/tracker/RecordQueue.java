@@ -0,0 +1,67 @@
+package com.yourapp.tracker;
+
+import java.util.List;
+
+/**
+ * A durable FIFO of records waiting to be uploaded.
+ *
+ * Records are read for upload with {@link #claim}, which hands out each record once, and
+ * removed with {@link #ack} once the server confirmed them. {@link #release} puts claimed but
+ * unconfirmed records back so the next claim returns them again.
+ *
+ * Implementations: {@link LocalQueue} (SQLite) and {@link SegmentLogQueue} (memory-mapped log).
+ * Both keep their counters in memory, so {@link #stats} and {@link #pendingCount} never query
+ * storage.
+ */
+public interface RecordQueue {
+
+    class Record {
+        public long   id;
+        public String key;
+        public byte[] payload;
+    }
+
+    /** Snapshot of the queue's live counters */
+    class Stats {
+        public long pending;      // enqueued and not yet acknowledged, including in-flight
+        public long pendingBytes; // key and payload bytes of the pending records
+        public long inFlight;     // claimed and awaiting acknowledgement
+        public long acked;        // acknowledged since the queue was opened
+
+        @Override
+        public String toString() {
+            return "pending=" + pending + " (" + pendingBytes + "B) inFlight=" + inFlight + " acked=" + acked;
+        }
+    }
+
+    /** Add a new record to the queue; {@code payload} is an encoded record (see {@link FixCodec}) */
+    void enqueue(String key, byte[] payload);
+
+    /**
+     * Add a fix under the key {@code keyPrefix + seq}, encoded with {@link FixCodec}.
+     * Equivalent to {@link #enqueue} but without building the key or payload: the fix is copied
+     * into reused buffers, so {@code fix} may be reused as soon as this returns.
+     */
+    void enqueueFix(String keyPrefix, long seq, Fix fix);
+
+    /** Make every record enqueued so far durable */
+    void commit();
+
+    /** Claim up to {@code limit} of the oldest unclaimed records, oldest first */
+    List<Record> claim(int limit);
+
+    /** Acknowledge every record with an id up to {@code upToId} and drop it from the queue */
+    void ack(long upToId);
+
+    /** Hand claimed but unacknowledged records out again on the next claim */
+    void release();
+
+    /** Number of records waiting to be synced */
+    int pendingCount();
+
+    /** Current counters; cheap enough to call for every status update */
+    Stats stats();
+
+    /** Make pending records durable and release resources */
+    void close();
+}
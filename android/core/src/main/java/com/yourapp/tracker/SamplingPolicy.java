@@ -0,0 +1,104 @@
+package com.yourapp.tracker;
+
+/**
+ * Chooses the location request interval and power level from recent fixes.
+ *
+ * A device that stays within {@link #STATIONARY_RADIUS_M} for {@link #STATIONARY_DWELL_MS}
+ * drops to a slow, balanced-power request. Any clear movement switches straight back to a
+ * moving mode, whose interval follows speed. Moving modes only change after
+ * {@link #MODE_CONFIRMATIONS} consecutive fixes agree, so one noisy speed reading cannot
+ * make the request flap. Fixes with worse accuracy than {@link #MAX_USABLE_ACCURACY_M}
+ * are ignored for these decisions.
+ */
+public class SamplingPolicy {
+
+    /** Power level of a location request; mapped onto the platform's priorities by the caller */
+    public enum Power { HIGH_ACCURACY, BALANCED }
+
+    public enum Mode {
+        STATIONARY(60_000, 30_000, Power.BALANCED),
+        SLOW      (15_000,  5_000, Power.HIGH_ACCURACY), // walking
+        MOVING    (10_000,  5_000, Power.HIGH_ACCURACY),
+        FAST      ( 5_000,  2_000, Power.HIGH_ACCURACY); // highway: keep curves accurate
+
+        public final long  intervalMs;
+        public final long  fastestIntervalMs;
+        public final Power power;
+
+        Mode(long intervalMs, long fastestIntervalMs, Power power) {
+            this.intervalMs        = intervalMs;
+            this.fastestIntervalMs = fastestIntervalMs;
+            this.power             = power;
+        }
+    }
+
+    public static final double STATIONARY_RADIUS_M   = 25;
+    public static final long   STATIONARY_DWELL_MS   = 120_000;
+    public static final float  MAX_USABLE_ACCURACY_M = 100;
+    public static final int    MODE_CONFIRMATIONS    = 3;
+
+    private static final float SLOW_SPEED_MS = 2.5f;  // ~9 km/h
+    private static final float FAST_SPEED_MS = 20f;   // ~72 km/h
+    private static final float MOVING_MS     = 0.8f;  // slower than this counts as standing
+
+    private Mode mode = Mode.MOVING;
+
+    // Where the device has been standing since dwellStart, if it has been standing
+    private double dwellLat;
+    private double dwellLng;
+    private long   dwellStart = -1;
+
+    private Mode candidate;
+    private int  confirmations;
+
+    public Mode mode() {
+        return mode;
+    }
+
+    /**
+     * Feed the next fix.
+     * @return true if the mode changed and the location request should be updated
+     */
+    public boolean onFix(Fix fix) {
+        if (fix.accuracy > MAX_USABLE_ACCURACY_M) return false;
+
+        boolean moving = fix.speed >= MOVING_MS;
+        boolean left   = dwellStart >= 0
+            && Geo.distance(dwellLat, dwellLng, fix.lat, fix.lng) > STATIONARY_RADIUS_M + fix.accuracy;
+        if (moving || left) dwellStart = -1;
+        if (!moving && dwellStart < 0) { // started standing here
+            dwellLat   = fix.lat;
+            dwellLng   = fix.lng;
+            dwellStart = fix.time;
+        }
+
+        if (mode == Mode.STATIONARY)
+            return (moving || left) && switchTo(speedMode(fix.speed)); // leave at once
+        if (dwellStart >= 0 && fix.time - dwellStart >= STATIONARY_DWELL_MS)
+            return switchTo(Mode.STATIONARY); // the dwell time already confirmed it
+
+        Mode next = speedMode(fix.speed);
+        if (next == mode) {
+            candidate = null;
+            return false;
+        }
+        if (next != candidate) {
+            candidate     = next;
+            confirmations = 0;
+        }
+        return ++confirmations >= MODE_CONFIRMATIONS && switchTo(next);
+    }
+
+    private static Mode speedMode(float speed) {
+        if (speed >= FAST_SPEED_MS) return Mode.FAST;
+        if (speed >= SLOW_SPEED_MS) return Mode.MOVING;
+        return Mode.SLOW;
+    }
+
+    private boolean switchTo(Mode next) {
+        candidate = null;
+        if (next == mode) return false;
+        mode = next;
+        return true;
+    }
+}
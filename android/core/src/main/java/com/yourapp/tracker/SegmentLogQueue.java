@@ -0,0 +1,400 @@
+package com.yourapp.tracker;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only record log in memory-mapped segment files, for high-frequency tracking
+ * where a strict FIFO does not need SQLite.
+ *
+ * Each record takes one fixed-size frame: CRC32, record id, key and payload lengths, then the
+ * UTF-8 key and the encoded payload. Ids start at 1 and map directly to a segment file and a
+ * slot in it. The acknowledged watermark is stored in a small cursor file, so the read position survives
+ * restarts. A segment is deleted whole once every record in it has been acknowledged, and only
+ * after the cursor covering it has been forced to disk.
+ *
+ * On open, the tail segment is scanned and the log ends at the first frame that fails its
+ * CRC or id check. Any frames after that point are cleared so they cannot reappear later.
+ *
+ * {@link #enqueueFix} builds the frame in a reused scratch array and copies it into the
+ * mapping, so appending a fix allocates nothing.
+ */
+public class SegmentLogQueue implements RecordQueue {
+
+    /** When appended frames are forced to disk */
+    public enum FsyncPolicy {
+        /** After every record: nothing is lost on power failure, one sync per record */
+        EVERY_RECORD,
+        /** At most {@link #FSYNC_INTERVAL_MS} after a write, and on {@link #commit} */
+        INTERVAL,
+        /** Left to the kernel: survives process crashes, not power loss */
+        OS
+    }
+
+    public static final int  FRAME_SIZE         = 128;
+    public static final int  FRAMES_PER_SEGMENT = 8192; // 1 MiB segments
+    public static final long FSYNC_INTERVAL_MS  = 15_000;
+
+    private static final int    HEADER_SIZE    = 16; // crc(4) id(8) keyLen(2) payloadLen(2)
+    private static final int    MAX_BODY       = FRAME_SIZE - HEADER_SIZE;
+    private static final long   SEGMENT_SIZE   = (long) FRAME_SIZE * FRAMES_PER_SEGMENT;
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String CURSOR_FILE    = "cursor";
+
+    private final File                            dir;
+    private final FsyncPolicy                     policy;
+    private final TreeMap<Long, MappedByteBuffer> segments = new TreeMap<>(); // first id -> mapping
+    private final FileChannel                     cursorChannel;
+    private final ByteBuffer                      cursorBuffer = ByteBuffer.allocate(16);
+    private final CRC32                           crc          = new CRC32();
+    private final ScheduledExecutorService        syncer       = Executors.newSingleThreadScheduledExecutor();
+    private final QueueCounters                   counters     = new QueueCounters();
+    private final byte[]                          frame        = new byte[FRAME_SIZE]; // guarded by this
+    private final ByteBuffer                      frameBuffer  = ByteBuffer.wrap(frame);
+    private String                                prefix;      // key prefix cached in prefixBytes
+    private byte[]                                prefixBytes;
+
+    private long               nextId;
+    private long               claimedUpTo;
+    private long               ackedUpTo;
+    private boolean            dirty;
+    private ScheduledFuture<?> scheduledSync;
+
+    /** Open (or create) the log in {@code dir}, recovering its state from disk */
+    public static SegmentLogQueue open(File dir, FsyncPolicy policy) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs())
+            throw new IOException("Cannot create queue directory " + dir);
+        return new SegmentLogQueue(dir, policy);
+    }
+
+    private SegmentLogQueue(File dir, FsyncPolicy policy) throws IOException {
+        this.dir           = dir;
+        this.policy        = policy;
+        this.cursorChannel = new RandomAccessFile(new File(dir, CURSOR_FILE), "rw").getChannel();
+        recover();
+    }
+
+    // --- RecordQueue ---
+
+    @Override
+    public synchronized void enqueue(String key, byte[] payload) {
+        byte[] k = key.getBytes(StandardCharsets.UTF_8);
+        if (k.length + payload.length > MAX_BODY)
+            throw new IllegalArgumentException(
+                "Record of " + (k.length + payload.length) + " bytes exceeds the " + MAX_BODY + " byte frame body");
+
+        long             id      = nextId;
+        MappedByteBuffer segment = segmentFor(id);
+        int              pos     = slotOffset(id);
+
+        segment.putLong(pos + 4, id);
+        segment.putShort(pos + 12, (short) k.length);
+        segment.putShort(pos + 14, (short) payload.length);
+        ByteBuffer body = segment.duplicate();
+        body.position(pos + HEADER_SIZE);
+        body.put(k).put(payload);
+        segment.putInt(pos, checksum(segment, pos, k.length + payload.length)); // written last
+        appended(segment, k.length + payload.length);
+    }
+
+    /** Account for the frame just written at {@code nextId} and apply the fsync policy */
+    private void appended(MappedByteBuffer segment, int bodyBytes) {
+        nextId++;
+        counters.enqueued(bodyBytes);
+
+        if (policy == FsyncPolicy.EVERY_RECORD) {
+            segment.force();
+        } else {
+            dirty = true;
+            if (policy == FsyncPolicy.INTERVAL && scheduledSync == null)
+                scheduledSync = syncer.schedule(this::commit, FSYNC_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public synchronized void enqueueFix(String keyPrefix, long seq, Fix fix) {
+        if (!keyPrefix.equals(prefix)) {
+            prefix      = keyPrefix;
+            prefixBytes = keyPrefix.getBytes(StandardCharsets.UTF_8);
+        }
+        int keyLen = prefixBytes.length + QueueCounters.digits(seq);
+        if (keyLen + FixCodec.MAX_SIZE > MAX_BODY)
+            throw new IllegalArgumentException("Key prefix of " + prefixBytes.length + " bytes is too long for a frame");
+
+        // Frame without its CRC: id, lengths, key (prefix and decimal seq), payload
+        System.arraycopy(prefixBytes, 0, frame, HEADER_SIZE, prefixBytes.length);
+        for (int i = HEADER_SIZE + keyLen - 1; i >= HEADER_SIZE + prefixBytes.length; i--) {
+            frame[i] = (byte) ('0' + seq % 10);
+            seq /= 10;
+        }
+        int payLen = FixCodec.encode(fix, frame, HEADER_SIZE + keyLen);
+        int end    = HEADER_SIZE + keyLen + payLen;
+
+        long id = nextId;
+        frameBuffer.putLong(4, id);
+        frameBuffer.putShort(12, (short) keyLen);
+        frameBuffer.putShort(14, (short) payLen);
+        crc.reset();
+        crc.update(frame, 4, end - 4);
+
+        MappedByteBuffer segment = segmentFor(id);
+        int              pos     = slotOffset(id);
+        for (int i = 4; i < end; i++) segment.put(pos + i, frame[i]);
+        segment.putInt(pos, (int) crc.getValue()); // written last
+        appended(segment, keyLen + payLen);
+    }
+
+    @Override
+    public synchronized void commit() {
+        if (scheduledSync != null) {
+            scheduledSync.cancel(false);
+            scheduledSync = null;
+        }
+        long start = System.nanoTime();
+        try {
+            if (dirty && !segments.isEmpty()) segments.lastEntry().getValue().force();
+            cursorChannel.force(false);
+            dirty = false;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        QueueCounters.commitLatency.recordMicrosSince(start);
+    }
+
+    @Override
+    public synchronized List<Record> claim(int limit) {
+        List<Record> page = new ArrayList<>(limit);
+        while (page.size() < limit && claimedUpTo + 1 < nextId) {
+            long   id = ++claimedUpTo;
+            Record r  = readFrame(id);
+            if (r != null) page.add(r); // a frame lost with its segment cannot be sent; skip it
+        }
+        counters.claimed(page.size());
+        return page;
+    }
+
+    @Override
+    public synchronized void ack(long upToId) {
+        upToId = Math.min(upToId, nextId - 1);
+        if (upToId <= ackedUpTo) return;
+        counters.acked(upToId - ackedUpTo, bodyBytes(ackedUpTo + 1, upToId));
+        ackedUpTo   = upToId;
+        claimedUpTo = Math.max(claimedUpTo, upToId);
+        writeCursor();
+
+        // Drop every segment whose last frame is acknowledged. The cursor is made durable first:
+        // after a crash, a stale cursor whose segments are gone would hand out used ids again
+        boolean cursorForced = policy == FsyncPolicy.EVERY_RECORD;
+        Map.Entry<Long, MappedByteBuffer> first;
+        while ((first = segments.firstEntry()) != null
+                && first.getKey() + FRAMES_PER_SEGMENT - 1 <= ackedUpTo) {
+            if (!cursorForced) {
+                forceCursor();
+                cursorForced = true;
+            }
+            segments.remove(first.getKey());
+            if (!segmentFile(first.getKey()).delete())
+                throw new UncheckedIOException(new IOException("Cannot delete segment " + first.getKey()));
+        }
+    }
+
+    @Override
+    public synchronized void release() {
+        claimedUpTo = ackedUpTo;
+        counters.released();
+    }
+
+    @Override
+    public int pendingCount() {
+        return counters.pendingCount();
+    }
+
+    @Override
+    public Stats stats() {
+        return counters.snapshot();
+    }
+
+    @Override
+    public synchronized void close() {
+        commit();
+        syncer.shutdown();
+        try {
+            cursorChannel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        segments.clear(); // mappings are released by the GC
+    }
+
+    // --- Frames ---
+
+    private Record readFrame(long id) {
+        MappedByteBuffer segment = segments.get(segmentStart(id));
+        if (segment == null) return null;
+        int pos = slotOffset(id);
+        if (!isValidFrame(segment, pos, id)) return null;
+
+        int        keyLen = segment.getShort(pos + 12);
+        int        payLen = segment.getShort(pos + 14);
+        byte[]     k      = new byte[keyLen];
+        byte[]     p      = new byte[payLen];
+        ByteBuffer body   = segment.duplicate();
+        body.position(pos + HEADER_SIZE);
+        body.get(k).get(p);
+
+        Record r = new Record();
+        r.id      = id;
+        r.key     = new String(k, StandardCharsets.UTF_8);
+        r.payload = p;
+        return r;
+    }
+
+    /** Key and payload bytes of the frames {@code fromId..toId}, read from their headers */
+    private long bodyBytes(long fromId, long toId) {
+        long bytes = 0;
+        for (long id = fromId; id <= toId; id++) {
+            MappedByteBuffer segment = segments.get(segmentStart(id));
+            if (segment == null) continue;
+            int pos = slotOffset(id);
+            bytes += segment.getShort(pos + 12) + segment.getShort(pos + 14);
+        }
+        return bytes;
+    }
+
+    private boolean isValidFrame(MappedByteBuffer segment, int pos, long expectedId) {
+        if (segment.getLong(pos + 4) != expectedId) return false;
+        int keyLen = segment.getShort(pos + 12);
+        int payLen = segment.getShort(pos + 14);
+        if (keyLen < 0 || payLen < 0 || keyLen + payLen > MAX_BODY) return false;
+        return segment.getInt(pos) == checksum(segment, pos, keyLen + payLen);
+    }
+
+    /** CRC32 over the frame from the id field to the end of the payload */
+    private int checksum(MappedByteBuffer segment, int pos, int bodyLength) {
+        ByteBuffer covered = segment.duplicate();
+        covered.limit(pos + HEADER_SIZE + bodyLength).position(pos + 4);
+        crc.reset();
+        crc.update(covered);
+        return (int) crc.getValue();
+    }
+
+    // --- Segments ---
+
+    private static long segmentStart(long id) {
+        return (id - 1) / FRAMES_PER_SEGMENT * FRAMES_PER_SEGMENT + 1;
+    }
+
+    private static int slotOffset(long id) {
+        return (int) ((id - 1) % FRAMES_PER_SEGMENT) * FRAME_SIZE;
+    }
+
+    private File segmentFile(long firstId) {
+        return new File(dir, String.format("%020d", firstId) + SEGMENT_SUFFIX);
+    }
+
+    /** The mapping that holds {@code id}, creating the segment when the log rolls over */
+    private MappedByteBuffer segmentFor(long id) {
+        long             start   = segmentStart(id);
+        MappedByteBuffer segment = segments.get(start);
+        if (segment != null) return segment;
+
+        if (dirty && !segments.isEmpty()) segments.lastEntry().getValue().force(); // seal the full segment
+        try {
+            segment = map(segmentFile(start));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        segments.put(start, segment);
+        return segment;
+    }
+
+    private static MappedByteBuffer map(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            if (raf.length() != SEGMENT_SIZE) raf.setLength(SEGMENT_SIZE);
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_SIZE);
+        }
+    }
+
+    // --- Cursor and recovery ---
+
+    /** Cursor file: the acknowledged watermark followed by its complement as a torn-write check */
+    private void writeCursor() {
+        cursorBuffer.clear();
+        cursorBuffer.putLong(ackedUpTo).putLong(~ackedUpTo).flip();
+        try {
+            cursorChannel.write(cursorBuffer, 0);
+            if (policy == FsyncPolicy.EVERY_RECORD) cursorChannel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void forceCursor() {
+        try {
+            cursorChannel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long readCursor() throws IOException {
+        cursorBuffer.clear();
+        if (cursorChannel.read(cursorBuffer, 0) < 16) return 0;
+        cursorBuffer.flip();
+        long acked = cursorBuffer.getLong();
+        return cursorBuffer.getLong() == ~acked ? acked : 0;
+    }
+
+    private void recover() throws IOException {
+        ackedUpTo = readCursor();
+
+        File[] files = dir.listFiles((d, name) -> name.endsWith(SEGMENT_SUFFIX));
+        if (files != null) {
+            for (File f : files) {
+                String name  = f.getName();
+                long   start = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                if (start + FRAMES_PER_SEGMENT - 1 <= ackedUpTo) {
+                    if (!f.delete()) throw new IOException("Cannot delete segment " + f);
+                } else {
+                    segments.put(start, map(f));
+                }
+            }
+        }
+
+        // The log ends at the first invalid frame of the tail segment
+        nextId = ackedUpTo + 1;
+        if (!segments.isEmpty()) {
+            long             tailStart = segments.lastKey();
+            MappedByteBuffer tail      = segments.lastEntry().getValue();
+            long             id        = Math.max(tailStart, nextId);
+            while (id < tailStart + FRAMES_PER_SEGMENT && isValidFrame(tail, slotOffset(id), id)) id++;
+            nextId = Math.max(id, nextId);
+
+            // Clear leftovers of a torn tail so they are not mistaken for new frames later
+            for (long stale = nextId; stale < tailStart + FRAMES_PER_SEGMENT; stale++) {
+                int pos = slotOffset(stale);
+                if (tail.getLong(pos + 4) != 0 || tail.getInt(pos) != 0) {
+                    tail.putInt(pos, 0);
+                    tail.putLong(pos + 4, 0);
+                }
+            }
+        }
+        claimedUpTo = ackedUpTo;
+        counters.loaded(nextId - 1 - ackedUpTo, bodyBytes(ackedUpTo + 1, nextId - 1));
+    }
+}
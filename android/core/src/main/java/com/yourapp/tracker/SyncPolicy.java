@@ -0,0 +1,65 @@
+package com.yourapp.tracker;
+
+/**
+ * Chooses what may be uploaded over the current network.
+ *
+ * <ul>
+ *   <li>Unmetered (Wi-Fi, Ethernet): live position and the full backlog in large batches.</li>
+ *   <li>Metered (cellular): the live position only. History waits for an unmetered network,
+ *       unless it has been waiting for {@link #MAX_METERED_DEFER_MS}; then it is sent in small
+ *       batches, one request at a time, so a stale backlog still arrives the same day.</li>
+ *   <li>Offline or not validated (e.g. a captive portal): nothing.</li>
+ * </ul>
+ * Trip summaries are a few dozen bytes each and go out on any usable network, see
+ * {@link #summaryPlan}.
+ */
+public class SyncPolicy {
+
+    public static final long MAX_METERED_DEFER_MS = 6 * 60 * 60_000L;
+
+    /** What a flush may do; limits cap the configured batch limits, they never raise them */
+    public static final class Plan {
+        public static final Plan NONE = new Plan(false, false, 0, 0, 0);
+
+        public final boolean live;
+        public final boolean history;
+        public final int     maxRecords;
+        public final int     maxBytes;
+        public final int     inFlight;
+
+        Plan(boolean live, boolean history, int maxRecords, int maxBytes, int inFlight) {
+            this.live       = live;
+            this.history    = history;
+            this.maxRecords = maxRecords;
+            this.maxBytes   = maxBytes;
+            this.inFlight   = inFlight;
+        }
+    }
+
+    private static final Plan UNMETERED = new Plan(true, true,  Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    private static final Plan CATCH_UP  = new Plan(true, true,  100, 32 * 1024, 1);
+    private static final Plan LIVE_ONLY = new Plan(true, false, 0, 0, 0);
+    private static final Plan SUMMARIES = new Plan(false, true,  100, 32 * 1024, 1);
+
+    private long maxMeteredDeferMs = MAX_METERED_DEFER_MS;
+
+    /** How long history may wait for an unmetered network before it is sent over a metered one */
+    public void setMaxMeteredDefer(long millis) {
+        maxMeteredDeferMs = millis;
+    }
+
+    /**
+     * @param historyWaitingMs  how long queued history has gone without an upload
+     */
+    public Plan plan(NetworkState network, long historyWaitingMs) {
+        if (!network.usable())                     return Plan.NONE;
+        if (!network.metered)                      return UNMETERED;
+        if (historyWaitingMs >= maxMeteredDeferMs) return CATCH_UP;
+        return LIVE_ONLY;
+    }
+
+    /** What a flush may do with trip summaries: small batches on any usable network, metered or not */
+    public Plan summaryPlan(NetworkState network) {
+        return network.usable() ? SUMMARIES : Plan.NONE;
+    }
+}
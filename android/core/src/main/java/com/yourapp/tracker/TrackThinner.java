@@ -0,0 +1,74 @@
+package com.yourapp.tracker;
+
+/**
+ * Downsamples a stored track when the queue runs out of room: stops and turns are kept, the
+ * points in between on straight stretches are dropped.
+ *
+ * A stop is either a run of fixes slower than {@link #STOP_SPEED_MS} or a gap of at least
+ * {@link #STOP_GAP_MS} between two fixes (the sampling policy slows down while stationary);
+ * the first and last fix of each stop are kept, so arrival and departure times survive.
+ * Between those, a fix is kept only if the track would otherwise move more than the tolerance
+ * away from it (Douglas-Peucker).
+ */
+final class TrackThinner {
+
+    static final double STOP_SPEED_MS = 0.5;
+    static final long   STOP_GAP_MS   = 120_000;
+
+    private TrackThinner() {}
+
+    /**
+     * Decide which of {@code fixes[0..n)} (oldest first) to keep at {@code toleranceM}.
+     * @param keep  filled with the decision per fix
+     * @return the number of fixes kept
+     */
+    static int thin(Fix[] fixes, int n, double toleranceM, boolean[] keep) {
+        if (n <= 2) {
+            for (int i = 0; i < n; i++) keep[i] = true;
+            return n;
+        }
+
+        // Anchors: both ends, stop boundaries and both sides of a gap
+        keep[0]     = true;
+        keep[n - 1] = true;
+        for (int i = 1; i < n - 1; i++) {
+            boolean slow = fixes[i].speed < STOP_SPEED_MS;
+            keep[i] = slow != (fixes[i - 1].speed < STOP_SPEED_MS)
+                   || slow != (fixes[i + 1].speed < STOP_SPEED_MS)
+                   || fixes[i].time - fixes[i - 1].time >= STOP_GAP_MS
+                   || fixes[i + 1].time - fixes[i].time >= STOP_GAP_MS;
+        }
+
+        // Turns: simplify each stretch between two anchors
+        int from = 0;
+        for (int i = 1; i < n; i++) {
+            if (!keep[i]) continue;
+            simplify(fixes, from, i, toleranceM, keep);
+            from = i;
+        }
+
+        int kept = 0;
+        for (int i = 0; i < n; i++) if (keep[i]) kept++;
+        return kept;
+    }
+
+    /** Keep the fix in (from, to) farthest from the line from-to if it exceeds the tolerance, recursively */
+    private static void simplify(Fix[] fixes, int from, int to, double toleranceM, boolean[] keep) {
+        if (to - from < 2) return;
+        Fix    a        = fixes[from];
+        Fix    b        = fixes[to];
+        int    farthest = -1;
+        double maxDist  = toleranceM;
+        for (int i = from + 1; i < to; i++) {
+            double d = Geo.distanceToSegment(fixes[i].lat, fixes[i].lng, a.lat, a.lng, b.lat, b.lng);
+            if (d > maxDist) {
+                maxDist  = d;
+                farthest = i;
+            }
+        }
+        if (farthest < 0) return;
+        keep[farthest] = true;
+        simplify(fixes, from, farthest, toleranceM, keep);
+        simplify(fixes, farthest, to, toleranceM, keep);
+    }
+}
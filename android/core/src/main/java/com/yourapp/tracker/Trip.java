@@ -0,0 +1,28 @@
+package com.yourapp.tracker;
+
+/**
+ * Summary of one trip, from where the device started moving to where it came to rest.
+ * Built by {@link TripAggregator}, encoded for storage and upload by {@link TripCodec}.
+ */
+public class Trip {
+    public long   startTime;  // epoch millis, last fix at rest before moving off
+    public long   endTime;    // epoch millis, arrival at the stop
+    public double startLat;   // degrees
+    public double startLng;
+    public double endLat;
+    public double endLng;
+    public double distance;   // metres travelled
+    public long   movingMs;   // time spent above walking pace
+    public float  maxSpeed;   // metres per second
+    public int    points;     // fixes the summary was built from
+
+    public long durationMs() {
+        return endTime - startTime;
+    }
+
+    /** Mean speed over the whole trip, stops at lights included, in metres per second */
+    public double averageSpeed() {
+        long ms = durationMs();
+        return ms <= 0 ? 0 : distance * 1000 / ms;
+    }
+}
@@ -0,0 +1,172 @@
+package com.yourapp.tracker;
+
+/**
+ * Splits the stream of fixes into trips and summarizes each one as it goes, in constant memory:
+ * only the resting position, the current trip's running totals and a candidate stop are kept.
+ *
+ * <ul>
+ *   <li>A trip starts once a fix lies {@link #START_RADIUS_M} from where the device was resting.
+ *       It starts at the last fix seen within {@link #STOP_RADIUS_M} of that place.</li>
+ *   <li>It ends at a stop: {@link #STOP_DWELL_MS} of fixes within {@link #STOP_RADIUS_M} of the
+ *       first of them, which becomes the trip's end and the new resting position. A gap of
+ *       {@link #MAX_GAP_MS} without fixes also ends it, at the last fix before the gap.</li>
+ *   <li>Distance is an odometer that only advances in steps of {@link #ODOMETER_STEP_M}, so
+ *       GPS jitter while creeping or standing does not add up.</li>
+ *   <li>Trips shorter than {@link #MIN_TRIP_DISTANCE_M} are dropped as drift.</li>
+ * </ul>
+ *
+ * Feed it every fix, before filtering: thinned tracks would shorten the moving time. Not thread
+ * safe; the listener is called on the caller's thread with a trip object that is reused
+ * afterwards.
+ */
+public final class TripAggregator {
+
+    public static final double START_RADIUS_M      = 100;
+    public static final double STOP_RADIUS_M       = 50;
+    public static final long   STOP_DWELL_MS       = 180_000;
+    public static final long   MAX_GAP_MS          = 600_000;
+    public static final double MIN_TRIP_DISTANCE_M = 200;
+    public static final double ODOMETER_STEP_M     = 10;
+
+    private static final float MOVING_MS        = 0.8f; // slower than this counts as standing, as in SamplingPolicy
+    private static final float MAX_ACCURACY_M   = 50;   // less accurate fixes are skipped
+    private static final float MAX_PLAUSIBLE_MS = 90;   // faster segments are position jumps, not speed
+
+    /** Receives each finished trip */
+    public interface Listener {
+        /** @param trip  only valid during the call */
+        void onTrip(Trip trip);
+    }
+
+    private final Listener listener;
+    private final Trip     trip = new Trip();
+
+    // Last accepted fix
+    private boolean hasLast;
+    private long    lastTime;
+    private double  lastLat;
+    private double  lastLng;
+
+    // At rest: where, and when and where the device was last seen there
+    private double  restLat;
+    private double  restLng;
+    private long    seenTime;
+    private double  seenLat;
+    private double  seenLng;
+
+    // In a trip: odometer position and candidate stop
+    private boolean inTrip;
+    private double  odoLat;
+    private double  odoLng;
+    private double  stopLat;
+    private double  stopLng;
+    private long    stopSince;
+
+    public TripAggregator(Listener listener) {
+        this.listener = listener;
+    }
+
+    /** Whether a trip is under way */
+    public boolean inTrip() {
+        return inTrip;
+    }
+
+    public void offer(Fix fix) {
+        if (fix.accuracy > MAX_ACCURACY_M) return;
+        if (hasLast && fix.time <= lastTime) return; // out of order or repeated
+
+        if (inTrip && fix.time - lastTime >= MAX_GAP_MS) {
+            finish(lastTime, lastLat, lastLng);
+            rest(lastTime, lastLat, lastLng);
+        }
+        if (!hasLast || (!inTrip && fix.time - lastTime >= MAX_GAP_MS)) {
+            rest(fix.time, fix.lat, fix.lng); // no idea how long it has been here; start over from this fix
+        } else if (!inTrip) {
+            double fromRest = Geo.distance(restLat, restLng, fix.lat, fix.lng);
+            if (fromRest >= START_RADIUS_M) {
+                start();
+            } else if (fromRest <= STOP_RADIUS_M) {
+                seenTime = fix.time;
+                seenLat  = fix.lat;
+                seenLng  = fix.lng;
+            }
+        }
+
+        if (inTrip) advance(fix);
+        hasLast  = true;
+        lastTime = fix.time;
+        lastLat  = fix.lat;
+        lastLng  = fix.lng;
+    }
+
+    /** End the trip under way at the last fix, e.g. when tracking stops; it is reported if long enough */
+    public void flush() {
+        if (!inTrip) return;
+        finish(lastTime, lastLat, lastLng);
+        rest(lastTime, lastLat, lastLng);
+    }
+
+    private void rest(long time, double lat, double lng) {
+        inTrip   = false;
+        restLat  = lat;
+        restLng  = lng;
+        seenTime = time;
+        seenLat  = lat;
+        seenLng  = lng;
+    }
+
+    /**
+     * Move off from the resting position, as of the last fix seen there. The fixes since then
+     * left the resting place behind, so their time counts as moving.
+     */
+    private void start() {
+        inTrip         = true;
+        trip.startTime = seenTime;
+        trip.startLat  = seenLat;
+        trip.startLng  = seenLng;
+        trip.distance  = 0;
+        trip.movingMs  = lastTime - seenTime;
+        trip.maxSpeed  = 0;
+        trip.points    = 1;
+        odoLat         = seenLat;
+        odoLng         = seenLng;
+        stopLat        = lastLat;
+        stopLng        = lastLng;
+        stopSince      = lastTime;
+    }
+
+    private void advance(Fix fix) {
+        long   dt      = fix.time - lastTime;
+        double segment = Geo.distance(lastLat, lastLng, fix.lat, fix.lng);
+        // Without a reported speed, only a step beyond the fix's accuracy is taken as movement
+        float  speed   = fix.speed > 0 ? fix.speed
+                       : segment > Math.max(ODOMETER_STEP_M, fix.accuracy) ? (float) (segment * 1000 / dt) : 0;
+        if (speed >= MOVING_MS) trip.movingMs += dt;
+        if (speed <= MAX_PLAUSIBLE_MS && speed > trip.maxSpeed) trip.maxSpeed = speed;
+        trip.points++;
+
+        double step = Geo.distance(odoLat, odoLng, fix.lat, fix.lng);
+        if (step >= ODOMETER_STEP_M) {
+            trip.distance += step;
+            odoLat = fix.lat;
+            odoLng = fix.lng;
+        }
+
+        if (Geo.distance(stopLat, stopLng, fix.lat, fix.lng) > STOP_RADIUS_M) {
+            stopLat   = fix.lat; // moved on: this fix is the next candidate stop
+            stopLng   = fix.lng;
+            stopSince = fix.time;
+        } else if (fix.time - stopSince >= STOP_DWELL_MS) {
+            finish(stopSince, stopLat, stopLng);
+            rest(stopSince, stopLat, stopLng);
+        }
+    }
+
+    private void finish(long endTime, double endLat, double endLng) {
+        trip.endTime  = endTime;
+        trip.endLat   = endLat;
+        trip.endLng   = endLng;
+        trip.movingMs = Math.min(trip.movingMs, trip.durationMs()); // fixes while coming to a stop
+        if (trip.distance >= MIN_TRIP_DISTANCE_M && endTime > trip.startTime) listener.onTrip(trip);
+    }
+}
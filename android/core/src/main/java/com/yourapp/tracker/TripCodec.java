@@ -0,0 +1,73 @@
+package com.yourapp.tracker;
+
+/**
+ * Binary encoding of a {@link Trip}, queued and uploaded like fixes. It shares the header byte
+ * of {@link FixCodec} with its own record type, so the queue and {@link WireFormat} carry both.
+ *
+ * Layout (about 35 bytes):
+ * <pre>
+ *   u8      header      version (high nibble) and record type 2 (low nibble)
+ *   varint  start       zigzag millis relative to 2020-01-01T00:00:00Z
+ *   varint  duration    millis
+ *   i32     start lat, start lng, end lat, end lng   fixed point, 1e-7 degrees
+ *   varint  distance    decimetres
+ *   varint  moving      millis
+ *   varint  max speed   cm/s
+ *   varint  points
+ * </pre>
+ */
+public final class TripCodec {
+
+    public static final int TYPE_TRIP = 2;
+
+    static final int TRIP_HEADER = FixCodec.VERSION << 4 | TYPE_TRIP;
+
+    /** Upper bound of an encoded trip */
+    public static final int MAX_SIZE = 64;
+
+    private TripCodec() {}
+
+    public static byte[] encode(Trip trip) {
+        byte[] buf = new byte[MAX_SIZE];
+        int    pos = 0;
+        buf[pos++] = (byte) TRIP_HEADER;
+        pos = FixCodec.putVarint(buf, pos, FixCodec.zigzag(trip.startTime - FixCodec.EPOCH_BASE_MS));
+        pos = FixCodec.putVarint(buf, pos, Math.max(0, trip.durationMs()));
+        pos = FixCodec.putInt(buf, pos, FixCodec.coord(trip.startLat));
+        pos = FixCodec.putInt(buf, pos, FixCodec.coord(trip.startLng));
+        pos = FixCodec.putInt(buf, pos, FixCodec.coord(trip.endLat));
+        pos = FixCodec.putInt(buf, pos, FixCodec.coord(trip.endLng));
+        pos = FixCodec.putVarint(buf, pos, Math.max(0, Math.round(trip.distance * 10)));
+        pos = FixCodec.putVarint(buf, pos, Math.max(0, trip.movingMs));
+        pos = FixCodec.putVarint(buf, pos, Math.max(0, Math.round(trip.maxSpeed * 100)));
+        pos = FixCodec.putVarint(buf, pos, Math.max(0, trip.points));
+        byte[] out = new byte[pos];
+        System.arraycopy(buf, 0, out, 0, pos);
+        return out;
+    }
+
+    public static Trip decode(byte[] data) {
+        ByteReader in     = new ByteReader(data);
+        int        header = in.readByte();
+        if (header != TRIP_HEADER)
+            throw new IllegalArgumentException("Not a v" + FixCodec.VERSION + " trip record: header " + header);
+
+        Trip trip = new Trip();
+        trip.startTime = in.readSignedVarint() + FixCodec.EPOCH_BASE_MS;
+        trip.endTime   = trip.startTime + in.readVarint();
+        trip.startLat  = in.readInt() / FixCodec.COORD_SCALE;
+        trip.startLng  = in.readInt() / FixCodec.COORD_SCALE;
+        trip.endLat    = in.readInt() / FixCodec.COORD_SCALE;
+        trip.endLng    = in.readInt() / FixCodec.COORD_SCALE;
+        trip.distance  = in.readVarint() / 10.0;
+        trip.movingMs  = in.readVarint();
+        trip.maxSpeed  = in.readVarint() / 100f;
+        trip.points    = (int) in.readVarint();
+        return trip;
+    }
+
+    /** Whether {@code data} is a trip in this codec's version */
+    public static boolean isTrip(byte[] data) {
+        return data.length > 0 && (data[0] & 0xFF) == TRIP_HEADER;
+    }
+}
@@ -0,0 +1,29 @@
+package com.yourapp.tracker;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/** The JSON form of a {@link Trip}, as stored by the server under {@code trip:<deviceId>:<start>} */
+final class TripJson {
+
+    private TripJson() {}
+
+    static JSONObject toJson(Trip trip, String deviceId) throws JSONException {
+        JSONObject data = new JSONObject();
+        data.put("type",         "trip");
+        data.put("device_id",    deviceId);
+        data.put("start_time",   trip.startTime);
+        data.put("end_time",     trip.endTime);
+        data.put("start_lat",    trip.startLat);
+        data.put("start_lng",    trip.startLng);
+        data.put("end_lat",      trip.endLat);
+        data.put("end_lng",      trip.endLng);
+        data.put("distance_m",   Math.round(trip.distance * 10) / 10.0);
+        data.put("duration_s",   trip.durationMs() / 1000);
+        data.put("moving_s",     trip.movingMs / 1000);
+        data.put("max_speed_ms", Math.round(trip.maxSpeed * 100) / 100.0);
+        data.put("avg_speed_ms", Math.round(trip.averageSpeed() * 100) / 100.0);
+        data.put("points",       trip.points);
+        return data;
+    }
+}
@@ -0,0 +1,119 @@
+package com.yourapp.tracker;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Binary body of a batch upload to POST /data, sent as {@link #CONTENT_TYPE}.
+ *
+ * A batch is a track segment: consecutive fixes are delta-coded against the previous fix,
+ * so a fix moving at walking or driving speed costs a few bytes before compression and
+ * compresses well with gzip.
+ * <pre>
+ *   u8      wire version (2)
+ *   string  device id
+ *   string  key prefix shared by every record
+ *   varint  record count
+ *   then per record:
+ *   string  key suffix
+ *   u8      record header, as in {@link FixCodec}; 0 for a record sent verbatim
+ *   fix:    svarint time, lat, lng and altitude deltas (quantized as in FixCodec),
+ *           varint accuracy, speed and bearing
+ *   other:  varint payload length, followed by the payload as stored in the queue
+ *           (e.g. a {@link TripCodec} trip summary)
+ * </pre>
+ * Strings are a varint byte length followed by UTF-8; svarints are zigzag-coded. The first
+ * fix of a batch is coded against time = 2020-01-01 and lat = lng = altitude = 0. The server
+ * still accepts version 1 bodies, where every record is sent verbatim without a header byte.
+ */
+public final class WireFormat {
+
+    public static final String CONTENT_TYPE = "application/vnd.cloudtracker.fixes";
+    public static final int    VERSION      = 2;
+
+    private static final int RAW_RECORD = 0;
+
+    private WireFormat() {}
+
+    public static byte[] encodeBatch(String deviceId, List<RecordQueue.Record> records) {
+        String prefix = commonKeyPrefix(records);
+        Writer out    = new Writer(64 + records.size() * 48);
+        out.writeByte(VERSION);
+        out.writeString(deviceId);
+        out.writeString(prefix);
+        out.writeVarint(records.size());
+
+        Fix  fix      = new Fix();
+        long prevTime = FixCodec.EPOCH_BASE_MS;
+        long prevLat  = 0;
+        long prevLng  = 0;
+        long prevAlt  = 0;
+        for (RecordQueue.Record r : records) {
+            out.writeString(r.key.substring(prefix.length()));
+            if (!FixCodec.isFix(r.payload)) {
+                out.writeByte(RAW_RECORD);
+                out.writeVarint(r.payload.length);
+                out.write(r.payload, 0, r.payload.length);
+                continue;
+            }
+
+            FixCodec.decode(r.payload, fix);
+            long lat = FixCodec.coord(fix.lat);
+            long lng = FixCodec.coord(fix.lng);
+            long alt = FixCodec.altitude(fix);
+            out.writeByte(FixCodec.FIX_HEADER);
+            out.writeSignedVarint(fix.time - prevTime);
+            out.writeSignedVarint(lat - prevLat);
+            out.writeSignedVarint(lng - prevLng);
+            out.writeSignedVarint(alt - prevAlt);
+            out.writeVarint(FixCodec.accuracy(fix));
+            out.writeVarint(FixCodec.speed(fix));
+            out.writeVarint(FixCodec.bearing(fix));
+            prevTime = fix.time;
+            prevLat  = lat;
+            prevLng  = lng;
+            prevAlt  = alt;
+        }
+        return out.toByteArray();
+    }
+
+    private static String commonKeyPrefix(List<RecordQueue.Record> records) {
+        if (records.isEmpty()) return "";
+        String prefix = records.get(0).key;
+        for (RecordQueue.Record r : records) {
+            int n = 0;
+            int max = Math.min(prefix.length(), r.key.length());
+            while (n < max && prefix.charAt(n) == r.key.charAt(n)) n++;
+            prefix = prefix.substring(0, n);
+        }
+        return prefix;
+    }
+
+    /** Growable buffer with the varint and string encodings used above */
+    static final class Writer extends ByteArrayOutputStream {
+        private final byte[] scratch = new byte[10];
+
+        Writer(int size) {
+            super(size);
+        }
+
+        void writeByte(int b) {
+            write(b);
+        }
+
+        void writeVarint(long v) {
+            write(scratch, 0, FixCodec.putVarint(scratch, 0, v));
+        }
+
+        void writeSignedVarint(long v) {
+            writeVarint(FixCodec.zigzag(v));
+        }
+
+        void writeString(String s) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+    }
+}
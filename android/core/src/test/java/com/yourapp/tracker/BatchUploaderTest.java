@@ -0,0 +1,332 @@
+package com.yourapp.tracker;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BatchUploaderTest {
+
+    private static final String          DEVICE = "device-7";
+    private static final SyncPolicy.Plan ALL    =
+        new SyncPolicy.Plan(true, true, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+    /** Answers one POST /data, given the keys of the records in the batch */
+    interface Server {
+        HttpTransport.Response handle(List<String> keys) throws Exception;
+    }
+
+    private File            dir;
+    private SegmentLogQueue queue;
+    private ExecutorService uploaders;
+    private final List<List<String>> requests = new ArrayList<>(); // keys of every request, guarded by itself
+
+    @Before
+    public void setUp() throws IOException {
+        dir       = Files.createTempDirectory("batch-uploader").toFile();
+        queue     = SegmentLogQueue.open(dir, SegmentLogQueue.FsyncPolicy.OS);
+        uploaders = Executors.newFixedThreadPool(BatchUploader.MAX_IN_FLIGHT_WINDOW);
+    }
+
+    @After
+    public void tearDown() {
+        uploaders.shutdownNow();
+        queue.close();
+        File[] files = dir.listFiles();
+        if (files != null) for (File f : files) f.delete();
+        dir.delete();
+    }
+
+    // --- Rejected records ---
+
+    @Test
+    public void recordsRejectedOneByOneAreDropped() {
+        enqueue(10, 3, 7);
+        BatchUploader.Result result = upload(keys -> results(keys, false));
+
+        assertEquals(8, result.synced);
+        assertEquals(2, result.rejected);
+        assertFalse(result.failed);
+        assertEquals(0, queue.pendingCount());
+    }
+
+    @Test
+    public void batchRejectedAsAWholeIsSplitDownToTheBadRecord() {
+        enqueue(16, 11);
+        BatchUploader.Result result = upload(keys -> {
+            for (String k : keys)
+                if (k.endsWith("bad")) return response(400, new JSONObject().put("error", "Invalid batch: fix"));
+            return results(keys, false);
+        });
+
+        assertEquals(15, result.synced);
+        assertEquals(1, result.rejected);
+        assertFalse(result.failed);
+        assertEquals(0, queue.pendingCount());
+    }
+
+    @Test
+    public void notFoundLeavesTheQueueUnchanged() {
+        enqueue(20);
+        // Express answers a missing route with an HTML page, so there is no JSON body
+        assertUnchanged(upload(keys -> response(404, null)), 404);
+        assertUnchanged(upload(keys -> response(405, new JSONObject().put("error", "Method not allowed"))), 405);
+    }
+
+    @Test
+    public void captivePortalLeavesTheQueueUnchanged() {
+        enqueue(20);
+        assertUnchanged(upload(keys -> response(400, null)), 400);      // an HTML login page
+        assertUnchanged(upload(keys -> response(403, new JSONObject().put("error", "Forbidden"))), 403);
+        assertUnchanged(upload(keys -> response(413, null)), 413);      // a proxy's body limit
+    }
+
+    @Test
+    public void oneRunDropsAtMostTheRejectionLimit() {
+        int n = BatchUploader.MAX_REJECTED_PER_RUN + 50;
+        enqueue(n);
+        BatchUploader.Result result = upload(keys -> results(keys, true));
+
+        // Batches in flight at once share the allowance, and a later one may spend part of it on
+        // records that are not acknowledged because an earlier batch ran out: at most the limit goes
+        assertEquals(0, result.synced);
+        assertTrue(result.rejected + " dropped", result.rejected > 0 && result.rejected <= BatchUploader.MAX_REJECTED_PER_RUN);
+        assertTrue(result.failed);
+        assertEquals(n - result.rejected, queue.pendingCount());
+    }
+
+    private void assertUnchanged(BatchUploader.Result result, int status) {
+        assertEquals(0, result.synced);
+        assertEquals(0, result.rejected);
+        assertTrue(result.failed);
+        assertEquals(status, result.lastStatus);
+        assertEquals(20, queue.pendingCount());
+        assertEquals(0, queue.stats().inFlight);
+    }
+
+    // --- Pipelined window and in-order acknowledgement ---
+
+    @Test
+    public void windowBoundsTheRequestsInFlight() {
+        enqueue(40);
+        AtomicInteger  inFlight = new AtomicInteger();
+        AtomicInteger  peak     = new AtomicInteger();
+        CountDownLatch full     = new CountDownLatch(3);
+        BatchUploader  uploader = uploader(keys -> {
+            peak.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            full.countDown();
+            full.await(5, TimeUnit.SECONDS); // hold the first requests until the window is full
+            Thread.sleep(2);
+            inFlight.decrementAndGet();
+            return results(keys, false);
+        });
+        uploader.setInFlightWindow(3);
+        BatchUploader.Result result = uploader.upload("token", ALL, null);
+
+        assertEquals(40, result.synced);
+        assertEquals(3, peak.get());
+        assertEquals(10, requests().size());
+    }
+
+    @Test
+    public void planCanNarrowTheWindow() {
+        enqueue(20);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger peak     = new AtomicInteger();
+        BatchUploader uploader = uploader(keys -> {
+            peak.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            Thread.sleep(5);
+            inFlight.decrementAndGet();
+            return results(keys, false);
+        });
+        uploader.setInFlightWindow(8);
+        uploader.upload("token", new SyncPolicy.Plan(true, true, 100, 32 * 1024, 1), null);
+        assertEquals(1, peak.get());
+    }
+
+    @Test
+    public void laterBatchesFinishingFirstAreNotAckedPastAFailedOne() {
+        enqueue(16); // batches of 4: keys 1-4, 5-8, 9-12, 13-16
+        CountDownLatch laterDone = new CountDownLatch(2);
+        BatchUploader  uploader  = uploader(keys -> {
+            switch (keys.get(0)) {
+                case "fix:device-7:5":
+                    laterDone.await(5, TimeUnit.SECONDS); // fails only after 9-12 and 13-16 were stored
+                    return response(503, null);
+                case "fix:device-7:9":
+                case "fix:device-7:13":
+                    laterDone.countDown();
+                    return results(keys, false);
+                default:
+                    return results(keys, false);
+            }
+        });
+        uploader.setInFlightWindow(4);
+        BatchUploader.Result result = uploader.upload("token", ALL, null);
+
+        assertEquals(4, result.synced);
+        assertTrue(result.failed);
+        assertEquals(503, result.lastStatus);
+        assertEquals(12, queue.pendingCount());
+        assertEquals(0, queue.stats().inFlight);
+        assertEquals("fix:device-7:5", queue.claim(1).get(0).key); // stored batches are sent again
+    }
+
+    @Test
+    public void batchesBeforeAFailureAreAcked() {
+        enqueue(16);
+        BatchUploader uploader = uploader(keys ->
+            keys.get(0).equals("fix:device-7:9") ? response(-1, null) : results(keys, false));
+        uploader.setInFlightWindow(2);
+        List<Integer> progress = new ArrayList<>();
+        BatchUploader.Result result = uploader.upload("token", ALL, () -> progress.add(queue.pendingCount()));
+
+        assertEquals(8, result.synced);
+        assertTrue(result.failed);
+        assertEquals(-1, result.lastStatus);
+        assertEquals(java.util.Arrays.asList(12, 8), progress);
+        assertEquals(8, queue.pendingCount());
+        // Nothing is submitted after the failure: only requests already in flight went out
+        assertTrue(requests().size() <= 4);
+    }
+
+    @Test
+    public void onlyTheStoredPrefixOfABatchIsAcked() {
+        enqueue(8);
+        BatchUploader uploader = uploader(keys -> {
+            JSONArray results = new JSONArray();
+            for (String k : keys) {
+                boolean stored = !k.equals("fix:device-7:3"); // a transient failure: no error given
+                results.put(new JSONObject().put("key", k).put("success", stored));
+            }
+            return response(200, new JSONObject().put("results", results));
+        });
+        uploader.setInFlightWindow(2);
+        BatchUploader.Result result = uploader.upload("token", ALL, null);
+
+        assertEquals(2, result.synced);
+        assertEquals(0, result.rejected);
+        assertTrue(result.failed);
+        assertEquals(6, queue.pendingCount());
+        assertEquals("fix:device-7:3", queue.claim(1).get(0).key);
+    }
+
+    @Test
+    public void unauthorizedIsReported() {
+        enqueue(4);
+        BatchUploader.Result result = upload(keys -> response(401, new JSONObject().put("error", "Invalid or expired token")));
+        assertTrue(result.unauthorized);
+        assertTrue(result.failed);
+        assertEquals(4, queue.pendingCount());
+    }
+
+    @Test
+    public void claimedButUnconfirmedRecordsAreSentAgain() {
+        enqueue(8);
+        queue.claim(8); // a previous run that died before acknowledging
+        BatchUploader.Result result = upload(keys -> results(keys, false));
+        assertEquals(8, result.synced);
+        assertEquals(0, queue.pendingCount());
+    }
+
+    // --- Helpers ---
+
+    /** Queue {@code n} fixes with keys ...:1 to ...:n; the listed ones get keys ending in "bad" */
+    void enqueue(int n, int... bad) {
+        Fix fix = FixCodecTest.fix(0, 48.2, 16.4);
+        for (int seq = 1; seq <= n; seq++) {
+            fix.time = 1_714_000_000_000L + seq * 1000L;
+            fix.lat += 1e-4;
+            boolean isBad = false;
+            for (int b : bad) isBad |= b == seq;
+            queue.enqueue("fix:" + DEVICE + ":" + seq + (isBad ? "bad" : ""), FixCodec.encode(fix));
+        }
+    }
+
+    BatchUploader.Result upload(Server server) {
+        return uploader(server).upload("token", ALL, null);
+    }
+
+    BatchUploader uploader(Server server) {
+        HttpTransport transport = (endpoint, body, contentType, gzip, token, timeoutMs) -> {
+            assertEquals("/data", endpoint);
+            List<String> keys = keys(body);
+            synchronized (requests) {
+                requests.add(keys);
+            }
+            try {
+                return server.handle(keys);
+            } catch (Exception e) {
+                throw new AssertionError(e);
+            }
+        };
+        BatchUploader uploader = new BatchUploader(queue, transport, uploaders, new ByteBudget(0), DEVICE);
+        uploader.setBatchLimits(4, Integer.MAX_VALUE);
+        uploader.setGzipUploads(false);
+        return uploader;
+    }
+
+    List<List<String>> requests() {
+        synchronized (requests) {
+            return new ArrayList<>(requests);
+        }
+    }
+
+    /** 200 with one result per record; records whose key ends in "bad", or all if {@code rejectAll}, fail */
+    static HttpTransport.Response results(List<String> keys, boolean rejectAll) throws Exception {
+        JSONArray results = new JSONArray();
+        for (String k : keys) {
+            results.put(rejectAll || k.endsWith("bad")
+                ? new JSONObject().put("key", k).put("success", false).put("error", "timestamp required")
+                : new JSONObject().put("key", k).put("success", true));
+        }
+        return response(200, new JSONObject().put("results", results));
+    }
+
+    static HttpTransport.Response response(int status, JSONObject body) {
+        return new HttpTransport.Response(status, body);
+    }
+
+    /** Keys of the records in a binary batch body */
+    static List<String> keys(byte[] body) {
+        ByteReader in = new ByteReader(body);
+        assertEquals(WireFormat.VERSION, in.readByte());
+        readString(in);
+        String       prefix = readString(in);
+        int          count  = (int) in.readVarint();
+        List<String> keys   = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            keys.add(prefix + readString(in));
+            int header = in.readByte();
+            if (header == 0) {
+                for (long n = in.readVarint(); n > 0; n--) in.readByte();
+            } else {
+                for (int f = 0; f < 7; f++) in.readVarint(); // 4 deltas, accuracy, speed, bearing
+            }
+        }
+        return keys;
+    }
+
+    private static String readString(ByteReader in) {
+        byte[] bytes = new byte[(int) in.readVarint()];
+        for (int i = 0; i < bytes.length; i++) bytes[i] = (byte) in.readByte();
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
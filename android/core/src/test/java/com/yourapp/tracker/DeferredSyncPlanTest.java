@@ -0,0 +1,73 @@
+package com.yourapp.tracker;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DeferredSyncPlanTest {
+
+    private static final long SLA_MS = 30 * 60_000L;
+
+    @Test
+    public void opportunisticJobRunsAtOnceWhileChargingOnUnmetered() {
+        for (long waiting : new long[]{0, SLA_MS / 2, 2 * SLA_MS}) {
+            DeferredSyncPlan.Job job = DeferredSyncPlan.plan(waiting, SLA_MS).get(0);
+            assertEquals(DeferredSyncPlan.OPPORTUNISTIC, job.name);
+            assertEquals(0, job.delayMs);
+            assertTrue(job.unmetered);
+            assertTrue(job.charging);
+            assertFalse(job.batteryNotLow);
+        }
+    }
+
+    @Test
+    public void deadlineJobIsDueWhenTheOldestRecordReachesTheSla() {
+        DeferredSyncPlan.Job fresh = DeferredSyncPlan.plan(0, SLA_MS).get(1);
+        assertEquals(DeferredSyncPlan.DEADLINE, fresh.name);
+        assertEquals(SLA_MS, fresh.delayMs);
+        assertFalse(fresh.unmetered);
+        assertFalse(fresh.charging);
+        assertTrue(fresh.batteryNotLow);
+
+        DeferredSyncPlan.Job later = DeferredSyncPlan.plan(10 * 60_000L, SLA_MS).get(1);
+        assertEquals(SLA_MS - 10 * 60_000L, later.delayMs);
+        assertTrue(later.batteryNotLow);
+    }
+
+    @Test
+    public void deadlineJobOneMillisecondBeforeTheSlaStillSparesALowBattery() {
+        DeferredSyncPlan.Job job = DeferredSyncPlan.plan(SLA_MS - 1, SLA_MS).get(1);
+        assertEquals(1, job.delayMs);
+        assertTrue(job.batteryNotLow);
+    }
+
+    @Test
+    public void overdueDeadlineJobRunsAtOnceEvenOnLowBattery() {
+        for (long waiting : new long[]{SLA_MS, SLA_MS + 1, 10 * SLA_MS}) {
+            DeferredSyncPlan.Job job = DeferredSyncPlan.plan(waiting, SLA_MS).get(1);
+            assertEquals(0, job.delayMs);
+            assertFalse(job.charging);
+            assertFalse(job.unmetered);
+            assertFalse(job.batteryNotLow);
+        }
+    }
+
+    @Test
+    public void zeroSlaIsAlwaysOverdue() {
+        DeferredSyncPlan.Job job = DeferredSyncPlan.plan(0, 0).get(1);
+        assertEquals(0, job.delayMs);
+        assertFalse(job.batteryNotLow);
+    }
+
+    @Test
+    public void planHasOneJobOfEachName() {
+        List<DeferredSyncPlan.Job> jobs = DeferredSyncPlan.plan(0, SLA_MS);
+        assertEquals(2, jobs.size());
+        assertEquals(DeferredSyncPlan.OPPORTUNISTIC, jobs.get(0).name);
+        assertEquals(DeferredSyncPlan.DEADLINE, jobs.get(1).name);
+    }
+}
@@ -0,0 +1,132 @@
+package com.yourapp.tracker;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FixCodecTest {
+
+    @Test
+    public void roundTripKeepsEveryFieldToItsResolution() {
+        Fix fix = fix(1_714_000_123_456L, 48.2081743, 16.3738189);
+        Fix out = FixCodec.decode(FixCodec.encode(fix));
+        assertSameFix(fix, out);
+    }
+
+    @Test
+    public void roundTripAtTheExtremes() {
+        Fix fix = fix(FixCodec.EPOCH_BASE_MS - 86_400_000L, -89.9999999, -179.9999999);
+        fix.altitude = -430.5;
+        fix.bearing  = 359.94f;
+        assertSameFix(fix, FixCodec.decode(FixCodec.encode(fix)));
+
+        fix = fix(4_102_444_800_000L, 90, 180); // 2100
+        fix.speed = 340;
+        assertSameFix(fix, FixCodec.decode(FixCodec.encode(fix)));
+    }
+
+    @Test
+    public void randomFixesRoundTripWithinResolution() {
+        Random random = new Random(6);
+        Fix    into   = new Fix();
+        for (int i = 0; i < 10_000; i++) {
+            Fix fix = random(random);
+            assertSameFix(fix, FixCodec.decode(FixCodec.encode(fix)));
+            FixCodec.decode(FixCodec.encode(fix), into); // reused: every field is overwritten
+            assertSameFix(fix, into);
+        }
+    }
+
+    @Test
+    public void encodedFixIsAFifthOfItsJsonOrLess() {
+        Random random = new Random(6);
+        long   binary = 0, json = 0;
+        for (int i = 0; i < 1_000; i++) {
+            Fix fix = random(random);
+            binary += FixCodec.encode(fix).length;
+            json   += FixJson.toJson(fix, "device-7").toString().getBytes(StandardCharsets.UTF_8).length;
+        }
+        assertTrue(binary + " bytes versus " + json + " as JSON", binary * 5 <= json);
+    }
+
+    @Test
+    public void bearingWrapsIntoRange() {
+        Fix fix = fix(FixCodec.EPOCH_BASE_MS, 0, 0);
+        fix.bearing = 359.99f; // rounds to 3600 tenths
+        assertEquals(0, FixCodec.decode(FixCodec.encode(fix)).bearing, 0);
+        fix.bearing = -90;
+        assertEquals(270, FixCodec.decode(FixCodec.encode(fix)).bearing, 0);
+    }
+
+    @Test
+    public void encodeIntoBufferMatchesEncode() {
+        Fix    fix = fix(1_714_000_123_456L, 1, 2);
+        byte[] buf = new byte[FixCodec.MAX_SIZE + 3];
+        int    len = FixCodec.encode(fix, buf, 3);
+        byte[] one = FixCodec.encode(fix);
+        assertEquals(one.length, len);
+        for (int i = 0; i < len; i++) assertEquals(one[i], buf[3 + i]);
+        assertTrue(len <= FixCodec.MAX_SIZE);
+    }
+
+    @Test
+    public void recordTypesAreDistinguished() {
+        byte[] fix  = FixCodec.encode(fix(1_714_000_000_000L, 1, 2));
+        byte[] trip = TripCodec.encode(new Trip());
+        assertTrue(FixCodec.isFix(fix));
+        assertFalse(FixCodec.isFix(trip));
+        assertFalse(FixCodec.isFix(new byte[0]));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void truncatedRecordIsRejected() {
+        byte[] data = FixCodec.encode(fix(1_714_000_000_000L, 1, 2));
+        FixCodec.decode(java.util.Arrays.copyOf(data, data.length - 3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void foreignHeaderIsRejected() {
+        FixCodec.decode(TripCodec.encode(new Trip()));
+    }
+
+    static Fix fix(long time, double lat, double lng) {
+        Fix f = new Fix();
+        f.time     = time;
+        f.lat      = lat;
+        f.lng      = lng;
+        f.accuracy = 4.7f;
+        f.altitude = 171.3;
+        f.speed    = 13.89f;
+        f.bearing  = 87.5f;
+        return f;
+    }
+
+    /** Any fix the codec is meant to carry; bearings stop short of 360, which wraps to 0 */
+    static Fix random(Random random) {
+        Fix f = new Fix();
+        f.time     = FixCodec.EPOCH_BASE_MS + (long) (random.nextDouble() * 10 * 365 * 86_400_000L);
+        f.lat      = random.nextDouble() * 180 - 90;
+        f.lng      = random.nextDouble() * 360 - 180;
+        f.accuracy = random.nextFloat() * 500;
+        f.altitude = random.nextDouble() * 9_500 - 500;
+        f.speed    = random.nextFloat() * 100;
+        f.bearing  = random.nextFloat() * 359.9f;
+        return f;
+    }
+
+    /** Equal within the codec's quantization: 1e-7 degrees, decimetres, cm/s, tenths of a degree */
+    static void assertSameFix(Fix expected, Fix actual) {
+        assertEquals(expected.time, actual.time);
+        assertEquals(expected.lat, actual.lat, 0.6e-7);
+        assertEquals(expected.lng, actual.lng, 0.6e-7);
+        assertEquals(expected.accuracy, actual.accuracy, 0.051);
+        assertEquals(expected.altitude, actual.altitude, 0.051);
+        assertEquals(expected.speed, actual.speed, 0.0051);
+        assertEquals(expected.bearing, actual.bearing, 0.051);
+    }
+}
@@ -0,0 +1,45 @@
+package com.yourapp.tracker;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FixJsonTest {
+
+    @Test
+    public void floatFieldsAreWrittenAtTheCodecsResolution() {
+        Fix fix = FixCodecTest.fix(1_714_000_123_456L, 48.2081743, 16.3738189); // 4.7 m, 13.89 m/s, 87.5 degrees
+        String json = FixJson.toJson(fix, "device-7").toString();
+        assertTrue(json, json.contains("\"accuracy_m\":4.7"));
+        assertTrue(json, json.contains("\"speed_ms\":13.89"));
+        assertTrue(json, json.contains("\"bearing\":87.5"));
+        assertFalse(json, json.contains("0000"));
+    }
+
+    @Test
+    public void decodedFixWritesTheSameValuesAsTheServersCodec() {
+        Random random = new Random(6);
+        for (int i = 0; i < 1_000; i++) {
+            Fix        fix  = FixCodec.decode(FixCodec.encode(FixCodecTest.random(random)));
+            JSONObject data = FixJson.toJson(fix, "device-7");
+            // codec.js divides the stored integers: decimetres, cm/s and tenths of a degree
+            assertEquals(Math.round(fix.accuracy * 10) / 10.0, data.getDouble("accuracy_m"), 0);
+            assertEquals(Math.round(fix.speed * 100) / 100.0, data.getDouble("speed_ms"), 0);
+            assertEquals(Math.round(fix.bearing * 10) / 10.0, data.getDouble("bearing"), 0);
+        }
+    }
+
+    @Test
+    public void roundTripKeepsEveryField() {
+        Fix fix = FixCodecTest.fix(1_714_000_123_456L, -33.8567844, 151.2152967);
+        Fix out = FixJson.fromJson(new JSONObject(FixJson.toJson(fix, "device-7").toString()));
+        FixCodecTest.assertSameFix(fix, out);
+        assertEquals(fix.lat, out.lat, 0);
+        assertEquals(fix.lng, out.lng, 0);
+    }
+}
@@ -0,0 +1,337 @@
+package com.yourapp.tracker;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/** Driven by a fake clock: flushes run only when the test moves time forward */
+public class FlushSchedulerTest {
+
+    private static final long DEBOUNCE_MS  = 5_000;
+    private static final int  MIN_RECORDS  = 20;
+    private static final long MAX_DELAY_MS = 30_000;
+    private static final long BACKOFF_MIN  = 1_000;
+    private static final long BACKOFF_MAX  = 8_000;
+
+    private final FakeExecutor executor = new FakeExecutor();
+    private final List<Long>   flushes  = new ArrayList<>(); // fake time of each flush, ms
+    private FlushScheduler     scheduler;
+    private int                pending;
+    private boolean            failing;
+    private boolean            flushing;
+    private Runnable           duringFlush = () -> { };
+
+    @Before
+    public void setUp() {
+        scheduler = new FlushScheduler(executor, this::flush, () -> pending, () -> executor.now);
+        scheduler.setBatching(DEBOUNCE_MS, MIN_RECORDS, MAX_DELAY_MS);
+        scheduler.setBackoff(BACKOFF_MIN, BACKOFF_MAX);
+    }
+
+    private boolean flush() {
+        assertFalse("flushes overlap", flushing);
+        flushing = true;
+        flushes.add(executor.nowMs());
+        duringFlush.run();
+        flushing = false;
+        return !failing;
+    }
+
+    // --- Batching ---
+
+    @Test
+    public void fewRecordsWaitForTheMaximumDelay() {
+        pending = 3;
+        scheduler.request();
+        executor.advance(MAX_DELAY_MS - 1);
+        assertEquals(0, flushes.size());
+        executor.advance(1);
+        assertEquals(1, flushes.size());
+    }
+
+    @Test
+    public void fullBatchFlushesAfterTheDebounce() {
+        pending = MIN_RECORDS;
+        scheduler.request();
+        executor.advance(DEBOUNCE_MS);
+        assertEquals(list(DEBOUNCE_MS), flushes);
+    }
+
+    @Test
+    public void requestsWhileScheduledCoalesceIntoOneFlush() {
+        pending = 3;
+        scheduler.request();
+        for (int i = 0; i < 10; i++) {
+            executor.advance(1_000);
+            scheduler.request(); // does not push the flush back
+        }
+        executor.advance(MAX_DELAY_MS);
+        assertEquals(list(MAX_DELAY_MS), flushes);
+        assertEquals(1, executor.scheduledCount());
+    }
+
+    @Test
+    public void batchFillingUpBringsTheFlushForward() {
+        pending = 3;
+        scheduler.request();
+        executor.advance(2_000);
+        pending = MIN_RECORDS;
+        scheduler.request();
+        executor.advance(MAX_DELAY_MS);
+        assertEquals(list(2_000 + DEBOUNCE_MS), flushes);
+    }
+
+    // --- Single flight ---
+
+    @Test
+    public void requestsDuringAFlushScheduleExactlyOneMore() {
+        pending     = MIN_RECORDS;
+        duringFlush = () -> {
+            scheduler.request();
+            scheduler.request();
+            scheduler.requestNow(); // only marks it dirty while running
+            assertEquals(0, executor.pendingTasks());
+            duringFlush = () -> { };
+        };
+        scheduler.request();
+        executor.advance(DEBOUNCE_MS);
+        assertEquals(1, flushes.size());
+        assertEquals(1, executor.pendingTasks());
+
+        executor.advance(DEBOUNCE_MS);
+        assertEquals(list(DEBOUNCE_MS, 2 * DEBOUNCE_MS), flushes);
+        executor.advance(10 * MAX_DELAY_MS);
+        assertEquals(2, flushes.size()); // nothing left to do
+    }
+
+    // --- Pause ---
+
+    @Test
+    public void pausedRequestsAreRememberedAndResumeFlushesAtOnce() {
+        pending = MIN_RECORDS;
+        scheduler.request();
+        scheduler.pause();
+        scheduler.request();
+        executor.advance(10 * MAX_DELAY_MS);
+        assertEquals(0, flushes.size());
+
+        scheduler.resume();
+        executor.advance(0);
+        assertEquals(list(10 * MAX_DELAY_MS), flushes);
+    }
+
+    @Test
+    public void resumeWithoutPauseDoesNothing() {
+        scheduler.resume();
+        executor.advance(10 * MAX_DELAY_MS);
+        assertEquals(0, flushes.size());
+    }
+
+    // --- Backoff ---
+
+    @Test
+    public void failuresBackOffWithJitterUpToTheMaximum() {
+        failing = true;
+        pending = MIN_RECORDS;
+        scheduler.request();
+        for (int i = 0; i < 9; i++) executor.runNext();
+
+        assertEquals(9, flushes.size());
+        assertEquals(9, scheduler.failures());
+        for (int i = 1; i < flushes.size(); i++) {
+            long step = Math.min(BACKOFF_MAX, BACKOFF_MIN << (i - 1));
+            long wait = flushes.get(i) - flushes.get(i - 1);
+            assertTrue("retry " + i + " after " + wait + " ms", wait >= step / 2 && wait <= step);
+        }
+    }
+
+    @Test
+    public void backoffJitterSpreadsRetries() {
+        failing = true;
+        pending = MIN_RECORDS;
+        List<Long> waits = new ArrayList<>();
+        for (int run = 0; run < 20; run++) {
+            flushes.clear();
+            scheduler.requestNow(); // also resets the backoff
+            for (int i = 0; i < 3; i++) executor.runNext();
+            waits.add(flushes.get(2) - flushes.get(1)); // second retry: 1 to 2 s
+        }
+        assertTrue("no jitter: " + waits, waits.stream().distinct().count() > 1);
+    }
+
+    @Test
+    public void successResetsTheBackoff() {
+        failing = true;
+        pending = MIN_RECORDS;
+        scheduler.request();
+        for (int i = 0; i < 5; i++) executor.runNext();
+        assertEquals(5, scheduler.failures());
+
+        failing = false;
+        executor.runNext();
+        assertEquals(0, scheduler.failures());
+
+        failing = true;
+        flushes.clear();
+        scheduler.request();
+        executor.runNext();
+        executor.runNext();
+        long wait = flushes.get(1) - flushes.get(0);
+        assertTrue("first retry after " + wait + " ms", wait >= BACKOFF_MIN / 2 && wait <= BACKOFF_MIN);
+    }
+
+    @Test
+    public void requestDuringBackoffWaitsForIt() {
+        scheduler.setBatching(0, MIN_RECORDS, MAX_DELAY_MS);
+        failing = true;
+        pending = MIN_RECORDS;
+        scheduler.request();
+        for (int i = 0; i < 3; i++) executor.runNext(); // the next retry is 2 to 4 s away
+        long failedAt = executor.nowMs();
+        scheduler.request(); // would flush right away without the backoff
+        executor.runNext();
+        assertEquals(4, flushes.size());
+        assertTrue(flushes.get(3) - failedAt >= 2_000);
+    }
+
+    @Test
+    public void requestNowSkipsTheBackoff() {
+        failing = true;
+        pending = MIN_RECORDS;
+        scheduler.request();
+        executor.runNext();
+        failing = false;
+        scheduler.requestNow();
+        executor.advance(0);
+        assertEquals(list(DEBOUNCE_MS, DEBOUNCE_MS), flushes);
+        assertEquals(0, scheduler.failures());
+    }
+
+    private static List<Long> list(long... values) {
+        List<Long> list = new ArrayList<>();
+        for (long v : values) list.add(v);
+        return list;
+    }
+
+    /** Runs scheduled tasks on the test thread when {@link #advance} moves its clock past them */
+    static final class FakeExecutor extends AbstractExecutorService implements ScheduledExecutorService {
+
+        long now; // nanos
+        private final List<Task> tasks = new ArrayList<>();
+        private int scheduled;
+
+        long nowMs() {
+            return TimeUnit.NANOSECONDS.toMillis(now);
+        }
+
+        /** Tasks scheduled so far, including run and cancelled ones */
+        int scheduledCount() {
+            return scheduled;
+        }
+
+        int pendingTasks() {
+            int n = 0;
+            for (Task t : tasks) if (!t.cancelled) n++;
+            return n;
+        }
+
+        /** Move the clock forward, running every task that falls due, in order */
+        void advance(long ms) {
+            runUntil(now + TimeUnit.MILLISECONDS.toNanos(ms));
+        }
+
+        /** Move the clock to the next task and run it */
+        void runNext() {
+            Task next = null;
+            for (Task t : tasks) if (!t.cancelled && (next == null || t.due < next.due)) next = t;
+            if (next == null) throw new AssertionError("nothing scheduled");
+            runUntil(Math.max(now, next.due));
+        }
+
+        private void runUntil(long until) {
+            while (true) {
+                Task next = null;
+                for (Task t : tasks) if (!t.cancelled && t.due <= until && (next == null || t.due < next.due)) next = t;
+                if (next == null) break;
+                tasks.remove(next);
+                now = Math.max(now, next.due);
+                next.done = true;
+                next.task.run();
+            }
+            now = until;
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            Task t = new Task(command, now + unit.toNanos(delay));
+            tasks.add(t);
+            scheduled++;
+            return t;
+        }
+
+        @Override
+        public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            schedule(command, 0, TimeUnit.NANOSECONDS);
+        }
+
+        @Override public void shutdown() { }
+        @Override public List<Runnable> shutdownNow() { return new ArrayList<>(); }
+        @Override public boolean isShutdown() { return false; }
+        @Override public boolean isTerminated() { return false; }
+        @Override public boolean awaitTermination(long timeout, TimeUnit unit) { return true; }
+
+        private final class Task implements ScheduledFuture<Object> {
+            final Runnable task;
+            final long     due;
+            boolean        cancelled;
+            boolean        done;
+
+            Task(Runnable task, long due) {
+                this.task = task;
+                this.due  = due;
+            }
+
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                if (done) return false;
+                cancelled = true;
+                tasks.remove(this);
+                return true;
+            }
+
+            @Override public long getDelay(TimeUnit unit) { return unit.convert(due - now, TimeUnit.NANOSECONDS); }
+            @Override public int compareTo(Delayed o) { return Long.compare(getDelay(TimeUnit.NANOSECONDS), o.getDelay(TimeUnit.NANOSECONDS)); }
+            @Override public boolean isCancelled() { return cancelled; }
+            @Override public boolean isDone() { return done || cancelled; }
+            @Override public Object get() { return null; }
+            @Override public Object get(long timeout, TimeUnit unit) { return null; }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.yourapp.tracker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * The per-fix path from the filter into the segment log must not allocate once warmed up.
+ * The app's IngestThreadAllocationTest covers the ingest thread and the SQLite queue.
+ */
+public class IngestAllocationTest {
+
+    private static final String PREFIX = "fix:device-7:";
+    private static final int    FIXES  = 2_000;
+
+    private File            dir;
+    private SegmentLogQueue queue;
+
+    @Before
+    public void setUp() throws IOException {
+        dir   = Files.createTempDirectory("ingest-alloc").toFile();
+        queue = SegmentLogQueue.open(dir, SegmentLogQueue.FsyncPolicy.OS);
+    }
+
+    @After
+    public void tearDown() {
+        queue.close();
+        File[] files = dir.listFiles();
+        if (files != null) for (File f : files) f.delete();
+        dir.delete();
+    }
+
+    @Test
+    public void filterAndEnqueueAllocateNothing() {
+        java.lang.management.ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        assumeTrue("thread allocation counters unavailable", mx instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) mx;
+        assumeTrue("thread allocation counters unavailable", threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        PointFilter filter = new PointFilter();
+        Fix         fix    = new Fix();
+        ingest(filter, fix, 0); // warm up: first segment mapping, key prefix cache
+
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        ingest(filter, fix, FIXES);
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+        int  stored    = queue.pendingCount();
+
+        // A few hundred bytes of slack for the counter itself and class initialisation
+        assertTrue(allocated + " bytes for " + FIXES + " fixes", allocated < 1024);
+        assertTrue(stored + " fixes stored", stored > FIXES / 10); // the queue was exercised too
+    }
+
+    /** A winding drive, one fix a second, fed through the filter into the queue */
+    private void ingest(PointFilter filter, Fix fix, int first) {
+        for (int i = first; i < first + FIXES; i++) {
+            fix.time     = 1_714_000_000_000L + i * 1000L;
+            fix.lat      = 48.2 + i * 1e-4;
+            fix.lng      = 16.4 + Math.sin(i / 8.0) * 1e-3;
+            fix.accuracy = 5;
+            fix.speed    = 11;
+            fix.bearing  = (float) (i % 360);
+            Fix kept = filter.offer(fix);
+            if (kept != null) queue.enqueueFix(PREFIX, i, kept);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.yourapp.tracker;
+
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PointFilterTest {
+
+    private static final long   T0         = 1_714_000_000_000L;
+    private static final double LAT0       = 48.0;
+    private static final double LNG0       = 16.0;
+    private static final double M_PER_DEG  = Math.toRadians(1) * Geo.EARTH_RADIUS_M;
+
+    private final PointFilter filter = new PointFilter();
+    private final List<Fix>   stored = new ArrayList<>();
+
+    @Test
+    public void firstFixIsKept() {
+        Fix kept = filter.offer(fix(0, 0, 0, 0));
+        assertNotNull(kept);
+        assertEquals(T0, kept.time);
+    }
+
+    @Test
+    public void jitterAroundAStandingDeviceIsDropped() {
+        offer(fix(0, 0, 0, 0));
+        for (int i = 1; i <= 100; i++) offer(fix(i * 1000, (i % 3) - 1, (i % 2) * 2 - 1, 0));
+        assertEquals(1, stored.size());
+        assertNull(filter.flush());
+    }
+
+    @Test
+    public void straightDriveKeepsOnlyItsEnds() {
+        for (int i = 0; i <= 60; i++) offer(fix(i * 1000, i * 15, 0, 15));
+        flush();
+        assertEquals(2, stored.size());
+        assertEquals(T0 + 60_000, stored.get(1).time);
+    }
+
+    @Test
+    public void cornerIsKept() {
+        for (int i = 0; i <= 30; i++) offer(fix(i * 1000, i * 15, 0, 15));
+        for (int i = 1; i <= 30; i++) offer(fix((30 + i) * 1000, 450, i * 15, 15));
+        flush();
+        assertEquals(3, stored.size());
+        assertEquals(T0 + 30_000, stored.get(1).time); // the corner
+    }
+
+    @Test
+    public void keptTrackStaysWithinTolerance() {
+        List<Fix> raw = new ArrayList<>();
+        double north = 0, east = 0, heading = 0;
+        java.util.Random random = new java.util.Random(7);
+        for (int i = 0; i < 2000; i++) {
+            heading += random.nextGaussian() * 0.2;
+            north   += Math.cos(heading) * 12;
+            east    += Math.sin(heading) * 12;
+            Fix f = fix(i * 1000, north, east, 12);
+            raw.add(new Fix().set(f));
+            offer(f);
+        }
+        flush();
+
+        int k = 0;
+        for (Fix r : raw) {
+            while (k < stored.size() - 1 && stored.get(k + 1).time < r.time) k++;
+            if (k == stored.size() - 1) break;
+            Fix a = stored.get(k), b = stored.get(k + 1);
+            double off = Geo.distanceToSegment(r.lat, r.lng, a.lat, a.lng, b.lat, b.lng);
+            assertTrue("deviation " + off + " m at " + (r.time - T0), off <= PointFilter.DEFAULT_TOLERANCE_M + 0.01);
+        }
+        assertTrue(stored.size() < raw.size() / 2);
+    }
+
+    @Test
+    public void arrivalIsReleasedWhileParked() {
+        for (int i = 0; i < 60; i++) offer(fix(i * 1000, i * 15, 0, 15));
+        long   arrival      = T0 + 59_000;
+        double arrivalNorth = 59 * 15;
+        // Parked for an hour: a fix every 30 s, jittering a metre or two
+        for (int i = 1; i <= 120; i++) offer(fix(59_000 + i * 30_000, arrivalNorth + (i % 2), i % 3, 0));
+
+        Fix last = stored.get(stored.size() - 1);
+        assertEquals(arrival, last.time);
+        assertEquals(LAT0 + arrivalNorth / M_PER_DEG, last.lat, 1e-9);
+        assertNull(filter.flush()); // nothing left in memory
+    }
+
+    @Test
+    public void heldFixIsReleasedWithinMaxGap() {
+        for (int i = 0; i < 10; i++) offer(fix(i * 1000, i * 15, 0, 15));
+        long held = T0 + 9_000;
+        int  before = stored.size();
+        long t = 9_000;
+        while (stored.size() == before) {
+            t += 10_000;
+            offer(fix(t, 9 * 15, 1, 0));
+        }
+        assertEquals(held, stored.get(stored.size() - 1).time);
+        assertTrue(T0 + t - held <= PointFilter.DEFAULT_MAX_GAP_MS + 10_000);
+    }
+
+    @Test
+    public void flushReleasesTheHeldFix() {
+        offer(fix(0, 0, 0, 15));
+        offer(fix(1000, 15, 0, 15));
+        assertEquals(1, stored.size());
+        flush();
+        assertEquals(2, stored.size());
+        assertNull(filter.flush());
+    }
+
+    private void offer(Fix fix) {
+        Fix kept = filter.offer(fix);
+        if (kept != null) stored.add(new Fix().set(kept));
+    }
+
+    private void flush() {
+        Fix kept = filter.flush();
+        if (kept != null) stored.add(new Fix().set(kept));
+    }
+
+    /** A fix {@code north} and {@code east} metres from the origin, moving at {@code speed} */
+    static Fix fix(long offsetMs, double north, double east, float speed) {
+        Fix f = new Fix();
+        f.time     = T0 + offsetMs;
+        f.lat      = LAT0 + north / M_PER_DEG;
+        f.lng      = LNG0 + east / (M_PER_DEG * Math.cos(Math.toRadians(LAT0)));
+        f.accuracy = 5;
+        f.speed    = speed;
+        f.bearing  = (float) Math.toDegrees(Math.atan2(east, north));
+        return f;
+    }
+}
@@ -0,0 +1,63 @@
+package com.yourapp.tracker;
+
+import org.junit.Before;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/** {@link RecordQueueContract} against the memory-mapped log, with the INTERVAL policy the app uses */
+public class SegmentLogQueueContractTest extends RecordQueueContract {
+
+    private File root;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("segment-log-contract").toFile();
+    }
+
+    @Override
+    protected RecordQueue openQueue(String location) throws IOException {
+        return SegmentLogQueue.open(new File(root, location), SegmentLogQueue.FsyncPolicy.INTERVAL);
+    }
+
+    @Override
+    protected void snapshot(String from, String to) throws IOException {
+        File target = new File(root, to);
+        target.mkdirs();
+        for (File f : new File(root, from).listFiles())
+            Files.copy(f.toPath(), new File(target, f.getName()).toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /** Flip a key byte of the last frame written, so it fails its CRC */
+    @Override
+    protected void tearNewestRecord(String location) throws IOException {
+        File[] segments = new File(root, location).listFiles((d, name) -> name.endsWith(".seg"));
+        java.util.Arrays.sort(segments);
+        try (RandomAccessFile f = new RandomAccessFile(segments[segments.length - 1], "rw")) {
+            long frame = f.length() / SegmentLogQueue.FRAME_SIZE - 1;
+            while (frame >= 0 && readId(f, frame) == 0) frame--;
+            long pos = frame * SegmentLogQueue.FRAME_SIZE + 20; // past the 16-byte header
+            f.seek(pos);
+            int b = f.read();
+            f.seek(pos);
+            f.write(b ^ 0xFF);
+        }
+    }
+
+    private static long readId(RandomAccessFile f, long frame) throws IOException {
+        f.seek(frame * SegmentLogQueue.FRAME_SIZE + 4);
+        return f.readLong();
+    }
+
+    @Override
+    protected void delete(String location) {
+        File dir = new File(root, location);
+        File[] files = dir.listFiles();
+        if (files != null) for (File f : files) f.delete();
+        dir.delete();
+        root.delete(); // once both locations are gone
+    }
+}
@@ -0,0 +1,167 @@
+package com.yourapp.tracker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SegmentLogQueueTest {
+
+    private static final String PREFIX = "fix:device-7:";
+    private static final long   T0     = 1_714_000_000_000L;
+
+    private File            dir;
+    private SegmentLogQueue queue;
+
+    @Before
+    public void setUp() throws IOException {
+        dir   = Files.createTempDirectory("segment-log").toFile();
+        queue = open();
+    }
+
+    @After
+    public void tearDown() {
+        queue.close();
+        File[] files = dir.listFiles();
+        if (files != null) for (File f : files) f.delete();
+        dir.delete();
+    }
+
+    @Test
+    public void claimAckRelease() {
+        append(1, 10);
+        assertEquals(10, queue.pendingCount());
+
+        List<RecordQueue.Record> page = queue.claim(4);
+        assertIds(page, 1, 4);
+        assertEquals(PREFIX + 1, page.get(0).key);
+        assertEquals(T0 + 1000, FixCodec.decode(page.get(0).payload).time);
+        assertIds(queue.claim(2), 5, 6); // claims continue after the in-flight records
+        assertEquals(6, queue.stats().inFlight);
+
+        queue.ack(4);
+        assertEquals(6, queue.pendingCount());
+        queue.release(); // 5 and 6 were not acknowledged: they are claimed again
+        assertIds(queue.claim(100), 5, 10);
+        assertEquals(0, queue.claim(100).size());
+    }
+
+    @Test
+    public void enqueueAndEnqueueFixShareTheLog() {
+        queue.enqueue("trip:device-7:1", TripCodec.encode(TripCodecTest.trip()));
+        append(2, 2);
+        List<RecordQueue.Record> page = queue.claim(10);
+        assertIds(page, 1, 2);
+        assertTrue(TripCodec.isTrip(page.get(0).payload));
+        assertEquals(PREFIX + 2, page.get(1).key);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void recordLargerThanAFrameIsRejected() {
+        queue.enqueue("big", new byte[SegmentLogQueue.FRAME_SIZE]);
+    }
+
+    @Test
+    public void reopenResumesAfterTheAcknowledgedRecords() throws IOException {
+        append(1, 10);
+        queue.claim(3);
+        queue.ack(3);
+        reopen();
+
+        assertEquals(7, queue.pendingCount());
+        assertIds(queue.claim(100), 4, 10);
+        append(11, 11);
+        assertIds(queue.claim(100), 11, 11);
+    }
+
+    @Test
+    public void truncatedTailFrameIsDropped() throws IOException {
+        append(1, 5);
+        queue.close();
+        corrupt(5, 20, (byte) 0); // the process died while the last frame's body was written
+        queue = open();
+
+        assertEquals(4, queue.pendingCount());
+        assertIds(queue.claim(100), 1, 4);
+        append(6, 6); // takes over the torn frame's slot
+        assertEquals(PREFIX + 6, queue.claim(100).get(0).key);
+    }
+
+    @Test
+    public void logEndsAtTheFirstBadFrame() throws IOException {
+        append(1, 6);
+        queue.close();
+        corrupt(3, 30, (byte) 0x5A);
+        queue = open();
+
+        assertEquals(2, queue.pendingCount());
+        assertIds(queue.claim(100), 1, 2);
+
+        // Frames after the bad one were cleared: reopening after two new appends finds only those
+        append(7, 8);
+        reopen();
+        List<RecordQueue.Record> page = queue.claim(100);
+        assertIds(page, 1, 4);
+        assertEquals(PREFIX + 8, page.get(3).key);
+    }
+
+    @Test
+    public void acknowledgedSegmentsAreDeleted() throws IOException {
+        int n = SegmentLogQueue.FRAMES_PER_SEGMENT + 10;
+        append(1, n);
+        assertEquals(2, segmentCount());
+
+        assertEquals(SegmentLogQueue.FRAMES_PER_SEGMENT - 1, queue.claim(SegmentLogQueue.FRAMES_PER_SEGMENT - 1).size());
+        queue.ack(SegmentLogQueue.FRAMES_PER_SEGMENT - 1);
+        assertEquals(2, segmentCount()); // one frame of the first segment is still pending
+        queue.ack(SegmentLogQueue.FRAMES_PER_SEGMENT);
+        assertEquals(1, segmentCount());
+
+        reopen();
+        assertEquals(10, queue.pendingCount());
+        assertIds(queue.claim(100), SegmentLogQueue.FRAMES_PER_SEGMENT + 1, n);
+    }
+
+    private SegmentLogQueue open() throws IOException {
+        return SegmentLogQueue.open(dir, SegmentLogQueue.FsyncPolicy.OS);
+    }
+
+    private void reopen() throws IOException {
+        queue.close();
+        queue = open();
+    }
+
+    /** Append fixes with sequence numbers {@code from..to}, a second apart */
+    private void append(int from, int to) {
+        Fix fix = FixCodecTest.fix(0, 48.2, 16.4);
+        for (int seq = from; seq <= to; seq++) {
+            fix.time = T0 + seq * 1000L;
+            queue.enqueueFix(PREFIX, seq, fix);
+        }
+    }
+
+    /** Overwrite one byte of frame {@code id}, counted from the start of the frame */
+    private void corrupt(long id, int offset, byte value) throws IOException {
+        try (RandomAccessFile f = new RandomAccessFile(new File(dir, String.format("%020d.seg", 1)), "rw")) {
+            f.seek((id - 1) * SegmentLogQueue.FRAME_SIZE + offset);
+            f.write(value);
+        }
+    }
+
+    private int segmentCount() {
+        return dir.list((d, name) -> name.endsWith(".seg")).length;
+    }
+
+    private static void assertIds(List<RecordQueue.Record> page, long first, long last) {
+        assertEquals(last - first + 1, page.size());
+        for (int i = 0; i < page.size(); i++) assertEquals(first + i, page.get(i).id);
+    }
+}
@@ -0,0 +1,208 @@
+package com.yourapp.tracker;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TripAggregatorTest {
+
+    private static final long   T0        = 1_714_000_000_000L;
+    private static final double LAT0      = 48.0;
+    private static final double LNG0      = 16.0;
+    private static final double M_PER_DEG = Math.toRadians(1) * Geo.EARTH_RADIUS_M;
+
+    // Driving off at 15 m/s, the fix at 45 m is the last within STOP_RADIUS_M of the parking spot:
+    // trips start there, and their distance counts from there
+    private static final double DEPARTURE_M = 45;
+
+    private final List<Trip>     trips      = new ArrayList<>();
+    private final TripAggregator aggregator = new TripAggregator(this::copy);
+
+    // Position and clock of the simulated device
+    private long   now = T0;
+    private double north;
+    private double east;
+
+    @Test
+    public void driveBetweenTwoStopsIsOneTrip() {
+        park(300_000);
+        long departure = now + 2_000;
+        drive(120, 15); // 1800 m north in 2 min
+        long arrival = now - 1000;
+        park(300_000);
+
+        assertEquals(1, trips.size());
+        Trip trip = trips.get(0);
+        assertEquals(departure, trip.startTime);
+        // It ends at the first fix within STOP_RADIUS_M of where it came to a halt
+        assertEquals(arrival, trip.endTime, TripAggregator.STOP_RADIUS_M / 15 * 1000);
+        assertEquals(LAT0 + DEPARTURE_M / M_PER_DEG, trip.startLat, 1e-7);
+        assertEquals(LAT0 + 1800 / M_PER_DEG, trip.endLat, TripAggregator.STOP_RADIUS_M / M_PER_DEG);
+        assertEquals(1800 - DEPARTURE_M, trip.distance, 1);
+        assertEquals(trip.durationMs(), trip.movingMs);
+        assertEquals(15, trip.maxSpeed, 0.01);
+        assertEquals(15, trip.averageSpeed(), 0.5);
+        assertFalse(aggregator.inTrip());
+    }
+
+    @Test
+    public void stopShorterThanTheDwellDoesNotSplitTheTrip() {
+        park(60_000);
+        drive(60, 15);
+        park(TripAggregator.STOP_DWELL_MS - 30_000); // a traffic light, a level crossing
+        drive(60, 15);
+        park(300_000);
+
+        assertEquals(1, trips.size());
+        Trip trip = trips.get(0);
+        assertEquals(1800 - DEPARTURE_M, trip.distance, 1);
+        assertEquals(120_000, trip.movingMs, 10_000); // the wait at the light is not moving time
+    }
+
+    @Test
+    public void stopLongerThanTheDwellSplitsIt() {
+        park(60_000);
+        drive(60, 15);
+        park(TripAggregator.STOP_DWELL_MS + 60_000);
+        drive(60, 15);
+        park(300_000);
+
+        assertEquals(2, trips.size());
+        assertTrue(trips.get(1).startTime >= trips.get(0).endTime);
+        assertEquals(900, trips.get(0).distance, TripAggregator.STOP_RADIUS_M);
+        assertEquals(900, trips.get(1).distance, TripAggregator.STOP_RADIUS_M);
+    }
+
+    @Test
+    public void jitterWhileParkedIsNoTrip() {
+        // An hour in a car park with poor reception: fixes wander up to 40 m, but never 100 m
+        for (int i = 0; i < 360; i++) {
+            north = (i % 7) * 6 - 18;
+            east  = (i % 5) * 8 - 16;
+            fix(0);
+            now += 10_000;
+        }
+        aggregator.flush();
+        assertTrue(trips.isEmpty());
+        assertFalse(aggregator.inTrip());
+    }
+
+    @Test
+    public void jitterDuringATripDoesNotAddDistance() {
+        park(60_000);
+        drive(60, 15);
+        // Standing at a stop for under the dwell while fixes scatter by a few metres
+        double stopNorth = north;
+        for (int i = 0; i < 15; i++) {
+            north = stopNorth + (i % 2 == 0 ? 4 : -4);
+            fix(0);
+            now += 10_000;
+        }
+        north = stopNorth;
+        drive(60, 15);
+        park(300_000);
+
+        assertEquals(1, trips.size());
+        assertEquals(1800 - DEPARTURE_M, trips.get(0).distance, 1);
+    }
+
+    @Test
+    public void flushEndsTheTripUnderWayAtTheLastFix() {
+        park(60_000);
+        drive(60, 15);
+        long last = now - 1000;
+        assertTrue(aggregator.inTrip());
+
+        aggregator.flush();
+        assertEquals(1, trips.size());
+        assertEquals(last, trips.get(0).endTime);
+        assertEquals(LAT0 + 900 / M_PER_DEG, trips.get(0).endLat, 1e-7);
+        assertFalse(aggregator.inTrip());
+
+        aggregator.flush(); // nothing under way any more
+        assertEquals(1, trips.size());
+    }
+
+    @Test
+    public void shortHopIsDroppedAsDrift() {
+        park(60_000);
+        drive(10, 15); // 150 m: far enough to start, too short to keep
+        park(300_000);
+        assertTrue(trips.isEmpty());
+    }
+
+    @Test
+    public void gapInFixesEndsTheTripBeforeIt() {
+        park(60_000);
+        drive(60, 15);
+        long last = now - 1000;
+        now += TripAggregator.MAX_GAP_MS + 60_000; // tunnel, or the phone was off
+        north += 5_000;
+        fix(0);
+
+        assertEquals(1, trips.size());
+        assertEquals(last, trips.get(0).endTime);
+    }
+
+    @Test
+    public void inaccurateAndOutOfOrderFixesAreIgnored() {
+        park(60_000);
+        Fix wild = fixAt(now, 5_000, 0, 0);
+        wild.accuracy = 500;
+        aggregator.offer(wild);
+        aggregator.offer(fixAt(T0, 5_000, 0, 0)); // older than the last accepted fix
+        park(60_000);
+        aggregator.flush();
+        assertTrue(trips.isEmpty());
+    }
+
+    // --- Helpers ---
+
+    /** Stand still for {@code ms}, a fix every 10 s */
+    private void park(long ms) {
+        for (long end = now + ms; now < end; now += 10_000) fix(0);
+    }
+
+    /** Drive north for {@code seconds} at {@code speed} m/s, a fix every second */
+    private void drive(int seconds, float speed) {
+        for (int i = 0; i < seconds; i++) {
+            north += speed;
+            fix(speed);
+            now += 1000;
+        }
+    }
+
+    private void fix(float speed) {
+        aggregator.offer(fixAt(now, north, east, speed));
+    }
+
+    private static Fix fixAt(long time, double north, double east, float speed) {
+        Fix f = new Fix();
+        f.time     = time;
+        f.lat      = LAT0 + north / M_PER_DEG;
+        f.lng      = LNG0 + east / (M_PER_DEG * Math.cos(Math.toRadians(LAT0)));
+        f.accuracy = 8;
+        f.speed    = speed;
+        return f;
+    }
+
+    private void copy(Trip trip) {
+        Trip t = new Trip();
+        t.startTime = trip.startTime;
+        t.endTime   = trip.endTime;
+        t.startLat  = trip.startLat;
+        t.startLng  = trip.startLng;
+        t.endLat    = trip.endLat;
+        t.endLng    = trip.endLng;
+        t.distance  = trip.distance;
+        t.movingMs  = trip.movingMs;
+        t.maxSpeed  = trip.maxSpeed;
+        t.points    = trip.points;
+        trips.add(t);
+    }
+}
@@ -0,0 +1,63 @@
+package com.yourapp.tracker;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TripCodecTest {
+
+    @Test
+    public void roundTrip() {
+        Trip trip = trip();
+        byte[] data = TripCodec.encode(trip);
+        assertTrue(TripCodec.isTrip(data));
+        assertFalse(FixCodec.isFix(data));
+        assertTrue(data.length <= TripCodec.MAX_SIZE);
+
+        Trip out = TripCodec.decode(data);
+        assertEquals(trip.startTime, out.startTime);
+        assertEquals(trip.endTime, out.endTime);
+        assertEquals(trip.startLat, out.startLat, 1e-7);
+        assertEquals(trip.startLng, out.startLng, 1e-7);
+        assertEquals(trip.endLat, out.endLat, 1e-7);
+        assertEquals(trip.endLng, out.endLng, 1e-7);
+        assertEquals(trip.distance, out.distance, 0.051);
+        assertEquals(trip.movingMs, out.movingMs);
+        assertEquals(trip.maxSpeed, out.maxSpeed, 0.0051);
+        assertEquals(trip.points, out.points);
+    }
+
+    @Test
+    public void negativeFieldsAreClampedToZero() {
+        Trip trip = trip();
+        trip.endTime  = trip.startTime - 1;
+        trip.distance = -3;
+        trip.movingMs = -1;
+        Trip out = TripCodec.decode(TripCodec.encode(trip));
+        assertEquals(0, out.durationMs());
+        assertEquals(0, out.distance, 0);
+        assertEquals(0, out.movingMs);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fixIsNotATrip() {
+        TripCodec.decode(FixCodec.encode(FixCodecTest.fix(1_714_000_000_000L, 1, 2)));
+    }
+
+    static Trip trip() {
+        Trip t = new Trip();
+        t.startTime = 1_714_000_000_000L;
+        t.endTime   = t.startTime + 1_834_500;
+        t.startLat  = 48.2081743;
+        t.startLng  = 16.3738189;
+        t.endLat    = 48.1486111;
+        t.endLng    = 16.2886111;
+        t.distance  = 12_345.6;
+        t.movingMs  = 1_500_000;
+        t.maxSpeed  = 22.22f;
+        t.points    = 412;
+        return t;
+    }
+}
@@ -0,0 +1,210 @@
+package com.yourapp.tracker;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class WireFormatTest {
+
+    private static final String DEVICE = "device-7";
+
+    /** Decoded by the server's codec; run from the module directory, as Gradle does */
+    private static final File CODEC_JS = new File("../../server/codec.js");
+
+    @Test
+    public void batchDecodesToTheQueuedRecords() {
+        assertDecodes(batch());
+    }
+
+    @Test
+    public void randomFixesDecodeToTheQueuedRecords() {
+        Random                   random  = new Random(6);
+        List<RecordQueue.Record> records = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            Fix fix = FixCodecTest.random(random); // jumps around: large deltas of either sign
+            records.add(record(i + 1, "fix:" + DEVICE + ":" + i, FixCodec.encode(fix)));
+        }
+        assertDecodes(records);
+    }
+
+    @Test
+    public void uploadIsAFifthOfTheJsonBatchOrLess() {
+        List<RecordQueue.Record> records = batch();
+        records.remove(20); // the trip
+        JSONArray json = new JSONArray();
+        for (RecordQueue.Record r : records) json.put(FixJson.toJson(FixCodec.decode(r.payload), DEVICE));
+
+        byte[] body  = WireFormat.encodeBatch(DEVICE, records);
+        int    plain = json.toString().getBytes(StandardCharsets.UTF_8).length;
+        assertTrue(body.length + " bytes versus " + plain + " as JSON", body.length * 5 <= plain);
+    }
+
+    /** Decode {@code records}' batch by hand, following the layout in {@link WireFormat} */
+    private static void assertDecodes(List<RecordQueue.Record> records) {
+        byte[]     body = WireFormat.encodeBatch(DEVICE, records);
+        ByteReader in   = new ByteReader(body);
+
+        assertEquals(WireFormat.VERSION, in.readByte());
+        assertEquals(DEVICE, readString(in));
+        String prefix = readString(in);
+        assertEquals(records.size(), in.readVarint());
+
+        long prevTime = FixCodec.EPOCH_BASE_MS, prevLat = 0, prevLng = 0, prevAlt = 0;
+        for (RecordQueue.Record r : records) {
+            assertEquals(r.key, prefix + readString(in));
+            int header = in.readByte();
+            if (header == 0) {
+                byte[] payload = new byte[(int) in.readVarint()];
+                for (int i = 0; i < payload.length; i++) payload[i] = (byte) in.readByte();
+                assertEquals(java.util.Arrays.toString(r.payload), java.util.Arrays.toString(payload));
+                continue;
+            }
+            assertEquals(FixCodec.FIX_HEADER, header);
+            Fix fix = new Fix();
+            fix.time     = prevTime += in.readSignedVarint();
+            fix.lat      = (prevLat += in.readSignedVarint()) / FixCodec.COORD_SCALE;
+            fix.lng      = (prevLng += in.readSignedVarint()) / FixCodec.COORD_SCALE;
+            fix.altitude = (prevAlt += in.readSignedVarint()) / 10.0;
+            fix.accuracy = in.readVarint() / 10f;
+            fix.speed    = in.readVarint() / 100f;
+            fix.bearing  = in.readVarint() / 10f;
+            FixCodecTest.assertSameFix(FixCodec.decode(r.payload), fix);
+        }
+    }
+
+    @Test
+    public void fixesShareTheKeyPrefixAndAreDeltaCoded() {
+        List<RecordQueue.Record> records = batch();
+        records.remove(20); // the trip
+        int verbatim = 0;
+        for (RecordQueue.Record r : records) verbatim += r.key.length() + r.payload.length;
+
+        byte[]     body = WireFormat.encodeBatch(DEVICE, records);
+        ByteReader in   = new ByteReader(body);
+        in.readByte();
+        readString(in);
+        assertEquals("fix:" + DEVICE + ":17140000", readString(in));
+        assertTrue(body.length + " of " + verbatim, body.length < verbatim / 2);
+    }
+
+    @Test
+    public void emptyBatch() {
+        byte[]     body = WireFormat.encodeBatch(DEVICE, new ArrayList<RecordQueue.Record>());
+        ByteReader in   = new ByteReader(body);
+        assertEquals(WireFormat.VERSION, in.readByte());
+        assertEquals(DEVICE, readString(in));
+        assertEquals("", readString(in));
+        assertEquals(0, in.readVarint());
+    }
+
+    @Test
+    public void serverCodecDecodesTheBatch() throws Exception {
+        assumeTrue("server/codec.js not found", CODEC_JS.isFile());
+        List<RecordQueue.Record> records = batch();
+        String decoded = node(
+            "const c = require(process.argv[1]);"
+                + "process.stdout.write(JSON.stringify(c.decodeBatch(Buffer.from(process.argv[2], 'hex'))));",
+            CODEC_JS.getCanonicalPath(), hex(WireFormat.encodeBatch(DEVICE, records)));
+        assumeTrue("node is not installed", decoded != null);
+
+        JSONArray out = new JSONArray(decoded);
+        assertEquals(records.size(), out.length());
+        for (int i = 0; i < records.size(); i++) {
+            RecordQueue.Record r     = records.get(i);
+            JSONObject         entry = out.getJSONObject(i);
+            JSONObject         value = entry.getJSONObject("value");
+            assertEquals(r.key, entry.getString("key"));
+            assertEquals(DEVICE, value.getString("device_id"));
+            if (TripCodec.isTrip(r.payload)) {
+                Trip trip = TripCodec.decode(r.payload);
+                assertEquals("trip", value.getString("type"));
+                assertEquals(trip.startTime, value.getLong("start_time"));
+                assertEquals(trip.endTime, value.getLong("end_time"));
+                assertEquals(trip.endLat, value.getDouble("end_lat"), 1e-9);
+                assertEquals(trip.distance, value.getDouble("distance_m"), 1e-9);
+                assertEquals(trip.points, value.getInt("points"));
+                continue;
+            }
+            Fix fix = FixCodec.decode(r.payload);
+            assertEquals(fix.time, value.getLong("timestamp"));
+            assertEquals(fix.lat, value.getDouble("lat"), 1e-9);
+            assertEquals(fix.lng, value.getDouble("lng"), 1e-9);
+            assertEquals(fix.accuracy, value.getDouble("accuracy_m"), 1e-6);
+            assertEquals(fix.altitude, value.getDouble("altitude_m"), 1e-9);
+            assertEquals(fix.speed, value.getDouble("speed_ms"), 1e-6);
+            assertEquals(fix.bearing, value.getDouble("bearing"), 1e-6);
+        }
+    }
+
+    /** A drive south-west with a trip summary in the middle */
+    private static List<RecordQueue.Record> batch() {
+        List<RecordQueue.Record> records = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            Fix fix = FixCodecTest.fix(1_714_000_000_000L + i * 1_000L, 48.2081743 - i * 1e-4, 16.3738189 - i * 2e-4);
+            fix.altitude += i * 0.3;
+            records.add(record(i + 1, "fix:" + DEVICE + ":" + fix.time, FixCodec.encode(fix)));
+            if (i == 19) {
+                Trip trip = TripCodecTest.trip();
+                records.add(record(1000, "trip:" + DEVICE + ":" + trip.startTime, TripCodec.encode(trip)));
+            }
+        }
+        return records;
+    }
+
+    private static RecordQueue.Record record(long id, String key, byte[] payload) {
+        RecordQueue.Record r = new RecordQueue.Record();
+        r.id      = id;
+        r.key     = key;
+        r.payload = payload;
+        return r;
+    }
+
+    private static String readString(ByteReader in) {
+        byte[] bytes = new byte[(int) in.readVarint()];
+        for (int i = 0; i < bytes.length; i++) bytes[i] = (byte) in.readByte();
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) sb.append(String.format("%02x", b & 0xFF));
+        return sb.toString();
+    }
+
+    /** Run a node script and return its output, or null if node is not installed */
+    private static String node(String script, String... args) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add("node");
+        command.add("-e");
+        command.add(script);
+        for (String a : args) command.add(a);
+        Process process;
+        try {
+            process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        } catch (java.io.IOException e) {
+            return null;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = process.getInputStream()) {
+            byte[] buf = new byte[8192];
+            for (int n; (n = in.read(buf)) > 0; ) out.write(buf, 0, n);
+        }
+        assertTrue("node timed out", process.waitFor(30, TimeUnit.SECONDS));
+        String text = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        assertEquals(text, 0, process.exitValue());
+        return text;
+    }
+}
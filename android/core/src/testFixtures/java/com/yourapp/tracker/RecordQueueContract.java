@@ -0,0 +1,185 @@
+package com.yourapp.tracker;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Behaviour every {@link RecordQueue} must share, run against each backend by a subclass:
+ * FIFO order, claim/ack/release, reopening, and recovery from a crash mid-write.
+ *
+ * A crash is simulated by copying the files of a queue that is still open, neither committed
+ * nor closed, and opening the copy.
+ */
+public abstract class RecordQueueContract {
+
+    protected static final String PREFIX = "fix:device-7:";
+
+    private final List<RecordQueue> opened = new ArrayList<>();
+
+    /** Open (or create) the queue stored under {@code location} */
+    protected abstract RecordQueue openQueue(String location) throws Exception;
+
+    /** Copy the files of the open queue at {@code from} to {@code to}, as a crash would leave them */
+    protected abstract void snapshot(String from, String to) throws Exception;
+
+    /**
+     * Damage the newest record in the files at {@code location} the way a write cut off by power
+     * loss would. Backends that only write whole transactions leave the files as they are.
+     */
+    protected abstract void tearNewestRecord(String location) throws Exception;
+
+    /** Delete everything stored under {@code location} */
+    protected abstract void delete(String location) throws Exception;
+
+    @After
+    public void closeQueues() throws Exception {
+        for (RecordQueue q : opened) q.close();
+        opened.clear();
+        delete("queue");
+        delete("crashed");
+    }
+
+    @Test
+    public void claimReturnsRecordsOldestFirst() throws Exception {
+        RecordQueue queue = open("queue");
+        append(queue, 1, 3);
+        queue.enqueue(PREFIX + 4, TripCodec.encode(new Trip())); // enqueue and enqueueFix share one order
+        append(queue, 5, 7);
+        queue.commit();
+
+        List<RecordQueue.Record> page = queue.claim(100);
+        assertKeys(page, 1, 7);
+        assertTrue(TripCodec.isTrip(page.get(3).payload));
+        assertEquals(1_714_000_001_000L, FixCodec.decode(page.get(1).payload).time);
+        for (int i = 1; i < page.size(); i++) assertTrue(page.get(i).id > page.get(i - 1).id);
+    }
+
+    @Test
+    public void claimHandsOutEachRecordOnce() throws Exception {
+        RecordQueue queue = open("queue");
+        append(queue, 1, 10);
+        queue.commit();
+
+        assertKeys(queue.claim(4), 1, 4);
+        assertKeys(queue.claim(4), 5, 8);
+        assertKeys(queue.claim(4), 9, 10);
+        assertEquals(0, queue.claim(4).size());
+        assertEquals(10, queue.stats().inFlight);
+    }
+
+    @Test
+    public void ackDropsRecordsAndReleaseHandsTheRestOutAgain() throws Exception {
+        RecordQueue queue = open("queue");
+        append(queue, 1, 10);
+        queue.commit();
+
+        List<RecordQueue.Record> page = queue.claim(6);
+        queue.ack(page.get(2).id);
+        assertEquals(7, queue.pendingCount());
+        assertEquals(3, queue.stats().acked);
+
+        queue.release();
+        assertEquals(0, queue.stats().inFlight);
+        assertKeys(queue.claim(100), 4, 10);
+
+        queue.ack(Long.MAX_VALUE);
+        assertEquals(0, queue.pendingCount());
+        assertEquals(0, queue.claim(100).size());
+    }
+
+    @Test
+    public void reopenKeepsWhatWasNotAcknowledged() throws Exception {
+        RecordQueue queue = open("queue");
+        append(queue, 1, 10);
+        queue.commit();
+        queue.ack(queue.claim(3).get(2).id);
+        reclose(queue);
+
+        queue = open("queue");
+        assertKeys(queue.claim(100), 4, 10);
+        assertEquals(7, queue.pendingCount());
+        append(queue, 11, 12); // new records come after the old ones
+        queue.commit();
+        assertKeys(queue.claim(100), 11, 12);
+    }
+
+    @Test
+    public void closeMakesBufferedRecordsDurable() throws Exception {
+        RecordQueue queue = open("queue");
+        append(queue, 1, 5);
+        reclose(queue); // no commit
+
+        assertKeys(open("queue").claim(100), 1, 5);
+    }
+
+    @Test
+    public void crashAfterCommitLosesNothing() throws Exception {
+        RecordQueue queue = open("queue");
+        append(queue, 1, 10);
+        queue.commit();
+        queue.ack(queue.claim(4).get(3).id);
+        snapshot("queue", "crashed");
+
+        RecordQueue recovered = open("crashed");
+        assertKeys(recovered.claim(100), 5, 10);
+        assertEquals(6, recovered.pendingCount());
+    }
+
+    @Test
+    public void crashMidWriteKeepsTheCommittedRecords() throws Exception {
+        RecordQueue queue = open("queue");
+        append(queue, 1, 5);
+        queue.commit();
+        append(queue, 6, 6); // cut off by the crash
+        snapshot("queue", "crashed");
+        tearNewestRecord("crashed");
+
+        RecordQueue recovered = open("crashed");
+        assertKeys(recovered.claim(100), 1, 5);
+        assertEquals(5, recovered.pendingCount());
+
+        append(recovered, 7, 8); // the queue takes new records after the lost one
+        recovered.commit();
+        assertKeys(recovered.claim(100), 7, 8);
+    }
+
+    // --- Helpers ---
+
+    protected RecordQueue open(String location) throws Exception {
+        RecordQueue queue = openQueue(location);
+        opened.add(queue);
+        return queue;
+    }
+
+    private void reclose(RecordQueue queue) {
+        queue.close();
+        opened.remove(queue);
+    }
+
+    /** Append fixes {@code from..to}, keyed by sequence number and a second apart */
+    protected static void append(RecordQueue queue, int from, int to) {
+        Fix fix = new Fix();
+        fix.lat      = 48.2;
+        fix.lng      = 16.4;
+        fix.accuracy = 5;
+        for (int seq = from; seq <= to; seq++) {
+            fix.time = 1_714_000_000_000L + (seq - 1) * 1000L;
+            queue.enqueueFix(PREFIX, seq, fix);
+        }
+    }
+
+    /** The page holds the records keyed {@code from..to}, in order */
+    protected static void assertKeys(List<RecordQueue.Record> page, int from, int to) {
+        List<String> expected = new ArrayList<>();
+        List<String> actual   = new ArrayList<>();
+        for (int seq = from; seq <= to; seq++) expected.add(PREFIX + seq);
+        for (RecordQueue.Record r : page) actual.add(r.key);
+        assertEquals(expected, actual);
+    }
+}
@@ -0,0 +1,65 @@
+package com.yourapp.tracker;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * {@link HttpTransport} over the JDK's HttpClient, shared by every simulated device. Blocking
+ * sends park a virtual thread instead of holding a platform thread, so one client carries
+ * thousands of concurrent uploads.
+ */
+final class JdkTransport implements HttpTransport {
+
+    private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(30);
+
+    private final String     baseUrl;
+    private final HttpClient client;
+
+    JdkTransport(String baseUrl) {
+        this.baseUrl = baseUrl;
+        this.client  = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1) // what ApiClient speaks to the server
+            .connectTimeout(DEFAULT_TIMEOUT)
+            .build();
+    }
+
+    @Override
+    public Response send(String endpoint, byte[] body, String contentType, boolean gzip, String token, int timeoutMs) {
+        try {
+            HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + endpoint))
+                .timeout(timeoutMs > 0 ? Duration.ofMillis(timeoutMs) : DEFAULT_TIMEOUT)
+                .header("Content-Type", contentType)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(gzip ? gzip(body) : body));
+            if (gzip)          request.header("Content-Encoding", "gzip");
+            if (token != null) request.header("Authorization", "Bearer " + token);
+
+            HttpResponse<String> response = client.send(request.build(), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            String text = response.body();
+            JSONObject json = null;
+            if (text != null && text.startsWith("{")) json = new JSONObject(text);
+            return new Response(response.statusCode(), json);
+        } catch (IOException | JSONException e) {
+            return new Response(-1, null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Response(-1, null);
+        }
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 2 + 64);
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(body);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,76 @@
+package com.yourapp.tracker;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency distribution in log-linear buckets: every power of two is split into 64
+ * linear sub-buckets, so percentiles are within 1/64 (about 1.6%) of the true value. Finer than
+ * {@link Metrics.Histogram}, whose power-of-two buckets are too coarse to compare p99 between runs.
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BITS    = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    // Values below SUB_BUCKETS get a bucket each; above, (63 - SUB_BITS + 1) ranges of SUB_BUCKETS
+    private static final int BUCKETS     = SUB_BUCKETS * (64 - SUB_BITS);
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder       count   = new LongAdder();
+    private final LongAdder       sum     = new LongAdder();
+    private final AtomicLong      max     = new AtomicLong();
+
+    /** Record one value, in microseconds */
+    void record(long micros) {
+        if (micros < 0) micros = 0;
+        buckets.incrementAndGet(index(micros));
+        count.increment();
+        sum.add(micros);
+        long current;
+        do {
+            current = max.get();
+        } while (micros > current && !max.compareAndSet(current, micros));
+    }
+
+    long count() {
+        return count.sum();
+    }
+
+    long max() {
+        return max.get();
+    }
+
+    /** Mean in microseconds, 0 if empty */
+    long mean() {
+        long n = count();
+        return n == 0 ? 0 : sum.sum() / n;
+    }
+
+    /** Upper bound of the bucket holding the {@code q} quantile, capped at the maximum seen */
+    long percentile(double q) {
+        long total = count();
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(q * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) return Math.min(upperBound(i), max());
+        }
+        return max();
+    }
+
+    private static int index(long v) {
+        if (v < SUB_BUCKETS) return (int) v;
+        int exp = 63 - Long.numberOfLeadingZeros(v); // >= SUB_BITS
+        int sub = (int) (v >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exp - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long upperBound(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int exp = index / SUB_BUCKETS + SUB_BITS - 1;
+        int sub = index % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + sub + 1) << (exp - SUB_BITS)) - 1;
+    }
+}
@@ -0,0 +1,347 @@
+package com.yourapp.tracker;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load simulator: runs a fleet of {@link VirtualDevice}s, one virtual thread each, against a
+ * CloudTracker server and reports ingest throughput, request latency percentiles, error rates
+ * and the growth of the server's database.
+ *
+ * <pre>
+ * gradle :loadgen:run --args="--devices 2000 --duration 5m --network wifi:4m,offline:1m --db ../server/cloud.db"
+ * </pre>
+ * Run without arguments against a local server for a one-minute smoke test; {@code --help}
+ * lists every option.
+ */
+public final class LoadGen {
+
+    /** Run configuration, from the command line */
+    static final class Options {
+        String         url        = "http://localhost:3000";
+        int            devices    = 100;
+        int            users      = 10;          // devices are spread over this many accounts
+        String         password   = "loadgen-password";
+        String         runId;                    // prefix of every device id; random unless given
+        long           durationMs = 60_000;
+        long           rampMs     = 10_000;      // devices start spread over this long
+        long           intervalMs = 1_000;       // between fixes, per device
+        NetworkPattern network    = NetworkPattern.parse("wifi:1h");
+        boolean        aligned;                  // every device at the same point of the network pattern
+        int            backlog;                  // fixes each device starts with
+        File           trace;                    // recorded track to replay; synthetic drives if null
+        boolean        live       = true;
+        int            window     = BatchUploader.DEFAULT_IN_FLIGHT_WINDOW;
+        boolean        binary     = true;
+        boolean        gzip       = true;
+        long           bandwidth  = 64 * 1024;   // backlog bytes/s per device, as in the app; 0 = unlimited
+        File           db;                       // server database, to measure its growth
+        File           out;                      // results as JSON
+        long           reportMs   = 10_000;
+        long           seed       = 1;
+    }
+
+    private static final String USAGE = String.join("\n",
+        "Usage: loadgen [options]",
+        "  --url URL            server base URL (http://localhost:3000)",
+        "  --devices N          simulated devices (100)",
+        "  --users N            accounts the devices are spread over (10)",
+        "  --run-id ID          device id prefix; reuse one to replay already stored keys (random)",
+        "  --duration D         how long devices report fixes (60s)",
+        "  --ramp D             devices start spread over this long (10s)",
+        "  --interval D         time between fixes per device (1s)",
+        "  --network P          repeating network pattern, e.g. wifi:5m,offline:1m,cellular:2m (wifi:1h)",
+        "                       states: wifi, ethernet, cellular (metered), portal (not validated), offline",
+        "  --aligned            start every device at the same point of the pattern (random phase)",
+        "  --backlog N          fixes each device has queued at start (0)",
+        "  --trace FILE         replay a recorded track, one JSON fix per line (synthetic drives)",
+        "  --no-live            do not send the live position with each fix",
+        "  --window N           upload requests in flight per device (4)",
+        "  --json               upload JSON batches instead of the binary format",
+        "  --no-gzip            send request bodies uncompressed",
+        "  --bandwidth KB       backlog upload cap per device in KB/s, 0 for none (64)",
+        "  --db FILE            server database file, to report its growth",
+        "  --out FILE           write the results as JSON",
+        "  --report D           progress report interval (10s)",
+        "  --seed N             seed for traces and phases (1)",
+        "Durations: 500ms, 30s, 5m, 1h; a bare number is seconds.");
+
+    public static void main(String[] args) throws Exception {
+        Options options;
+        try {
+            options = parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+        if (options == null) {
+            System.out.println(USAGE);
+            return;
+        }
+        System.exit(new LoadGen(options).run() ? 0 : 1);
+    }
+
+    // --- Options ---
+
+    static Options parse(String[] args) {
+        Options o = new Options();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--help":     return null;
+                case "--aligned":  o.aligned = true;  continue;
+                case "--no-live":  o.live    = false; continue;
+                case "--json":     o.binary  = false; continue;
+                case "--no-gzip":  o.gzip    = false; continue;
+                default: break;
+            }
+            if (i + 1 >= args.length) throw new IllegalArgumentException("Missing value for " + arg);
+            String value = args[++i];
+            switch (arg) {
+                case "--url":       o.url        = value.replaceAll("/+$", ""); break;
+                case "--devices":   o.devices    = positive(arg, value); break;
+                case "--users":     o.users      = positive(arg, value); break;
+                case "--run-id":    o.runId      = value; break;
+                case "--duration":  o.durationMs = parseDuration(value); break;
+                case "--ramp":      o.rampMs     = parseDuration(value); break;
+                case "--interval":  o.intervalMs = Math.max(1, parseDuration(value)); break;
+                case "--network":   o.network    = NetworkPattern.parse(value); break;
+                case "--backlog":   o.backlog    = Integer.parseInt(value); break;
+                case "--trace":     o.trace      = new File(value); break;
+                case "--window":    o.window     = positive(arg, value); break;
+                case "--bandwidth": o.bandwidth  = Long.parseLong(value) * 1024; break;
+                case "--db":        o.db         = new File(value); break;
+                case "--out":       o.out        = new File(value); break;
+                case "--report":    o.reportMs   = Math.max(1_000, parseDuration(value)); break;
+                case "--seed":      o.seed       = Long.parseLong(value); break;
+                default: throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+        if (o.window > BatchUploader.MAX_IN_FLIGHT_WINDOW)
+            throw new IllegalArgumentException("--window must be at most " + BatchUploader.MAX_IN_FLIGHT_WINDOW);
+        if (o.runId == null) o.runId = Long.toString(new Random().nextInt(36 * 36 * 36 * 36), 36);
+        return o;
+    }
+
+    private static int positive(String option, String value) {
+        int n = Integer.parseInt(value);
+        if (n < 1) throw new IllegalArgumentException(option + " must be at least 1");
+        return n;
+    }
+
+    /** Parse {@code 500ms}, {@code 30s}, {@code 5m} or {@code 1h}; a bare number is seconds */
+    static long parseDuration(String text) {
+        String s = text.trim().toLowerCase(Locale.ROOT);
+        try {
+            if (s.endsWith("ms")) return Long.parseLong(s.substring(0, s.length() - 2));
+            if (s.endsWith("s"))  return (long) (Double.parseDouble(s.substring(0, s.length() - 1)) * 1_000);
+            if (s.endsWith("m"))  return (long) (Double.parseDouble(s.substring(0, s.length() - 1)) * 60_000);
+            if (s.endsWith("h"))  return (long) (Double.parseDouble(s.substring(0, s.length() - 1)) * 3_600_000);
+            return (long) (Double.parseDouble(s) * 1_000);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid duration: " + text);
+        }
+    }
+
+    // --- Run ---
+
+    private final Options   options;
+    private final LoadStats stats = new LoadStats();
+
+    private LoadGen(Options options) {
+        this.options = options;
+    }
+
+    /** @return false if nothing could be stored, e.g. the server was unreachable */
+    private boolean run() throws Exception {
+        HttpTransport transport = new JdkTransport(options.url);
+        String[]      tokens    = login(transport);
+        Fix[]         recorded  = options.trace != null ? Trace.load(options.trace) : null;
+
+        System.out.printf(Locale.ROOT, "%d devices (run %s) over %d accounts against %s for %s, a fix every %s, network %s%n",
+                          options.devices, options.runId, options.users, options.url,
+                          duration(options.durationMs), duration(options.intervalMs), options.network);
+
+        Random              random    = new Random(options.seed);
+        HttpTransport       measured  = stats.measure(transport);
+        ExecutorService     uploaders = Executors.newVirtualThreadPerTaskExecutor();
+        List<VirtualDevice> fleet     = new ArrayList<>(options.devices);
+        long                phase     = options.aligned ? 0 : -1;
+        for (int i = 0; i < options.devices; i++) {
+            Trace trace = recorded != null
+                ? Trace.replay(recorded, random.nextInt(recorded.length))
+                : Trace.synthetic(random.nextLong(), options.intervalMs);
+            long devicePhase = phase >= 0 ? phase : (long) (random.nextDouble() * options.network.cycleMs());
+            fleet.add(new VirtualDevice(String.format(Locale.ROOT, "%s-%05d", options.runId, i),
+                                        tokens[i % tokens.length], trace, devicePhase, options,
+                                        measured, uploaders, stats));
+        }
+
+        long dbAtStart = dbBytes();
+        long start     = System.nanoTime();
+        long end       = start + TimeUnit.MILLISECONDS.toNanos(options.durationMs);
+        try (ExecutorService devices = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < fleet.size(); i++) {
+                VirtualDevice device = fleet.get(i);
+                long          delay  = options.rampMs * i / fleet.size();
+                devices.submit(() -> {
+                    device.run(delay, end);
+                    return null;
+                });
+            }
+            report(start, end, fleet, dbAtStart);
+        }
+        uploaders.shutdownNow();
+
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        summary(elapsedMs, fleet, dbAtStart, dbBytes());
+        return stats.stored.get() > 0 || stats.fixes.sum() == 0;
+    }
+
+    /** Register (if needed) and log in every account, returning one token per account */
+    private String[] login(HttpTransport transport) throws IOException, JSONException {
+        String[] tokens = new String[options.users];
+        for (int u = 0; u < tokens.length; u++) {
+            byte[] credentials = new JSONObject()
+                .put("username", "loadgen-" + u)
+                .put("password", options.password)
+                .toString().getBytes(StandardCharsets.UTF_8);
+            HttpTransport.Response registered = transport.send("/auth/register", credentials, "application/json", false, null, 0);
+            if (registered.status != 201 && registered.status != 409)
+                throw new IOException("Cannot register loadgen-" + u + " at " + options.url + " (HTTP " + registered.status + ")");
+            HttpTransport.Response session = transport.send("/auth/login", credentials, "application/json", false, null, 0);
+            String token = session.body != null ? session.body.optString("token", null) : null;
+            if (token == null) throw new IOException("Cannot log in as loadgen-" + u + " (HTTP " + session.status + ")");
+            tokens[u] = token;
+        }
+        return tokens;
+    }
+
+    // --- Reporting ---
+
+    /** Print a progress line every report interval until the devices stop */
+    private void report(long start, long end, List<VirtualDevice> fleet, long dbAtStart) throws InterruptedException {
+        long interval   = TimeUnit.MILLISECONDS.toNanos(options.reportMs);
+        long next       = start + interval;
+        long lastFixes  = 0;
+        long lastStored = 0;
+        long lastDb     = dbAtStart;
+        System.out.println("  time   fixes/s  stored/s   req/s     p50      p99     p999   errors   backlog   db");
+        while (next - end <= 0) {
+            TimeUnit.NANOSECONDS.sleep(Math.max(0, next - System.nanoTime()));
+            double           seconds  = options.reportMs / 1000.0;
+            LatencyHistogram latency  = stats.batch.takeInterval();
+            long             requests = latency.count();
+            long             fixes    = stats.fixes.sum();
+            long             stored   = stats.stored.get();
+            long             failures = stats.batch.failures();
+            long             db       = dbBytes();
+            System.out.printf(Locale.ROOT, "%5ds %9.0f %9.0f %7.0f %8s %8s %8s %8.2f%% %9d   %s%n",
+                              TimeUnit.NANOSECONDS.toSeconds(next - start),
+                              (fixes - lastFixes) / seconds, (stored - lastStored) / seconds, requests / seconds,
+                              millis(latency.percentile(0.50)), millis(latency.percentile(0.99)),
+                              millis(latency.percentile(0.999)),
+                              percent(failures, stats.batch.requests.sum()), backlog(fleet),
+                              db < 0 ? "-" : bytes(db) + " (+" + bytes(Math.max(0, db - lastDb)) + ")");
+            lastFixes  = fixes;
+            lastStored = stored;
+            lastDb     = db;
+            next += interval;
+        }
+    }
+
+    private void summary(long elapsedMs, List<VirtualDevice> fleet, long dbAtStart, long dbAtEnd) throws IOException, JSONException {
+        double seconds = elapsedMs / 1000.0;
+        long   fixes   = stats.fixes.sum();
+        long   stored  = stats.stored.get();
+        System.out.println();
+        System.out.printf(Locale.ROOT, "Summary: %d devices, %.0f s%n", options.devices, seconds);
+        System.out.printf(Locale.ROOT, "  fixes generated  %,12d  %,10.0f/s%n", fixes, fixes / seconds);
+        System.out.printf(Locale.ROOT, "  records stored   %,12d  %,10.0f/s  (%,d duplicates)%n",
+                          stored, stored / seconds, stats.duplicates.get());
+        System.out.printf(Locale.ROOT, "  left queued      %,12d%n", backlog(fleet));
+        System.out.printf(Locale.ROOT, "  flushes          %,12d  %,10d failed%n", stats.flushes.sum(), stats.failedFlushes.sum());
+        printEndpoint("batch uploads", stats.batch, seconds);
+        if (options.live) printEndpoint("live positions", stats.live, seconds);
+        if (dbAtStart >= 0) {
+            long growth = dbAtEnd - dbAtStart;
+            System.out.printf(Locale.ROOT, "  server db        %s -> %s  (+%s, %s per stored record)%n",
+                              bytes(dbAtStart), bytes(dbAtEnd), bytes(growth),
+                              stored == 0 ? "-" : bytes(growth / stored));
+        }
+
+        if (options.out != null) {
+            JSONObject results = new JSONObject()
+                .put("run_id",          options.runId)
+                .put("devices",         options.devices)
+                .put("duration_ms",     elapsedMs)
+                .put("interval_ms",     options.intervalMs)
+                .put("network",         options.network.toString())
+                .put("fixes",           fixes)
+                .put("stored",          stored)
+                .put("duplicates",      stats.duplicates.get())
+                .put("left_queued",     backlog(fleet))
+                .put("flushes",         stats.flushes.sum())
+                .put("failed_flushes",  stats.failedFlushes.sum())
+                .put("batch",           stats.batch.toJson())
+                .put("live",            stats.live.toJson());
+            if (dbAtStart >= 0) results.put("db_bytes_start", dbAtStart).put("db_bytes_end", dbAtEnd);
+            Files.write(options.out.toPath(), results.toString(2).getBytes(StandardCharsets.UTF_8));
+            System.out.println("Results written to " + options.out);
+        }
+    }
+
+    private static void printEndpoint(String name, LoadStats.Endpoint e, double seconds) {
+        long requests = e.requests.sum();
+        System.out.printf(Locale.ROOT, "  %-16s %,12d  %,10.0f/s  %.2f%% failed (4xx %d, 5xx %d, no response %d)%n",
+                          name, requests, requests / seconds, percent(e.failures(), requests),
+                          e.client.sum(), e.server.sum(), e.noResponse.sum());
+        System.out.printf(Locale.ROOT, "    latency  p50 %s  p99 %s  p999 %s  max %s  mean %s%n",
+                          millis(e.total.percentile(0.50)), millis(e.total.percentile(0.99)),
+                          millis(e.total.percentile(0.999)), millis(e.total.max()), millis(e.total.mean()));
+    }
+
+    private static long backlog(List<VirtualDevice> fleet) {
+        long n = 0;
+        for (VirtualDevice device : fleet) n += device.pending();
+        return n;
+    }
+
+    /** Size of the server database including its write-ahead log, or -1 if not configured */
+    private long dbBytes() {
+        if (options.db == null) return -1;
+        File wal = new File(options.db.getPath() + "-wal");
+        return options.db.length() + wal.length();
+    }
+
+    private static double percent(long part, long whole) {
+        return whole == 0 ? 0 : 100.0 * part / whole;
+    }
+
+    private static String millis(long micros) {
+        return String.format(Locale.ROOT, "%.1fms", micros / 1000.0);
+    }
+
+    private static String duration(long ms) {
+        return ms % 1000 == 0 ? ms / 1000 + "s" : ms + "ms";
+    }
+
+    private static String bytes(long n) {
+        if (n < 1024)        return n + " B";
+        if (n < 1024 * 1024) return String.format(Locale.ROOT, "%.1f KB", n / 1024.0);
+        return String.format(Locale.ROOT, "%.1f MB", n / (1024.0 * 1024));
+    }
+}
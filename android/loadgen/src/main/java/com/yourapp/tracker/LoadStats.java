@@ -0,0 +1,79 @@
+package com.yourapp.tracker;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Counters and latencies of a load run, updated by every simulated device without locks */
+final class LoadStats {
+
+    /** Requests to one endpoint: outcomes, bytes and round-trip latency */
+    static final class Endpoint {
+        final LatencyHistogram total      = new LatencyHistogram();
+        final LongAdder        requests   = new LongAdder();
+        final LongAdder        client     = new LongAdder(); // 4xx
+        final LongAdder        server     = new LongAdder(); // 5xx
+        final LongAdder        noResponse = new LongAdder(); // connection or timeout errors
+        final LongAdder        bytesSent  = new LongAdder(); // request bodies before compression
+
+        private final AtomicReference<LatencyHistogram> interval = new AtomicReference<>(new LatencyHistogram());
+
+        void record(long startNanos, int status, int bodyBytes) {
+            long micros = (System.nanoTime() - startNanos) / 1_000;
+            total.record(micros);
+            interval.get().record(micros);
+            requests.increment();
+            bytesSent.add(bodyBytes);
+            if (status < 0)         noResponse.increment();
+            else if (status >= 500) server.increment();
+            else if (status >= 400) client.increment();
+        }
+
+        long failures() {
+            return client.sum() + server.sum() + noResponse.sum();
+        }
+
+        /** Latencies since the previous call, for the periodic report */
+        LatencyHistogram takeInterval() {
+            return interval.getAndSet(new LatencyHistogram());
+        }
+
+        JSONObject toJson() throws JSONException {
+            return new JSONObject()
+                .put("requests",    requests.sum())
+                .put("status_4xx",  client.sum())
+                .put("status_5xx",  server.sum())
+                .put("no_response", noResponse.sum())
+                .put("bytes_sent",  bytesSent.sum())
+                .put("p50_us",      total.percentile(0.50))
+                .put("p99_us",      total.percentile(0.99))
+                .put("p999_us",     total.percentile(0.999))
+                .put("max_us",      total.max())
+                .put("mean_us",     total.mean());
+        }
+    }
+
+    final Endpoint  batch         = new Endpoint(); // POST /data
+    final Endpoint  live          = new Endpoint(); // POST /data/live:<deviceId>
+    final LongAdder fixes         = new LongAdder(); // generated, including preloaded backlog
+    final LongAdder flushes       = new LongAdder();
+    final LongAdder failedFlushes = new LongAdder();
+
+    // Counted by BatchUploader itself
+    final Metrics.Counter stored     = Metrics.counter("sync.records");
+    final Metrics.Counter duplicates = Metrics.counter("sync.duplicates");
+
+    /** {@code transport}, with every upload and live request timed into {@link #batch} or {@link #live} */
+    HttpTransport measure(HttpTransport transport) {
+        return (endpoint, body, contentType, gzip, token, timeoutMs) -> {
+            Endpoint target = endpoint.equals("/data")          ? batch
+                            : endpoint.startsWith("/data/live:") ? live
+                            : null;
+            long start = System.nanoTime();
+            HttpTransport.Response response = transport.send(endpoint, body, contentType, gzip, token, timeoutMs);
+            if (target != null) target.record(start, response.status, body.length);
+            return response;
+        };
+    }
+}
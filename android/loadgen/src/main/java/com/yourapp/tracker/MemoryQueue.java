@@ -0,0 +1,88 @@
+package com.yourapp.tracker;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * {@link RecordQueue} held on the heap, standing in for a device's storage so thousands of
+ * simulated devices fit in one process. Same claim/ack/release contract as the durable queues;
+ * nothing survives the process.
+ */
+final class MemoryQueue implements RecordQueue {
+
+    private final ArrayDeque<Record> records  = new ArrayDeque<>(); // oldest first, guarded by this
+    private final QueueCounters      counters = new QueueCounters();
+    private long                     nextId   = 1;
+    private long                     claimedUpTo;
+
+    @Override
+    public synchronized void enqueue(String key, byte[] payload) {
+        Record r = new Record();
+        r.id      = nextId++;
+        r.key     = key;
+        r.payload = payload;
+        records.add(r);
+        counters.enqueued(QueueCounters.sizeOf(key, payload));
+    }
+
+    @Override
+    public void enqueueFix(String keyPrefix, long seq, Fix fix) {
+        enqueue(keyPrefix + seq, FixCodec.encode(fix));
+    }
+
+    @Override
+    public void commit() {
+        // nothing to make durable
+    }
+
+    @Override
+    public synchronized List<Record> claim(int limit) {
+        List<Record> claimed = new ArrayList<>(Math.min(limit, records.size()));
+        for (Record r : records) {
+            if (claimed.size() >= limit) break;
+            if (r.id <= claimedUpTo) continue;
+            claimed.add(r);
+        }
+        if (!claimed.isEmpty()) claimedUpTo = claimed.get(claimed.size() - 1).id;
+        counters.claimed(claimed.size());
+        return claimed;
+    }
+
+    @Override
+    public synchronized void ack(long upToId) {
+        long n     = 0;
+        long bytes = 0;
+        for (Iterator<Record> it = records.iterator(); it.hasNext(); ) {
+            Record r = it.next();
+            if (r.id > upToId) break;
+            bytes += QueueCounters.sizeOf(r.key, r.payload);
+            n++;
+            it.remove();
+        }
+        counters.acked(n, bytes);
+    }
+
+    @Override
+    public synchronized void release() {
+        Record oldest = records.peekFirst();
+        claimedUpTo = oldest == null ? nextId - 1 : oldest.id - 1;
+        counters.released();
+    }
+
+    @Override
+    public int pendingCount() {
+        return counters.pendingCount();
+    }
+
+    @Override
+    public Stats stats() {
+        return counters.snapshot();
+    }
+
+    @Override
+    public synchronized void close() {
+        records.clear();
+    }
+}
@@ -0,0 +1,78 @@
+package com.yourapp.tracker;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A repeating schedule of network conditions, e.g. {@code wifi:5m,offline:1m,cellular:2m}.
+ * Each simulated device walks the cycle from its own phase, so reconnects are spread over the
+ * fleet unless the devices are started aligned.
+ */
+final class NetworkPattern {
+
+    private static final NetworkState WIFI     = new NetworkState(true, true,  false, NetworkState.Transport.WIFI);
+    private static final NetworkState ETHERNET = new NetworkState(true, true,  false, NetworkState.Transport.ETHERNET);
+    private static final NetworkState CELLULAR = new NetworkState(true, true,  true,  NetworkState.Transport.CELLULAR);
+    private static final NetworkState PORTAL   = new NetworkState(true, false, false, NetworkState.Transport.WIFI);
+
+    private final NetworkState[] states;
+    private final long[]         endsAt; // cumulative end of each phase within the cycle, ms
+    private final String         spec;
+
+    private NetworkPattern(List<NetworkState> states, List<Long> durations, String spec) {
+        this.states = states.toArray(new NetworkState[0]);
+        this.endsAt = new long[durations.size()];
+        this.spec   = spec;
+        long end = 0;
+        for (int i = 0; i < endsAt.length; i++) endsAt[i] = end += durations.get(i);
+    }
+
+    /**
+     * Parse a comma-separated list of {@code state:duration} phases. States are {@code wifi},
+     * {@code ethernet}, {@code cellular} (metered), {@code portal} (connected, not validated) and
+     * {@code offline}; durations as in {@link LoadGen#parseDuration}.
+     */
+    static NetworkPattern parse(String spec) {
+        List<NetworkState> states    = new ArrayList<>();
+        List<Long>         durations = new ArrayList<>();
+        for (String phase : spec.split(",")) {
+            int colon = phase.indexOf(':');
+            if (colon < 0) throw new IllegalArgumentException("Network phase without a duration: " + phase);
+            long duration = LoadGen.parseDuration(phase.substring(colon + 1));
+            if (duration <= 0) throw new IllegalArgumentException("Network phase must last longer than 0: " + phase);
+            states.add(state(phase.substring(0, colon).trim()));
+            durations.add(duration);
+        }
+        return new NetworkPattern(states, durations, spec);
+    }
+
+    private static NetworkState state(String name) {
+        switch (name) {
+            case "wifi":     return WIFI;
+            case "ethernet": return ETHERNET;
+            case "cellular": return CELLULAR;
+            case "portal":   return PORTAL;
+            case "offline":  return NetworkState.OFFLINE;
+            default: throw new IllegalArgumentException("Unknown network state: " + name);
+        }
+    }
+
+    /** Length of one cycle, ms */
+    long cycleMs() {
+        return endsAt[endsAt.length - 1];
+    }
+
+    /** The network {@code elapsedMs} into the pattern */
+    NetworkState at(long elapsedMs) {
+        long t = Math.floorMod(elapsedMs, cycleMs());
+        for (int i = 0; i < endsAt.length; i++) {
+            if (t < endsAt[i]) return states[i];
+        }
+        return states[states.length - 1];
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+}
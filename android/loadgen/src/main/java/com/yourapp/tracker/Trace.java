@@ -0,0 +1,109 @@
+package com.yourapp.tracker;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/** The fixes a simulated device reports: a synthetic drive, or a recorded track replayed back and forth */
+abstract class Trace {
+
+    /** Fill {@code into} with the next fix, stamped {@code time} */
+    abstract void next(Fix into, long time);
+
+    /**
+     * An endless drive from a random start near Vienna: straight stretches, a turn every five
+     * minutes and a minute standing still every ten, with a few metres of GPS noise.
+     */
+    static Trace synthetic(long seed, long intervalMs) {
+        return new Synthetic(seed, intervalMs);
+    }
+
+    /**
+     * Replay {@code fixes} from {@code offset} on, forwards and then backwards, so the position
+     * never jumps from the end of the track back to its start.
+     */
+    static Trace replay(Fix[] fixes, int offset) {
+        return new Replay(fixes, offset);
+    }
+
+    /**
+     * Read a recorded track: one fix per line in the JSON form the server stores
+     * ({@code timestamp, lat, lng, accuracy_m, ...}). Blank lines are skipped.
+     */
+    static Fix[] load(File file) throws IOException {
+        List<Fix> fixes = new ArrayList<>();
+        try (BufferedReader in = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.trim().isEmpty()) continue;
+                fixes.add(FixJson.fromJson(new JSONObject(line)));
+            }
+        } catch (JSONException e) {
+            throw new IOException("Malformed fix in " + file + ": " + e.getMessage(), e);
+        }
+        if (fixes.isEmpty()) throw new IOException("No fixes in " + file);
+        return fixes.toArray(new Fix[0]);
+    }
+
+    private static final class Synthetic extends Trace {
+        private final Random random;
+        private final double stepSeconds;
+        private double       lat;
+        private double       lng;
+        private double       bearing;
+        private long         step;
+
+        Synthetic(long seed, long intervalMs) {
+            this.random      = new Random(seed);
+            this.stepSeconds = intervalMs / 1000.0;
+            this.lat         = 48.2082 + (random.nextDouble() - 0.5) * 0.2;
+            this.lng         = 16.3738 + (random.nextDouble() - 0.5) * 0.3;
+            this.bearing     = random.nextInt(360);
+        }
+
+        @Override
+        void next(Fix into, long time) {
+            double elapsed = step++ * stepSeconds;
+            if (elapsed % 300 < stepSeconds) bearing = (bearing + 60 + random.nextInt(60)) % 360; // a turn
+            boolean stopped = elapsed % 600 >= 540;                                            // a minute at lights
+            double  v       = stopped ? 0 : Math.max(0, 12 + random.nextGaussian());
+            lat += v * stepSeconds * Math.cos(Math.toRadians(bearing)) / 111_320;
+            lng += v * stepSeconds * Math.sin(Math.toRadians(bearing)) / (111_320 * Math.cos(Math.toRadians(lat)));
+
+            into.time     = time;
+            into.lat      = lat + random.nextGaussian() * 3 / 111_320;
+            into.lng      = lng + random.nextGaussian() * 3 / 111_320;
+            into.accuracy = 4 + random.nextFloat() * 8;
+            into.altitude = 170 + random.nextGaussian();
+            into.speed    = (float) v;
+            into.bearing  = (float) bearing;
+        }
+    }
+
+    private static final class Replay extends Trace {
+        private final Fix[] fixes;
+        private int         index;
+        private int         direction = 1;
+
+        Replay(Fix[] fixes, int offset) {
+            this.fixes = fixes;
+            this.index = Math.floorMod(offset, fixes.length);
+        }
+
+        @Override
+        void next(Fix into, long time) {
+            into.set(fixes[index]);
+            into.time = time;
+            if (fixes.length == 1) return;
+            if (index + direction < 0 || index + direction >= fixes.length) direction = -direction;
+            index += direction;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.yourapp.tracker;
+
+import org.json.JSONException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One simulated phone: reports a fix every interval into its own queue and syncs it the way
+ * SyncManager does, with the real {@link FlushScheduler}, {@link SyncPolicy} and
+ * {@link BatchUploader}. Only storage ({@link MemoryQueue}) and the network
+ * ({@link NetworkPattern}) are simulated.
+ */
+final class VirtualDevice {
+
+    private final String                   deviceId;
+    private final String                   keyPrefix;
+    private final String                   token;
+    private final Trace                    trace;
+    private final NetworkPattern           pattern;
+    private final long                     phaseMs;     // where in the pattern this device starts
+    private final LoadGen.Options          options;
+    private final HttpTransport            transport;
+    private final ExecutorService          uploaders;
+    private final LoadStats                stats;
+    private final MemoryQueue              queue   = new MemoryQueue();
+    private final SyncPolicy               policy  = new SyncPolicy();
+    private final ScheduledExecutorService flusher;
+    private final BatchUploader            uploader;
+    private final FlushScheduler           scheduler;
+    private final AtomicBoolean            liveSending = new AtomicBoolean();
+    private final Fix                      fix         = new Fix();
+
+    private volatile NetworkState network = NetworkState.OFFLINE;
+    private volatile long         waitingSince;  // elapsed ms of the first unsynced fix, 0 if none
+    private long                  seq;
+
+    VirtualDevice(String deviceId, String token, Trace trace, long phaseMs, LoadGen.Options options,
+                  HttpTransport transport, ExecutorService uploaders, LoadStats stats) {
+        this.deviceId  = deviceId;
+        this.keyPrefix = "gps:" + deviceId + ":";
+        this.token     = token;
+        this.trace     = trace;
+        this.pattern   = options.network;
+        this.phaseMs   = phaseMs;
+        this.options   = options;
+        this.transport = transport;
+        this.uploaders = uploaders;
+        this.stats     = stats;
+        this.flusher   = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("flush-" + deviceId).factory());
+        this.uploader  = new BatchUploader(queue, transport, uploaders, new ByteBudget(options.bandwidth), deviceId);
+        this.scheduler = new FlushScheduler(flusher, this::flush, queue::pendingCount);
+        uploader.setInFlightWindow(options.window);
+        uploader.setBinaryUploads(options.binary);
+        uploader.setGzipUploads(options.gzip);
+    }
+
+    /**
+     * Report fixes until {@code endNanos}, starting {@code startDelayMs} in. Blocks; run it on a
+     * virtual thread. Uploads already in flight at the end are abandoned.
+     */
+    void run(long startDelayMs, long endNanos) throws InterruptedException {
+        long interval = TimeUnit.MILLISECONDS.toNanos(options.intervalMs);
+        long started  = System.nanoTime();
+        long next     = started + TimeUnit.MILLISECONDS.toNanos(startDelayMs);
+        try {
+            TimeUnit.NANOSECONDS.sleep(next - started);
+            preloadBacklog();
+            while (next - endNanos < 0) {
+                long now = System.nanoTime();
+                onNetwork(pattern.at(phaseMs + TimeUnit.NANOSECONDS.toMillis(now - started)));
+                report();
+                next += interval;
+                long wait = next - System.nanoTime();
+                if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+            }
+        } finally {
+            flusher.shutdownNow();
+        }
+    }
+
+    /** Records still waiting for upload */
+    int pending() {
+        return queue.pendingCount();
+    }
+
+    // --- Fixes ---
+
+    /** Start with {@link LoadGen.Options#backlog} fixes from before the run, as after a long offline spell */
+    private void preloadBacklog() {
+        int  n   = options.backlog;
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < n; i++) {
+            trace.next(fix, now - (long) (n - i) * options.intervalMs);
+            queue.enqueueFix(keyPrefix, ++seq, fix);
+        }
+        stats.fixes.add(n);
+        if (n > 0) waitingSince = elapsedMs();
+    }
+
+    private void report() {
+        trace.next(fix, System.currentTimeMillis());
+        queue.enqueueFix(keyPrefix, ++seq, fix);
+        stats.fixes.increment();
+        if (options.live && policy.plan(network, 0).live) publishLive();
+        if (waitingSince == 0) waitingSince = elapsedMs();
+        scheduler.request();
+    }
+
+    /** Send the newest position on its own, like the app's live lane; skipped while one is still in flight */
+    private void publishLive() {
+        if (!liveSending.compareAndSet(false, true)) return;
+        byte[] body;
+        try {
+            body = FixJson.toJson(fix, deviceId).toString().getBytes(StandardCharsets.UTF_8);
+        } catch (JSONException e) {
+            liveSending.set(false);
+            return;
+        }
+        uploaders.execute(() -> {
+            try {
+                transport.send("/data/live:" + deviceId, body, "application/json", false, token, 0);
+            } finally {
+                liveSending.set(false);
+            }
+        });
+    }
+
+    // --- Sync, as in SyncManager ---
+
+    private void onNetwork(NetworkState current) {
+        NetworkState previous = network;
+        if (current == previous) return;
+        network = current;
+        if (!current.usable()) return;
+        if (!previous.usable() || (previous.metered && !current.metered)) scheduler.requestNow();
+    }
+
+    private boolean flush() {
+        SyncPolicy.Plan plan = policy.plan(network, historyWaitingMs());
+        if (!plan.history) return true; // nothing to retry until the network changes
+
+        BatchUploader.Result result = uploader.upload(token, plan, null);
+        if (Thread.currentThread().isInterrupted()) return false; // abandoned at the end of the run
+        stats.flushes.increment();
+        if (!result.failed) {
+            waitingSince = 0;
+            return true;
+        }
+        stats.failedFlushes.increment();
+        return false;
+    }
+
+    private long historyWaitingMs() {
+        long since = waitingSince;
+        return queue.pendingCount() == 0 || since == 0 ? 0 : elapsedMs() - since;
+    }
+
+    private static long elapsedMs() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+}
@@ -0,0 +1,157 @@
+// Decoder for the binary batch uploads sent by the Android app.
+// Layouts are documented in WireFormat.java, FixCodec.java and TripCodec.java.
+
+const FIXES_CONTENT_TYPE = 'application/vnd.cloudtracker.fixes';
+
+const FIX_VERSION = 1;
+const TYPE_FIX = 1;
+const FIX_HEADER = FIX_VERSION << 4 | TYPE_FIX;
+const TYPE_TRIP = 2;
+const TRIP_HEADER = FIX_VERSION << 4 | TYPE_TRIP;
+const RAW_RECORD = 0;
+const EPOCH_BASE_MS = 1577836800000; // 2020-01-01T00:00:00Z
+const COORD_SCALE = 1e7;
+
+class Reader {
+    constructor(buf) {
+        this.buf = buf;
+        this.pos = 0;
+    }
+
+    byte() {
+        if (this.pos >= this.buf.length) throw new Error('Truncated body');
+        return this.buf[this.pos++];
+    }
+
+    int32() {
+        if (this.pos + 4 > this.buf.length) throw new Error('Truncated body');
+        const v = this.buf.readInt32BE(this.pos);
+        this.pos += 4;
+        return v;
+    }
+
+    // Little-endian base-128; plain arithmetic keeps values above 2^32 exact
+    varint() {
+        let value = 0, scale = 1, b;
+        do {
+            if (scale > 2 ** 49) throw new Error('Malformed varint');
+            b = this.byte();
+            value += (b & 0x7f) * scale;
+            scale *= 128;
+        } while (b & 0x80);
+        return value;
+    }
+
+    signedVarint() {
+        const v = this.varint();
+        return v % 2 ? -(v + 1) / 2 : v / 2;
+    }
+
+    bytes(length) {
+        if (this.pos + length > this.buf.length) throw new Error('Truncated body');
+        const out = this.buf.subarray(this.pos, this.pos + length);
+        this.pos += length;
+        return out;
+    }
+
+    string() {
+        return this.bytes(this.varint()).toString('utf8');
+    }
+}
+
+// One encoded fix or trip -> the JSON value the app stores under its key
+function decodeRecord(payload, deviceId) {
+    const r = new Reader(payload);
+    const header = r.byte();
+    if (header === TRIP_HEADER) return decodeTrip(r, deviceId);
+    if (header !== FIX_HEADER)
+        throw new Error(`Unsupported record header ${header}`);
+    return {
+        timestamp: r.signedVarint() + EPOCH_BASE_MS,
+        device_id: deviceId,
+        lat: r.int32() / COORD_SCALE,
+        lng: r.int32() / COORD_SCALE,
+        accuracy_m: r.varint() / 10,
+        altitude_m: r.signedVarint() / 10,
+        speed_ms: r.varint() / 100,
+        bearing: r.varint() / 10,
+    };
+}
+
+// A trip summary, in the same JSON form the app uploads for it (TripJson.java)
+function decodeTrip(r, deviceId) {
+    const start = r.signedVarint() + EPOCH_BASE_MS;
+    const durationMs = r.varint();
+    const trip = {
+        type: 'trip',
+        device_id: deviceId,
+        start_time: start,
+        end_time: start + durationMs,
+        start_lat: r.int32() / COORD_SCALE,
+        start_lng: r.int32() / COORD_SCALE,
+        end_lat: r.int32() / COORD_SCALE,
+        end_lng: r.int32() / COORD_SCALE,
+    };
+    const decimetres = r.varint();
+    trip.distance_m = decimetres / 10;
+    trip.duration_s = Math.floor(durationMs / 1000);
+    trip.moving_s = Math.floor(r.varint() / 1000);
+    trip.max_speed_ms = r.varint() / 100;
+    trip.avg_speed_ms = durationMs > 0 ? Math.round(decimetres * 10000 / durationMs) / 100 : 0;
+    trip.points = r.varint();
+    return trip;
+}
+
+// Batch body -> [{ key, value }]; a record that fails to decode keeps value undefined
+// so it is rejected on its own instead of failing the whole batch.
+// Version 1 sends every record verbatim; version 2 delta-codes consecutive fixes.
+function decodeBatch(body) {
+    const r = new Reader(body);
+    const version = r.byte();
+    if (version !== 1 && version !== 2) throw new Error(`Unsupported wire version ${version}`);
+
+    const deviceId = r.string();
+    const prefix = r.string();
+    const count = r.varint();
+    const records = [];
+    const prev = { time: EPOCH_BASE_MS, lat: 0, lng: 0, alt: 0 };
+    for (let i = 0; i < count; i++) {
+        const key = prefix + r.string();
+        const header = version === 1 ? RAW_RECORD : r.byte();
+        if (header === FIX_HEADER) {
+            records.push({ key, value: decodeDelta(r, prev, deviceId) });
+        } else if (header === RAW_RECORD) {
+            const payload = r.bytes(r.varint());
+            let value;
+            try {
+                value = decodeRecord(payload, deviceId);
+            } catch {
+                value = undefined;
+            }
+            records.push({ key, value });
+        } else {
+            throw new Error(`Unsupported record header ${header}`); // cannot skip unknown layouts
+        }
+    }
+    return records;
+}
+
+// One delta-coded fix of a version 2 batch; updates prev for the next one
+function decodeDelta(r, prev, deviceId) {
+    prev.time += r.signedVarint();
+    prev.lat += r.signedVarint();
+    prev.lng += r.signedVarint();
+    prev.alt += r.signedVarint();
+    return {
+        timestamp: prev.time,
+        device_id: deviceId,
+        lat: prev.lat / COORD_SCALE,
+        lng: prev.lng / COORD_SCALE,
+        accuracy_m: r.varint() / 10,
+        altitude_m: prev.alt / 10,
+        speed_ms: r.varint() / 100,
+        bearing: r.varint() / 10,
+    };
+}
+
+module.exports = { FIXES_CONTENT_TYPE, decodeBatch, decodeRecord };
@@ -2,16 +2,26 @@ const express = require('express');
 const jwt = require('jsonwebtoken');
 const bcrypt = require('bcrypt');
 const Database = require('better-sqlite3');
+const zlib = require('zlib');
+const { FIXES_CONTENT_TYPE, decodeBatch } = require('./codec');
 
 const app = express();
 const db = new Database('cloud.db');
-app.use(express.json());
+// Bulk uploads carry up to MAX_BATCH_RECORDS records; gzip/deflate request bodies
+// (Content-Encoding) are inflated by the body parsers
+app.use(express.json({ limit: '5mb' }));
 
 const cors = require('cors');
 app.use(cors()); // ← add this right after app.use(express.json())
 
 
 const SECRET = process.env.JWT_SECRET || 'change-me-in-production';
+const MAX_BATCH_RECORDS = 1000;
+const DEFAULT_TRACK_PAGE = 1000;  // points per /tracks response unless ?limit= asks otherwise
+const MAX_TRACK_PAGE = 10000;
+const TOKEN_LIFETIME = '24h';
+const REFRESH_GRACE_SECONDS = 7 * 24 * 3600; // how long after expiry a token can still be refreshed
+const MAX_SESSION_SECONDS = 30 * 24 * 3600;  // how long refreshing can extend one login
 
 
 
@@ -30,11 +40,90 @@ db.exec(`
         key TEXT NOT NULL,
         value TEXT NOT NULL,
         updated_at DATETIME DEFAULT CURRENT_TIMESTAMP,
+        device_id TEXT,     -- gps: records only, from the value; indexed for /tracks
+        ts INTEGER,         -- gps: records only, the fix time in epoch millis
         FOREIGN KEY (user_id) REFERENCES users(id),
         UNIQUE(user_id, key)
     );
 `);
 
+// Schema changes since the first release, applied in order; user_version counts those applied
+const migrations = [
+    // 1: device and fix time as columns, so tracks are read by index instead of key by key
+    () => {
+        const columns = db.prepare('PRAGMA table_info(data_store)').all().map(c => c.name);
+        if (!columns.includes('device_id')) db.exec('ALTER TABLE data_store ADD COLUMN device_id TEXT');
+        if (!columns.includes('ts')) db.exec('ALTER TABLE data_store ADD COLUMN ts INTEGER');
+        db.exec(`
+            UPDATE data_store
+            SET device_id = json_extract(value, '$.device_id'), ts = json_extract(value, '$.timestamp')
+            WHERE key >= 'gps:' AND key < 'gps;';
+
+            CREATE INDEX IF NOT EXISTS data_store_track ON data_store (user_id, device_id, ts)
+                WHERE device_id IS NOT NULL;
+            CREATE INDEX IF NOT EXISTS data_store_points ON data_store (user_id)
+                WHERE device_id IS NOT NULL; -- entries in row id order, for ?since= cursors
+            CREATE INDEX IF NOT EXISTS data_store_updated ON data_store (user_id, updated_at);
+        `);
+    },
+];
+
+db.transaction(() => {
+    const applied = db.pragma('user_version', { simple: true });
+    migrations.slice(applied).forEach(migrate => migrate());
+    db.pragma(`user_version = ${migrations.length}`);
+})();
+
+const upsertValue = db.prepare(`
+    INSERT INTO data_store (user_id, key, value, device_id, ts)
+    VALUES (?, ?, ?, ?, ?)
+    ON CONFLICT(user_id, key) DO UPDATE SET
+        value = excluded.value, device_id = excluded.device_id, ts = excluded.ts, updated_at = CURRENT_TIMESTAMP
+`);
+
+// Batch records are immutable: their keys are idempotency keys, so a replayed record is
+// acknowledged again without being written twice
+const insertValueOnce = db.prepare(`
+    INSERT INTO data_store (user_id, key, value, device_id, ts)
+    VALUES (?, ?, ?, ?, ?)
+    ON CONFLICT(user_id, key) DO NOTHING
+`);
+
+// The indexed track columns of a record: device and fix time for GPS points, nulls otherwise
+function trackColumns(key, value) {
+    if (!key.startsWith('gps:') || !value || typeof value.device_id !== 'string' || !Number.isFinite(value.timestamp))
+        return [null, null];
+    return [value.device_id, Math.trunc(value.timestamp)];
+}
+
+// Writes a whole batch in one transaction; returns one result per record, in order
+const writeBatch = db.transaction((userId, records) => records.map(record => {
+    if (!record || typeof record.key !== 'string' || !record.key || record.value === undefined)
+        return { key: record?.key ?? null, success: false, error: 'key and value required' };
+    const { changes } = insertValueOnce.run(userId, record.key, JSON.stringify(record.value),
+                                            ...trackColumns(record.key, record.value));
+    return changes ? { key: record.key, success: true } : { key: record.key, success: true, duplicate: true };
+}));
+
+// Large JSON responses are gzipped for clients that accept it
+function sendJson(req, res, body) {
+    sendJsonText(req, res, JSON.stringify(body));
+}
+
+// Same for a response already serialized, e.g. assembled from stored values without parsing them
+function sendJsonText(req, res, json) {
+    res.type('application/json');
+    if (json.length < 1024 || !req.acceptsEncodings('gzip'))
+        return res.send(json);
+    res.set({ 'Content-Encoding': 'gzip', 'Vary': 'Accept-Encoding' });
+    res.send(zlib.gzipSync(json));
+}
+
+// authTime is when the user last gave their password (epoch seconds); refreshed tokens carry it over
+function issueToken(userId, authTime = Math.floor(Date.now() / 1000)) {
+    return jwt.sign({ userId, auth_time: authTime }, SECRET, { expiresIn: TOKEN_LIFETIME });
+}
+
 // --- Auth Middleware ---
 function authenticate(req, res, next) {
     const token = req.headers.authorization?.split(' ')[1];
@@ -77,23 +166,62 @@ app.post('/auth/login', async (req, res) => {
     if (!user || !(await bcrypt.compare(password, user.password_hash)))
         return res.status(401).json({ error: 'Invalid credentials' });
 
-    const token = jwt.sign({ userId: user.id }, SECRET, { expiresIn: '24h' });
-    res.json({ token });
+    res.json({ token: issueToken(user.id) });
+});
+
+// Refresh: trade a valid or recently expired token for a new one, without the password,
+// until MAX_SESSION_SECONDS after the login that started the chain
+app.post('/auth/refresh', (req, res) => {
+    const token = req.headers.authorization?.split(' ')[1];
+    if (!token) return res.status(401).json({ error: 'No token provided' });
+
+    let claims;
+    try {
+        claims = jwt.verify(token, SECRET, { ignoreExpiration: true });
+    } catch {
+        return res.status(401).json({ error: 'Invalid token' });
+    }
+    const now = Date.now() / 1000;
+    if (!claims.exp || claims.exp + REFRESH_GRACE_SECONDS < now)
+        return res.status(401).json({ error: 'Token too old to refresh, log in again' });
+    const authTime = claims.auth_time ?? claims.iat; // tokens from before auth_time start their session at issue
+    if (!authTime || authTime + MAX_SESSION_SECONDS < now)
+        return res.status(401).json({ error: 'Session expired, log in again' });
+
+    const user = db.prepare('SELECT id FROM users WHERE id = ?').get(claims.userId);
+    if (!user) return res.status(401).json({ error: 'Unknown user' });
+    res.json({ token: issueToken(user.id, authTime) });
 });
 
 // --- Data Routes ---
 
 // Store JSON at key
 app.post('/data/:key', authenticate, (req, res) => {
-    const value = JSON.stringify(req.body);
-    db.prepare(`
-        INSERT INTO data_store (user_id, key, value)
-        VALUES (?, ?, ?)
-        ON CONFLICT(user_id, key) DO UPDATE SET value = excluded.value, updated_at = CURRENT_TIMESTAMP
-    `).run(req.user.userId, req.params.key, value);
+    upsertValue.run(req.user.userId, req.params.key, JSON.stringify(req.body),
+                    ...trackColumns(req.params.key, req.body));
     res.json({ success: true });
 });
 
+// Store many JSON values at once: { records: [{ key, value }, ...] },
+// or a binary batch of encoded GPS fixes (Content-Type: application/vnd.cloudtracker.fixes)
+app.post('/data', authenticate, express.raw({ type: FIXES_CONTENT_TYPE, limit: '5mb' }), (req, res) => {
+    let records = req.body?.records;
+    if (Buffer.isBuffer(req.body)) {
+        try {
+            records = decodeBatch(req.body);
+        } catch (err) {
+            return res.status(400).json({ error: `Invalid batch: ${err.message}` });
+        }
+    }
+    if (!Array.isArray(records))
+        return res.status(400).json({ error: 'records array required' });
+    if (records.length > MAX_BATCH_RECORDS)
+        return res.status(413).json({ error: `At most ${MAX_BATCH_RECORDS} records per batch` });
+
+    const results = writeBatch(req.user.userId, records);
+    sendJson(req, res, { success: results.every(r => r.success), results });
+});
+
 // Retrieve JSON by key
 app.get('/data/:key', authenticate, (req, res) => {
     const row = db.prepare('SELECT value FROM data_store WHERE user_id = ? AND key = ?')
@@ -117,6 +245,156 @@ app.delete('/data/:key', authenticate, (req, res) => {
     res.json({ success: true });
 });
 
+// --- Track Routes ---
+// Read GPS points through the (user, device, fix time) index instead of one GET /data/:key each.
+// Points are returned as stored, spliced into the response without parsing them.
+
+const trackSummaries = db.prepare(`
+    SELECT device_id, COUNT(*) AS points, MIN(ts) AS first_ts, MAX(ts) AS last_ts
+    FROM data_store WHERE user_id = ? AND device_id IS NOT NULL
+    GROUP BY device_id ORDER BY device_id
+`);
+const livePositions = db.prepare(`
+    SELECT value FROM data_store WHERE user_id = ? AND key >= 'live:' AND key < 'live;'
+`).pluck();
+// Row ids only grow, so the newest one across all users is a valid cursor for any of them
+const latestRowId = db.prepare('SELECT MAX(id) FROM data_store').pluck();
+
+// One page of a device's track in fix time order; (ts, id) after the previous page's last point
+const trackPage = db.prepare(`
+    SELECT id, ts, value FROM data_store
+    WHERE user_id = ? AND device_id = ? AND ts >= ? AND ts <= ? AND (ts > ? OR (ts = ? AND id > ?))
+    ORDER BY ts, id LIMIT ?
+`);
+// The first point of each bucketMs-wide time bucket. JS numbers are bound as REAL, so the bucket
+// number is truncated explicitly; a real division would put every point in a bucket of its own.
+const trackSampled = db.prepare(`
+    SELECT MIN(ts) AS ts, value FROM data_store
+    WHERE user_id = ? AND device_id = ? AND ts >= ? AND ts <= ?
+    GROUP BY CAST((ts - ?) / ? AS INTEGER) ORDER BY ts LIMIT ?
+`);
+const trackRange = db.prepare(`
+    SELECT MIN(ts) AS first_ts, MAX(ts) AS last_ts FROM data_store
+    WHERE user_id = ? AND device_id = ? AND ts >= ? AND ts <= ?
+`);
+// Points stored after a cursor (a row id), in storage order, for incremental polling
+const pointsSince = db.prepare(`
+    SELECT id, value FROM data_store
+    WHERE user_id = ? AND id > ? AND device_id IS NOT NULL
+    ORDER BY id LIMIT ?
+`);
+
+// A non-negative integer query parameter, or the fallback if absent; undefined if malformed
+function intParam(value, fallback) {
+    if (value === undefined || value === '') return fallback;
+    const n = Number(value);
+    return Number.isSafeInteger(n) && n >= 0 ? n : undefined;
+}
+
+function pageLimit(value) {
+    const limit = intParam(value, DEFAULT_TRACK_PAGE);
+    return limit === undefined || limit === 0 ? undefined : Math.min(limit, MAX_TRACK_PAGE);
+}
+
+// Devices with stored points: count and time span of each, the live positions, and a cursor
+// for GET /tracks?since= polling. With ?since=<cursor>: the points stored after it instead.
+app.get('/tracks', authenticate, (req, res) => {
+    const userId = req.user.userId;
+    if (req.query.since === undefined) {
+        return sendJson(req, res, {
+            devices: trackSummaries.all(userId),
+            live: livePositions.all(userId).map(JSON.parse),
+            cursor: latestRowId.get() ?? 0,
+        });
+    }
+
+    const since = intParam(req.query.since);
+    const limit = pageLimit(req.query.limit);
+    if (since === undefined || limit === undefined)
+        return res.status(400).json({ error: 'since and limit must be non-negative integers' });
+
+    const rows = pointsSince.all(userId, since, limit);
+    const cursor = rows.length ? rows[rows.length - 1].id : since;
+    sendJsonText(req, res,
+        `{"points":[${rows.map(r => r.value).join(',')}],"live":[${livePositions.all(userId).join(',')}],` +
+        `"cursor":${cursor},"more":${rows.length === limit}}`);
+});
+
+// A device's points between ?from= and ?to= (epoch millis, inclusive), oldest first, in pages
+// of ?limit=; pass the returned next cursor as ?after= for the following page. With
+// ?max_points=N the range is instead thinned to at most N points, the first of each of N
+// equal time buckets, in a single response.
+app.get('/tracks/:deviceId', authenticate, (req, res) => {
+    const userId = req.user.userId;
+    const deviceId = req.params.deviceId;
+    const from = intParam(req.query.from, 0);
+    const to = intParam(req.query.to, Number.MAX_SAFE_INTEGER);
+    const limit = pageLimit(req.query.limit);
+    const maxPoints = intParam(req.query.max_points, 0);
+    if (from === undefined || to === undefined || limit === undefined || maxPoints === undefined)
+        return res.status(400).json({ error: 'from, to, limit and max_points must be non-negative integers' });
+
+    if (maxPoints > 0) {
+        const range = trackRange.get(userId, deviceId, from, to);
+        if (range.first_ts === null)
+            return sendJsonText(req, res, `{"device_id":${JSON.stringify(deviceId)},"points":[],"next":null}`);
+        const points = Math.min(maxPoints, MAX_TRACK_PAGE);
+        const bucketMs = Math.max(1, Math.ceil((range.last_ts - range.first_ts + 1) / points));
+        const rows = trackSampled.all(userId, deviceId, range.first_ts, range.last_ts, range.first_ts, bucketMs, points);
+        return sendJsonText(req, res,
+            `{"device_id":${JSON.stringify(deviceId)},"points":[${rows.map(r => r.value).join(',')}],` +
+            `"bucket_ms":${bucketMs},"next":null}`);
+    }
+
+    // after = "<ts>:<id>" of the last point already received
+    let afterTs = -1, afterId = 0;
+    if (req.query.after !== undefined) {
+        const match = /^(\d+):(\d+)$/.exec(req.query.after);
+        if (!match) return res.status(400).json({ error: 'after must be a cursor from a previous page' });
+        afterTs = Number(match[1]);
+        afterId = Number(match[2]);
+    }
+
+    const rows = trackPage.all(userId, deviceId, from, to, afterTs, afterTs, afterId, limit);
+    const last = rows[rows.length - 1];
+    const next = rows.length === limit ? `"${last.ts}:${last.id}"` : 'null';
+    sendJsonText(req, res,
+        `{"device_id":${JSON.stringify(deviceId)},"points":[${rows.map(r => r.value).join(',')}],"next":${next}}`);
+});
+
+// --- Trip Routes ---
+// Trip summaries computed on the device, stored under trip:<deviceId>:<start millis>. Start times
+// are 13 digits from 2001 to 2286, so key order is device, then time, and a range of trips is a
+// range scan of the (user_id, key) index.
+
+const allTrips = db.prepare(`
+    SELECT value FROM data_store WHERE user_id = ? AND key >= 'trip:' AND key < 'trip;' ORDER BY key
+`).pluck();
+const deviceTrips = db.prepare(`
+    SELECT value FROM data_store WHERE user_id = ? AND key >= ? AND key <= ? ORDER BY key
+`).pluck();
+
+function tripKey(deviceId, millis) {
+    return `trip:${deviceId}:${String(millis).padStart(13, '0')}`;
+}
+
+// Every trip of every device, by device and start time
+app.get('/trips', authenticate, (req, res) => {
+    sendJsonText(req, res, `{"trips":[${allTrips.all(req.user.userId).join(',')}]}`);
+});
+
+// A device's trips that started between ?from= and ?to= (epoch millis, inclusive), oldest first
+app.get('/trips/:deviceId', authenticate, (req, res) => {
+    const deviceId = req.params.deviceId;
+    const from = intParam(req.query.from, 0);
+    const to = intParam(req.query.to, 9999999999999);
+    if (from === undefined || to === undefined)
+        return res.status(400).json({ error: 'from and to must be non-negative integers' });
+
+    const rows = deviceTrips.all(req.user.userId, tripKey(deviceId, from), tripKey(deviceId, to));
+    sendJsonText(req, res, `{"device_id":${JSON.stringify(deviceId)},"trips":[${rows.join(',')}]}`);
+});
+
 // --- Start ---
 const PORT = process.env.PORT || 3000;
 app.listen(PORT, () => console.log(`CloudTracker server running on port ${PORT}`));
@@ -2,7 +2,7 @@
 
 # ============================================================
 # CloudTracker API Test Script
-# Tests: register → login → write value → read value
+# Tests: register → login → write value → read value → batch write → thinned track → refresh
 # ============================================================
 
 BASE_URL="http://localhost:3000"   # ← change to your server
@@ -105,9 +105,27 @@ else
 fi
 
 # ------------------------------------------------------------
-# 5. LIST ALL KEYS
+# 5. BATCH WRITE
 # ------------------------------------------------------------
-print_step "5. Listing all keys for '$USERNAME'..."
+print_step "5. Writing a batch of 2 records..."
+
+BATCH_RESPONSE=$(curl -s -X POST "$BASE_URL/data" \
+  -H "Content-Type: application/json" \
+  -H "Authorization: Bearer $TOKEN" \
+  -d '{"records": [{"key": "batch1", "value": {"n": 1}}, {"key": "batch2", "value": {"n": 2}}]}')
+
+echo "  Response: $BATCH_RESPONSE"
+
+if [ "$(echo "$BATCH_RESPONSE" | grep -o '"success":true' | wc -l)" -eq 3 ]; then
+  print_ok "Batch written successfully"
+else
+  print_err "Batch write failed: $BATCH_RESPONSE"
+fi
+
+# ------------------------------------------------------------
+# 6. LIST ALL KEYS
+# ------------------------------------------------------------
+print_step "6. Listing all keys for '$USERNAME'..."
 
 LIST_RESPONSE=$(curl -s -X GET "$BASE_URL/data" \
   -H "Authorization: Bearer $TOKEN")
@@ -115,6 +133,62 @@ LIST_RESPONSE=$(curl -s -X GET "$BASE_URL/data" \
 echo "  Response: $LIST_RESPONSE"
 print_ok "Keys listed"
 
+# ------------------------------------------------------------
+# 7. THINNED TRACK
+# ------------------------------------------------------------
+print_step "7. Reading a 100-point track thinned to 10 points..."
+
+DEVICE="test$$"
+START=1714000000000
+RECORDS=""
+for i in $(seq 0 99); do
+  RECORDS="$RECORDS{\"key\": \"gps:$DEVICE:$i\", \"value\": {\"timestamp\": $((START + i * 60000)), \"device_id\": \"$DEVICE\", \"lat\": 48.2, \"lng\": 16.37}},"
+done
+
+curl -s -X POST "$BASE_URL/data" \
+  -H "Content-Type: application/json" \
+  -H "Authorization: Bearer $TOKEN" \
+  -d "{\"records\": [${RECORDS%,}]}" > /dev/null
+
+TRACK_RESPONSE=$(curl -s -X GET "$BASE_URL/tracks/$DEVICE?max_points=10" \
+  -H "Authorization: Bearer $TOKEN")
+
+TIMES=$(echo "$TRACK_RESPONSE" | grep -o '"timestamp":[0-9]*' | cut -d: -f2)
+COUNT=$(echo "$TIMES" | grep -c .)
+LAST=$(echo "$TIMES" | sort -n | tail -1)
+print_info "Points: $COUNT, last at +$(( (LAST - START) / 60000 )) min"
+
+# The 10 points must be spread over the whole 99 minutes, not the first 10 minutes of it
+if [ "$COUNT" -eq 10 ] && [ "$LAST" -ge $((START + 90 * 60000)) ]; then
+  print_ok "Thinned track spans the whole range"
+else
+  print_err "Thinned track does not span the range: $TRACK_RESPONSE"
+fi
+
+# ------------------------------------------------------------
+# 8. REFRESH
+# ------------------------------------------------------------
+print_step "8. Refreshing the token..."
+
+# auth_time claim of a JWT: base64url payload, padded for base64 -d
+auth_time() {
+  local payload=$(echo "$1" | cut -d. -f2 | tr '_-' '/+')
+  while [ $(( ${#payload} % 4 )) -ne 0 ]; do payload="$payload="; done
+  echo "$payload" | base64 -d 2>/dev/null | grep -o '"auth_time":[0-9]*' | cut -d: -f2
+}
+
+REFRESH_RESPONSE=$(curl -s -X POST "$BASE_URL/auth/refresh" \
+  -H "Authorization: Bearer $TOKEN")
+NEW_TOKEN=$(echo "$REFRESH_RESPONSE" | grep -o '"token":"[^"]*"' | cut -d'"' -f4)
+print_info "Login at $(auth_time "$TOKEN"), refreshed token at $(auth_time "$NEW_TOKEN")"
+
+# A refreshed token keeps the login time, so refreshing cannot extend a session forever
+if [ -n "$NEW_TOKEN" ] && [ -n "$(auth_time "$TOKEN")" ] && [ "$(auth_time "$NEW_TOKEN")" = "$(auth_time "$TOKEN")" ]; then
+  print_ok "Refreshed token keeps the session start"
+else
+  print_err "Refresh failed or reset the session start: $REFRESH_RESPONSE"
+fi
+
 # ------------------------------------------------------------
 # DONE
 # ------------------------------------------------------------